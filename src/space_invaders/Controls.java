@@ -0,0 +1,84 @@
+package space_invaders;
+
+import processing.core.PConstants;
+import space_invaders.engine.WorldSnapshot;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * Keys a player moves and fires with. <br>
+ * Each of up to {@link WorldSnapshot#MAX_PLAYERS} players sharing the keyboard has their own keys, the first two keep
+ * the keys of the original one and two player games.
+ *
+ * @author Toby Essex
+ */
+final public class Controls {
+    /**
+     * Keys of each player, in order.
+     */
+    private static final Controls[] PLAYERS = {
+            new Controls('A', 'D', ' '),
+            new Controls(PConstants.LEFT, PConstants.RIGHT, PConstants.UP),
+            new Controls('J', 'L', 'I'),
+            new Controls(KeyEvent.VK_NUMPAD4, KeyEvent.VK_NUMPAD6, KeyEvent.VK_NUMPAD8),
+            new Controls('F', 'H', 'T'),
+            new Controls('Z', 'C', 'X'),
+            new Controls('1', '3', '2'),
+            new Controls('8', '0', '9'),
+    };
+
+    /**
+     * Key codes of the keys that move the player left and right, and fire.
+     */
+    private final int left, right, fire;
+
+    /**
+     * Controls constructor.
+     *
+     * @param left Key code of the key that moves the player left.
+     * @param right Key code of the key that moves the player right.
+     * @param fire Key code of the key that fires.
+     */
+    private Controls(int left, int right, int fire) {
+        this.left = left;
+        this.right = right;
+        this.fire = fire;
+    }
+
+    /**
+     * @param index Player's index, starting at 0.
+     * @return Returns the player's keys.
+     *
+     * @author Toby Essex
+     */
+    public static Controls of(int index) {
+        return PLAYERS[index];
+    }
+
+    /**
+     * @return Returns the key code of the key that moves the player left.
+     *
+     * @author Toby Essex
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * @return Returns the key code of the key that moves the player right.
+     *
+     * @author Toby Essex
+     */
+    public int getRight() {
+        return right;
+    }
+
+    /**
+     * @return Returns the key code of the key that fires.
+     *
+     * @author Toby Essex
+     */
+    public int getFire() {
+        return fire;
+    }
+}
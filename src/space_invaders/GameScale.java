@@ -0,0 +1,211 @@
+package space_invaders;
+
+import space_invaders.engine.GameLoop;
+
+/**
+ * How big a game is: the size of the formation, the number of walls and how much is fired. <br>
+ * The arcade scale is the normal game. The stress scale pushes the engine to thousands of aliens and tens of thousands
+ * of bullets, its sizes can be changed with system properties, e.g. {@code -Dspace_invaders.stress.columns=80}. <br>
+ * Any scale can be swarmed, where the aliens break formation and fly as a flock, or played in an arena several screens
+ * wide.
+ *
+ * @author Toby Essex
+ */
+final public class GameScale {
+    /**
+     * The normal game, a formation of 5 rows of 10 aliens firing one shot at a time, over 4 walls.
+     */
+    public static final GameScale ARCADE = new GameScale(false, false, 1, 10, 5, 4, 1, 2 * GameLoop.TICK_RATE, 0);
+
+    /**
+     * A swarm of 200 aliens firing a few shots a second, over 4 walls.
+     */
+    public static final GameScale SWARM = new GameScale(false, true, 1, 20, 10, 4, 2, GameLoop.TICK_RATE, 0);
+
+    /**
+     * If true the players can't be killed and the formation starts again once it lands, so the game never ends.
+     */
+    private final boolean isStress;
+
+    /**
+     * If true the aliens fly as a flock rather than marching in formation.
+     */
+    private final boolean isSwarm;
+
+    /**
+     * Width of the arena in screens, the camera follows the players across an arena wider than one screen.
+     */
+    private final int arenaScreens;
+
+    /**
+     * Number of columns and rows in the formation.
+     */
+    private final int columns, rows;
+
+    /**
+     * Number of walls, as many as fit are used.
+     */
+    private final int walls;
+
+    /**
+     * Number of shots the aliens fire at once.
+     */
+    private final int alienVolley;
+
+    /**
+     * Number of ticks between the aliens' volleys while the whole formation is alive, it shortens as aliens are killed.
+     */
+    private final int fireInterval;
+
+    /**
+     * Number of bullets a player fires each tick while holding the fire key, or 0 to fire single shots.
+     */
+    private final int playerStream;
+
+    /**
+     * GameScale constructor.
+     *
+     * @param isStress If true the game never ends.
+     * @param isSwarm If true the aliens fly as a flock.
+     * @param arenaScreens Width of the arena in screens.
+     * @param columns Number of columns in the formation.
+     * @param rows Number of rows in the formation.
+     * @param walls Number of walls.
+     * @param alienVolley Number of shots the aliens fire at once.
+     * @param fireInterval Number of ticks between the aliens' volleys.
+     * @param playerStream Number of bullets a player fires each tick, or 0 to fire single shots.
+     */
+    private GameScale(boolean isStress, boolean isSwarm, int arenaScreens, int columns, int rows, int walls, int alienVolley, int fireInterval, int playerStream) {
+        if (arenaScreens < 1 || columns < 1 || rows < 1 || walls < 0 || alienVolley < 1 || fireInterval < 1 || playerStream < 0)
+            throw new IllegalArgumentException("Invalid game scale");
+
+        this.isStress = isStress;
+        this.isSwarm = isSwarm;
+        this.arenaScreens = arenaScreens;
+        this.columns = columns;
+        this.rows = rows;
+        this.walls = walls;
+        this.alienVolley = alienVolley;
+        this.fireInterval = fireInterval;
+        this.playerStream = playerStream;
+    }
+
+    /**
+     * Creates the stress scale, reading each size from its system property.
+     *
+     * @return Returns the stress scale.
+     *
+     * @author Toby Essex
+     */
+    public static GameScale stress() {
+        return new GameScale(true, false, 1,
+                Integer.getInteger("space_invaders.stress.columns", 64),
+                Integer.getInteger("space_invaders.stress.rows", 40),
+                Integer.getInteger("space_invaders.stress.walls", 6),
+                Integer.getInteger("space_invaders.stress.alienVolley", 400),
+                Integer.getInteger("space_invaders.stress.fireInterval", 1),
+                Integer.getInteger("space_invaders.stress.playerStream", 100));
+    }
+
+    /**
+     * @return Returns a scale of the same size whose aliens fly as a flock.
+     *
+     * @author Toby Essex
+     */
+    public GameScale swarmed() {
+        return new GameScale(isStress, true, arenaScreens, columns, rows, walls, alienVolley, fireInterval, playerStream);
+    }
+
+    /**
+     * @param screens Width of the arena in screens.
+     * @return Returns a scale played in an arena that many screens wide, with as many columns of aliens and walls per
+     *         screen as this one has on its only screen.
+     *
+     * @author Toby Essex
+     */
+    public GameScale inArena(int screens) {
+        return new GameScale(isStress, isSwarm, screens, columns * screens, rows, walls * screens, alienVolley,
+                fireInterval, playerStream);
+    }
+
+    /**
+     * @return Returns true if this is a stress test, where the game never ends.
+     *
+     * @author Toby Essex
+     */
+    public boolean isStress() {
+        return isStress;
+    }
+
+    /**
+     * @return Returns true if the aliens fly as a flock rather than marching in formation.
+     *
+     * @author Toby Essex
+     */
+    public boolean isSwarm() {
+        return isSwarm;
+    }
+
+    /**
+     * @return Returns the width of the arena in screens.
+     *
+     * @author Toby Essex
+     */
+    public int getArenaScreens() {
+        return arenaScreens;
+    }
+
+    /**
+     * @return Returns the number of columns in the formation.
+     *
+     * @author Toby Essex
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return Returns the number of rows in the formation.
+     *
+     * @author Toby Essex
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return Returns the number of walls.
+     *
+     * @author Toby Essex
+     */
+    public int getWalls() {
+        return walls;
+    }
+
+    /**
+     * @return Returns the number of shots the aliens fire at once.
+     *
+     * @author Toby Essex
+     */
+    public int getAlienVolley() {
+        return alienVolley;
+    }
+
+    /**
+     * @return Returns the number of ticks between the aliens' volleys while the whole formation is alive.
+     *
+     * @author Toby Essex
+     */
+    public int getFireInterval() {
+        return fireInterval;
+    }
+
+    /**
+     * @return Returns the number of bullets a player fires each tick, or 0 if they fire single shots.
+     *
+     * @author Toby Essex
+     */
+    public int getPlayerStream() {
+        return playerStream;
+    }
+}
@@ -1,21 +1,35 @@
 package space_invaders;
 
 import processing.core.PApplet;
+import processing.core.PFont;
+import processing.event.KeyEvent;
 
 import processing_gui.Pane;
 import processing_gui.controls.Button;
 import processing_gui.controls.Label;
+import space_invaders.engine.GameLoop;
+import space_invaders.engine.InputBuffer;
+import space_invaders.engine.JobGraph;
+import space_invaders.engine.KeyState;
+import space_invaders.engine.SnapshotBuffer;
+import space_invaders.engine.WorldSnapshot;
 import space_invaders.game_objects.Player;
 import space_invaders.managers.AlienManager;
+import space_invaders.managers.CollisionManager;
+import space_invaders.managers.EntityManager;
 import space_invaders.managers.MotherShipManager;
 import space_invaders.managers.PowerUpManager;
 import space_invaders.managers.WallManager;
+import space_invaders.resources.AssetArchive;
 import space_invaders.resources.Image;
 import space_invaders.resources.Sound;
+import space_invaders.utils.Log;
+import space_invaders.utils.StartupProfiler;
 
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
 import java.io.*;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Arrays;
 import java.util.stream.IntStream;
 
 /**
@@ -31,48 +45,69 @@ public class SpaceInvaders extends PApplet {
     public static final int BLOCK_SIZE = 5;
 
     /**
-     * If true the game will have 2 players.
+     * Width and height of the window.
      */
-    private boolean twoPlayerMode = false;
+    public static final int WINDOW_SIZE = 800;
 
     /**
-     * The player.
+     * Resources the tick's systems read and write, used to work out which systems can run at the same time. <br>
+     * The players' ships (position, lives, power-up), their scores and every bullet in flight are separate resources,
+     * so systems that only touch one of them can run alongside systems touching the others. The grid covers the
+     * collision manager's scratch state as well, which is written by every hit test.
      */
-    private Player player;
+    private static final int PLAYERS = 1, ALIENS = 1 << 1, WALLS = 1 << 2, MOTHER_SHIP = 1 << 3, POWER_UP = 1 << 4,
+            ENTITIES = 1 << 5, GRID = 1 << 6, GAME_STATE = 1 << 7, SCORES = 1 << 8, BULLETS = 1 << 9,
+            HIGH_SCORE = 1 << 10;
 
     /**
-     * The 2nd player.
+     * Number of players in the game, up to {@link WorldSnapshot#MAX_PLAYERS}.
      */
-    private Player player2;
+    private int playerCount = 1;
 
     /**
-     * If true the player is moving/ going to move.
+     * Size of the game, the arcade's unless a stress test was chosen.
      */
-    private boolean movePlayer = false;
+    private GameScale scale = GameScale.ARCADE;
 
     /**
-     * For 2nd player
-     *
-     * @see SpaceInvaders#movePlayer
+     * The players, in order. Player n is moved with {@link Controls#of(int)} and shown in the n-th lane of the HUD.
      */
-    private boolean movePlayer2 = false;
+    private Player[] players;
 
     /**
-     * If true the player will move left, else he will move right.
+     * Key events waiting to be applied at the start of the next tick.
      */
-    private boolean moveLeft = false;
+    private InputBuffer input = new InputBuffer();
 
     /**
-     * For 2nd player
-     *
-     * @see SpaceInvaders#moveLeft
+     * Keys held down, sampled from the input buffer at the start of each tick.
+     */
+    private KeyState keys = new KeyState();
+
+    /**
+     * Runs the simulation on its own thread, created when the first game is started.
+     */
+    private GameLoop loop;
+
+    /**
+     * Systems run each tick, created once the players have been.
      */
-    private boolean moveLeft2 = false;
+    private JobGraph systems;
 
     /**
-     * The current state of the game.
+     * Snapshots of the world passed from the simulation to {@link SpaceInvaders#draw()}.
      */
-    private static GameState currentGameState = GameState.START_MENU;
+    private SnapshotBuffer snapshots = new SnapshotBuffer();
+
+    /**
+     * The saved high score, read from the file once then kept up to date as it is beaten.
+     */
+    private volatile int highScore = -1;
+
+    /**
+     * The current state of the game. Volatile as it is changed by the simulation and read when drawing.
+     */
+    private static volatile GameState currentGameState = GameState.START_MENU;
 
     /**
      * Container for all start menu nodes.
@@ -90,9 +125,52 @@ public class SpaceInvaders extends PApplet {
     private Label highScoreLabel;
 
     /**
-     * Has gone through twice
+     * If true the game was started with "--training-run". <br>
+     * A training run plays a few frames of a game then exits, used to generate the class data sharing archive.
+     */
+    private static boolean isTrainingRun = false;
+
+    /**
+     * Number of frames a training run plays before exiting.
+     */
+    private static final int TRAINING_RUN_FRAMES = 120;
+
+    /**
+     * If true a stress test is started straight away rather than showing the start menu.
+     */
+    private static boolean isStressRun = false;
+
+    /**
+     * If true the game started straight away from the command line is swarmed, see {@link GameScale#isSwarm()}.
      */
-    private boolean hasBeenThrough = false;
+    private static boolean isSwarmRun = false;
+
+    /**
+     * If true the game started straight away from the command line is played in a wide arena, see
+     * {@link GameScale#inArena(int)}.
+     */
+    private static boolean isArenaRun = false;
+
+    /**
+     * Number of players given with "--players", the game is started straight away with them. 0 if not given.
+     */
+    private static int argPlayerCount = 0;
+
+    /**
+     * Width of the arena, the window's unless the game is played in an arena several screens wide. <br>
+     * Only changed by the simulation thread when a game is set up.
+     */
+    private static int arenaWidth = WINDOW_SIZE;
+
+    /**
+     * Left edge of the camera's view of the arena, followed by the simulation and written to each snapshot.
+     */
+    private int cameraX;
+
+    /**
+     * Time the last frame started, and the average time between frames and of a tick, in nanoseconds.
+     */
+    private long lastFrameTime, frameTime, tickTime;
 
     /**
      * Entry point.
@@ -102,7 +180,53 @@ public class SpaceInvaders extends PApplet {
      * @author Toby Essex
      */
     public static void main(String[] args) {
-        PApplet.main("space_invaders.SpaceInvaders");
+        StartupProfiler.start();
+
+        isTrainingRun = Arrays.asList(args).contains("--training-run");
+        isStressRun = Arrays.asList(args).contains("--stress");
+        isSwarmRun = Arrays.asList(args).contains("--swarm");
+        isArenaRun = Arrays.asList(args).contains("--arena");
+
+        argPlayerCount = parsePlayerCount(args);
+
+        PApplet.main("space_invaders.SpaceInvaders", args);
+    }
+
+    /**
+     * Reads the number of players given with "--players", clamped to the number the game supports. <br>
+     * A missing or invalid number is logged and ignored rather than stopping the game starting.
+     *
+     * @param args Command line arguments.
+     * @return Returns the number of players, or 0 if none were given.
+     *
+     * @author Toby Essex
+     */
+    private static int parsePlayerCount(String[] args) {
+        int players = Arrays.asList(args).indexOf("--players");
+
+        if (players < 0)
+            return 0;
+
+        if (players + 1 >= args.length) {
+            Log.info("SpaceInvaders.main", "--players needs a number of players, ignoring it");
+            return 0;
+        }
+
+        int count;
+
+        try {
+            count = Integer.parseInt(args[players + 1]);
+        } catch (NumberFormatException e) {
+            Log.info("SpaceInvaders.main", "--players needs a number of players, not \"" + args[players + 1] + "\", ignoring it");
+            return 0;
+        }
+
+        if (count < 1 || count > WorldSnapshot.MAX_PLAYERS) {
+            Log.info("SpaceInvaders.main", "--players must be from 1 to " + WorldSnapshot.MAX_PLAYERS + ", using "
+                    + Math.max(1, Math.min(WorldSnapshot.MAX_PLAYERS, count)));
+        }
+
+        return Math.max(1, Math.min(WorldSnapshot.MAX_PLAYERS, count));
     }
 
     /**
@@ -111,7 +235,9 @@ public class SpaceInvaders extends PApplet {
      * @author Toby Essex
      */
     public void settings() {
-        size(800, 800);
+        StartupProfiler.mark("processing");
+
+        size(WINDOW_SIZE, WINDOW_SIZE);
     }
 
     /**
@@ -120,52 +246,183 @@ public class SpaceInvaders extends PApplet {
      * @author Toby Essex
      */
     public void setup() {
+        StartupProfiler.mark("surface");
+
+        // Drawing is interpolated between ticks, so draw at the display's refresh rate rather than the tick rate
+        int refreshRate = displayRefreshRate();
+
+        if (refreshRate > 0)
+            frameRate(refreshRate);
+
         /*
         Load all the images
         This is called so all the images are ever only loaded once
         If they were loaded every time they were needed the game would be incredibly slow
         */
         Image.loadImages(this);
+        StartupProfiler.mark("images");
+
+        PFont font = AssetArchive.getInst().contains("game-font.ttf") ? AssetArchive.getInst().loadFont("game-font.ttf", 18) : null;
+        textFont(font != null ? font : createFont(getClass().getResource("game-font.ttf").toString(), 18));
+        StartupProfiler.mark("font");
+
+        setupStartMenu();
+        setupGameOverMenu();
+        StartupProfiler.mark("menus");
+
+        if (isStressRun || isSwarmRun || isArenaRun || argPlayerCount > 0) {
+            playerCount = Math.max(1, argPlayerCount);
+
+            if (isStressRun)
+                scale = isSwarmRun ? GameScale.stress().swarmed() : GameScale.stress();
+            else if (isSwarmRun)
+                scale = GameScale.SWARM;
+
+            if (isArenaRun)
+                scale = scale.inArena(Integer.getInteger("space_invaders.arena.screens", 3));
+
+            startGame();
+        }
+    }
+
+    /**
+     * @return Returns the refresh rate of the main display, or 0 if it is not known.
+     *
+     * @author Toby Essex
+     */
+    private int displayRefreshRate() {
+        if (GraphicsEnvironment.isHeadless())
+            return 0;
+
+        int refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+
+        return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? 0 : refreshRate;
+    }
+
+    /**
+     * Sets up the managers and players then starts the game. <br>
+     * This is kept out of setup so none of the game's classes are loaded before the first menu frame. <br>
+     * The game is set up on the simulation thread, which is started the first time a game is played.
+     *
+     * @author Toby Essex
+     */
+    private void startGame() {
+        if (loop == null) {
+            loop = new GameLoop(this::tick);
+            loop.start();
+        }
+
+        loop.post(this::setupGame);
+    }
 
-        textFont(createFont(getClass().getResource("game-font.ttf").toString(), 18));
+    /**
+     * Creates the players for the chosen mode and starts the game. Run on the simulation thread.
+     *
+     * @author Toby Essex
+     */
+    private void setupGame() {
+        // Set first, the grid is sized to the arena
+        arenaWidth = width * scale.getArenaScreens();
 
         WallManager.getInst().setParent(this);
         AlienManager.getInst().setParent(this);
         MotherShipManager.getInst().setParent(this);
         PowerUpManager.getInst().setParent(this);
+        CollisionManager.getInst().setParent(this);
 
-        if (twoPlayerMode) {
-            player = new Player(this, 225);
-            player2 = new Player(this, width - 300);
-        } else {
-            player = new Player(this, width / 2 - SpaceInvaders.BLOCK_SIZE * 5);
+        AlienManager.getInst().setScale(scale);
+        WallManager.getInst().setScale(scale);
+
+        // Players start spread evenly across the middle screen of the arena
+        int screenLeft = (arenaWidth - width) / 2;
+        // The last game's bullets are entities, so they must be destroyed rather than dropped
+        if (players != null) {
+            for (Player player : players)
+                player.removeBullets();
         }
 
-        // Schedules sounds effects to start after one second and then to play every second
-        new Timer().schedule(new TimerTask() {
-            private boolean playHigh = true;
+        players = new Player[playerCount];
 
-            @Override
-            public void run() {
-                if (currentGameState == GameState.GAME_OVER)
-                    cancel();
+        for (int i = 0; i < playerCount; i++)
+            players[i] = new Player(this, screenLeft + (i + 1) * width / (playerCount + 1) - SpaceInvaders.BLOCK_SIZE * 5);
 
-                (playHigh ? Sound.ALIEN_MOVE_HIGH_PITCH : Sound.ALIEN_MOVE_LOW_PITCH).play();
+        cameraX = screenLeft;
 
-                playHigh = !playHigh;
-            }
-        }, 1000, 1000);
+        systems = createSystems();
+        currentGameState = GameState.GAME;
+    }
 
-        setupStartMenu();
-        setupGameOverMenu();
+    /**
+     * Creates the graph of systems run each tick, for the chosen mode. <br>
+     * Systems are added in the order they would be run one after another, along with what they read and write.
+     *
+     * @return Returns the graph.
+     *
+     * @author Toby Essex
+     */
+    private JobGraph createSystems() {
+        JobGraph systems = new JobGraph();
+
+        // Every bullet makes its move first, so the systems after it test and draw where it ended up
+        systems.add("entities", 0, ENTITIES | BULLETS, () -> EntityManager.getInst().update());
+
+        // Everything is added to the broad-phase once the players have moved
+        systems.add("broad-phase", PLAYERS | ALIENS | WALLS | MOTHER_SHIP | POWER_UP, GRID,
+                () -> CollisionManager.getInst().rebuild(players));
+
+        // A player's bullets can hit the aliens, walls and mother ship
+        for (Player player : players) {
+            systems.add("player", 0, PLAYERS | SCORES | BULLETS | ALIENS | WALLS | ENTITIES | MOTHER_SHIP | GRID | GAME_STATE, () -> {
+                if (!player.isDead())
+                    player.update();
+            });
+        }
+
+        // A new wave starts its own mother ship schedule
+        systems.add("formation", PLAYERS, ALIENS | BULLETS | WALLS | ENTITIES | MOTHER_SHIP,
+                () -> AlienManager.getInst().updateAliens(players));
+
+        // Stress test scores are not real scores
+        if (!scale.isStress())
+            systems.add("high score", SCORES, HIGH_SCORE, this::checkScore);
+
+        systems.add("mother ship", 0, MOTHER_SHIP, () -> MotherShipManager.getInst().updateMotherShip());
+
+        // Picking up a power-up changes the player's lives or weapon, never their score
+        systems.add("power-up", SCORES, POWER_UP | PLAYERS | GRID, () -> PowerUpManager.getInst().updatePowerUp(players));
+
+        // Player and alien bullets that met each other are removed before they can hit anything else
+        systems.add("interception", 0, BULLETS | ENTITIES, () -> CollisionManager.getInst().interceptBullets(players));
+
+        // Alien bullets are tested against every player at once
+        systems.add("alien fire", 0, ALIENS | BULLETS | WALLS | ENTITIES | PLAYERS | GRID | GAME_STATE,
+                () -> AlienManager.getInst().playerHit(players));
+
+        // Independent systems must share a stage, otherwise the graph is only a list run in order
+        if (systems.getStageCount() >= systems.getJobCount())
+            throw new IllegalStateException(systems.getJobCount() + " systems need " + systems.getStageCount() + " stages");
+
+        return systems;
     }
 
     /**
-     * Called continuously. (Main game loop)
+     * Called continuously. (Main render loop) <br>
+     * The game itself is run by the {@link GameLoop}, during a game this only draws its latest snapshot.
      *
      * @author Craig Hughes, Toby Essex
      */
     public void draw() {
+        long now = System.nanoTime();
+
+        // Averaged over the last few frames so the numbers can be read
+        if (lastFrameTime != 0)
+            frameTime += (now - lastFrameTime - frameTime) / 16;
+
+        if (loop != null)
+            tickTime += (loop.getLastTickTime() - tickTime) / 16;
+
+        lastFrameTime = now;
+
         background(0);
 
         switch (currentGameState) {
@@ -174,24 +431,74 @@ public class SpaceInvaders extends PApplet {
                 startMenuExtras();
                 break;
             case GAME:
-                // Sets-up Player 2, again.
-                if (twoPlayerMode && !hasBeenThrough) {
-                    player2 = new Player(this, width - 300);
-                    hasBeenThrough = true;
-                }
-                game();
+                render(snapshots.acquire());
                 break;
             case GAME_OVER:
-                // Refreshes scores.
-                scoreLabel.setText("PLAYER 1 SCORE: " + player.getScore());
-                if(twoPlayerMode) {
-                    scoreLabel2.setText("PLAYER 2 SCORE: " + player2.getScore());
+                // Refreshes scores, from the last tick of the game.
+                WorldSnapshot snapshot = snapshots.acquire();
+
+                if (snapshot.getPlayerCount() <= 2) {
+                    scoreLabel.setFontSize(30);
+                    scoreLabel.setText("PLAYER 1 SCORE: " + snapshot.getScore(0));
+
+                    if(snapshot.getPlayerCount() > 1) {
+                        scoreLabel2.setFontSize(30);
+                        scoreLabel2.setText("PLAYER 2 SCORE: " + snapshot.getScore(1));
+                    }
+                } else {
+                    // Up to four players to a line
+                    scoreLabel.setFontSize(18);
+                    scoreLabel.setText(scoreLine(snapshot, 0, Math.min(4, snapshot.getPlayerCount())));
+                    scoreLabel2.setFontSize(18);
+                    scoreLabel2.setText(scoreLine(snapshot, 4, snapshot.getPlayerCount()));
                 }
 
-                highScoreLabel.setText("HIGHSCORE: " + getHighScore());
+                highScoreLabel.setText("HIGHSCORE: " + snapshot.getHighScore());
                 gameOverPane.show();
                 break;
         }
+
+        StartupProfiler.finish("first frame");
+
+        if (isTrainingRun)
+            trainingRun();
+    }
+
+    /**
+     * @param snapshot Snapshot holding the scores.
+     * @param from Index of the first player on the line.
+     * @param to Index after the last player on the line.
+     * @return Returns the scores of a range of players as one line, or a blank line if the range is empty.
+     *
+     * @author Toby Essex
+     */
+    private String scoreLine(WorldSnapshot snapshot, int from, int to) {
+        StringBuilder line = new StringBuilder();
+
+        for (int i = from; i < to; i++) {
+            if (line.length() > 0)
+                line.append(' ');
+
+            line.append(String.format("P%d:%d", i + 1, snapshot.getScore(i)));
+        }
+
+        // Labels are given a space rather than nothing, as for the second player's score
+        return line.length() == 0 ? " " : line.toString();
+    }
+
+    /**
+     * Plays a short game then exits. <br>
+     * Run with "-XX:ArchiveClassesAtExit" so the archive covers the classes used by the menus and the game.
+     *
+     * @author Toby Essex
+     */
+    private void trainingRun() {
+        // A game started from the command line has already created the loop, and is played instead
+        if (frameCount == 1 && loop == null) {
+            startGame();
+        } else if (frameCount > TRAINING_RUN_FRAMES || currentGameState == GameState.GAME_OVER) {
+            exit();
+        }
     }
 
     /**
@@ -216,55 +523,30 @@ public class SpaceInvaders extends PApplet {
     }
 
     /**
-     * Called if a key is pressed down.
+     * Called if a key is pressed down. <br>
+     * The key is only queued here, it is applied at the start of the next tick.
+     *
+     * @param event The key event.
      *
      * @author Toby Essex
      */
-    public void keyPressed() {
-        if (twoPlayerMode && player.isDead() && player2.isDead()) {
-            return;
-        } else if (player.isDead()) {
-            return;
-        }
-
-        if (key == 'a' || key == 'A') {
-            movePlayer = true;
-            moveLeft = true;
-        } else if (key == 'd' || key == 'D') {
-            movePlayer = true;
-            moveLeft = false;
-        } else if (twoPlayerMode && keyCode == LEFT) {
-            movePlayer2 = true;
-            moveLeft2 = true;
-        } else if (twoPlayerMode && keyCode == RIGHT) {
-            movePlayer2 = true;
-            moveLeft2 = false;
-        } else if (key == ' ') {
-            player.fireBullet();
-        } else if (twoPlayerMode && keyCode == UP) {
-            player2.fireBullet();
-        }
-
+    public void keyPressed(KeyEvent event) {
+        // Keys are drained by the simulation, so they are ignored until it has been started
+        if (loop != null)
+            input.offer(event.getKeyCode(), true);
     }
 
     /**
-     * Called if a key is released.
+     * Called if a key is released. <br>
+     * The key is only queued here, it is applied at the start of the next tick.
+     *
+     * @param event The key event.
      *
      * @author Toby Essex
      */
-    public void keyReleased() {
-        if (twoPlayerMode && player.isDead() && player2.isDead() || player.isDead())
-            return;
-
-        if (key == 'a' || key == 'A') {
-            movePlayer = false;
-        } else if (key == 'd' || key == 'D') {
-            movePlayer = false;
-        } else if (twoPlayerMode && keyCode == LEFT) {
-            movePlayer2 = false;
-        } else if (twoPlayerMode && keyCode == RIGHT) {
-            movePlayer2 = false;
-        }
+    public void keyReleased(KeyEvent event) {
+        if (loop != null)
+            input.offer(event.getKeyCode(), false);
     }
 
     /**
@@ -280,6 +562,16 @@ public class SpaceInvaders extends PApplet {
         currentGameState = gameState;
     }
 
+    /**
+     * @return Returns the width of the arena, wider than the window if the game is played in an arena several screens
+     *         wide.
+     *
+     * @author Toby Essex
+     */
+    public static int getArenaWidth() {
+        return arenaWidth;
+    }
+
     /**
      * Displays elements needed for Start screen.
      *
@@ -288,6 +580,8 @@ public class SpaceInvaders extends PApplet {
     private void setupStartMenu() {
         Button buttonOnePlayer = new Button("ONE PLAYER", width/2, 385, 175, 20);
         Button buttonTwoPlayer = new Button ("TWO PLAYER", width/2, 465, 200, 20);
+        Button buttonStress = new Button("STRESS TEST", width/2, 525, 200, 20);
+        Button buttonSwarm = new Button("SWARM", width/2, 650, 200, 20);
         Button buttonExit = new Button("EXIT", width/2, height-100, 200, 20);
         Label spaceLabel = new Label("SPACE", width/2 - 225, 120, 90);
         Label invadersLabel = new Label("INVADERS", width/2 - 225,170,56);
@@ -297,8 +591,8 @@ public class SpaceInvaders extends PApplet {
         buttonOnePlayer.setFontSize(30);
         buttonOnePlayer.setHoverAnimation(Button.HoverAnimation.ENLARGE);
         buttonOnePlayer.setOnActionListener(e -> {
-            twoPlayerMode = false;
-            currentGameState = GameState.GAME;
+            playerCount = 1;
+            startGame();
         });
 
         buttonTwoPlayer.setBackgroundColour(0,0,0);
@@ -306,8 +600,28 @@ public class SpaceInvaders extends PApplet {
         buttonTwoPlayer.setFontSize(30);
         buttonTwoPlayer.setHoverAnimation(Button.HoverAnimation.ENLARGE);
         buttonTwoPlayer.setOnActionListener(e -> {
-            twoPlayerMode = true;
-            currentGameState = GameState.GAME;
+            playerCount = 2;
+            startGame();
+        });
+
+        buttonStress.setBackgroundColour(0,0,0);
+        buttonStress.setTextColour(255,255,255);
+        buttonStress.setFontSize(20);
+        buttonStress.setHoverAnimation(Button.HoverAnimation.ENLARGE);
+        buttonStress.setOnActionListener(e -> {
+            playerCount = 1;
+            scale = GameScale.stress();
+            startGame();
+        });
+
+        buttonSwarm.setBackgroundColour(0,0,0);
+        buttonSwarm.setTextColour(255,255,255);
+        buttonSwarm.setFontSize(20);
+        buttonSwarm.setHoverAnimation(Button.HoverAnimation.ENLARGE);
+        buttonSwarm.setOnActionListener(e -> {
+            playerCount = 1;
+            scale = GameScale.SWARM;
+            startGame();
         });
 
         buttonExit.setBackgroundColour(0,0,0);
@@ -320,7 +634,7 @@ public class SpaceInvaders extends PApplet {
         invadersLabel.setTextColour(255,255,255);
 
         startMenuPane = new Pane(this);
-        startMenuPane.addNodes(buttonOnePlayer, buttonTwoPlayer, buttonExit, spaceLabel, invadersLabel);
+        startMenuPane.addNodes(buttonOnePlayer, buttonTwoPlayer, buttonStress, buttonSwarm, buttonExit, spaceLabel, invadersLabel);
     }
 
     /**
@@ -342,9 +656,8 @@ public class SpaceInvaders extends PApplet {
         Button buttonExit = new Button("EXIT", 600, 650, 200, 20);
         Label gameOverLabel = new Label("GAME OVER", width/2 - 310,120, 70);
 
-        scoreLabel = new Label("YOUR SCORE P1: " + player.getScore(), 121,350,30);
-        if(twoPlayerMode)
-            scoreLabel2 = new Label("YOUR SCORE P2: " + player2.getScore(), 121,400,30);
+        // Scores are filled in when the game over screen is shown
+        scoreLabel = new Label("YOUR SCORE P1: 0", 121,350,30);
 
 
         highScoreLabel = new Label("HIGHSCORE: " + getHighScore(),121,500,30);
@@ -353,10 +666,7 @@ public class SpaceInvaders extends PApplet {
         buttonPlayAgain.setTextColour(255,255,255);
         buttonPlayAgain.setFontSize(30);
         buttonPlayAgain.setHoverAnimation(Button.HoverAnimation.ENLARGE);
-        buttonPlayAgain.setOnActionListener(e -> {
-            reset();
-            currentGameState = GameState.GAME;
-        });
+        buttonPlayAgain.setOnActionListener(e -> loop.post(this::resetWorld));
 
         buttonExit.setBackgroundColour(0,0,0);
         buttonExit.setTextColour(255,255,255);
@@ -374,81 +684,184 @@ public class SpaceInvaders extends PApplet {
 
         gameOverPane = new Pane(this);
         gameOverPane.addNodes(buttonPlayAgain, buttonExit, gameOverLabel, scoreLabel, scoreLabel2, highScoreLabel);
-
-        if(scoreLabel2 != null && twoPlayerMode) {
-            gameOverPane.addNode(scoreLabel2);
-        }
     }
 
     /**
-     * Game elements to be drawn.
+     * One step of the game, run by the simulation thread. <br>
+     * Applies the input, moves everything and checks for collisions then publishes a snapshot of the world to draw.
      *
      * @author Craig Hughes, Toby Essex
      */
-    private void game() {
-        stroke(255);
-        textSize(30);
+    private void tick() {
+        input.drain(keys);
 
-        if (!player.isDead())
-            player.show();
+        if (currentGameState != GameState.GAME)
+            return;
 
-        if (twoPlayerMode && !player2.isDead())
-            player2.show();
+        checkKeyPressed();
 
-        WallManager.getInst().showWalls();
+        // Independent systems run at the same time, the rest in order
+        systems.run();
 
-        AlienManager.getInst().showAliens();
-        AlienManager.getInst().playerHit(player);
+        publishSnapshot();
+    }
+
+    /**
+     * Writes everything that is to be drawn into the back snapshot and publishes it.
+     *
+     * @author Toby Essex
+     */
+    private void publishSnapshot() {
+        WorldSnapshot snapshot = snapshots.getBack();
+        snapshot.clear();
 
-        MotherShipManager.getInst().spawnMotherShip();
+        if (arenaWidth > width)
+            followPlayers(snapshot);
 
-        if (twoPlayerMode) {
-            AlienManager.getInst().playerHit(player2);
-            PowerUpManager.getInst().showPowerUp(player, player2);
-        } else {
-            PowerUpManager.getInst().showPowerUp(player);
+        for (Player player : players) {
+            if (!player.isDead())
+                player.show(snapshot);
         }
 
-        displayUI();
-        checkKeyPressed();
+        EntityManager.getInst().showEntities(snapshot);
+        AlienManager.getInst().showAliens(snapshot);
+        MotherShipManager.getInst().showMotherShip(snapshot);
+        PowerUpManager.getInst().showPowerUp(snapshot);
+
+        snapshot.setPlayerCount(players.length);
+
+        int bulletCount = AlienManager.getInst().getBulletCount();
+
+        for (int i = 0; i < players.length; i++) {
+            snapshot.setPlayer(i, players[i].getScore(), players[i].getLives());
+            bulletCount += players[i].getBulletCount();
+        }
+
+        snapshot.setHighScore(getHighScore());
+
+        snapshot.setCounts(AlienManager.getInst().getAliveCount(), bulletCount, EntityManager.getInst().getWorld().size());
+
+        snapshots.publish();
     }
 
-    private void reset() {
-        setup();
+    /**
+     * Moves the camera to centre on the living players, as far as the edges of the arena allow, and gives the snapshot
+     * its view so everything outside it is culled.
+     *
+     * @param snapshot Snapshot of the world being written.
+     *
+     * @author Toby Essex
+     */
+    private void followPlayers(WorldSnapshot snapshot) {
+        float focus = 0;
+        int living = 0;
+
+        for (Player player : players) {
+            if (!player.isDead()) {
+                focus += player.getX() + player.getWidth() / 2f;
+                living++;
+            }
+        }
+
+        // The camera stays where it is while every player is dead
+        int left = living == 0 ? cameraX : Math.round(focus / living - width / 2f);
+        left = Math.max(0, Math.min(arenaWidth - width, left));
+
+        snapshot.setView(left, width, left - cameraX);
+        cameraX = left;
+    }
+
+    /**
+     * Game elements to be drawn. Only reads the snapshot so it never waits on the simulation.
+     *
+     * @param snapshot Latest snapshot of the world.
+     *
+     * @author Craig Hughes, Toby Essex
+     */
+    private void render(WorldSnapshot snapshot) {
+        stroke(255);
+        textSize(30);
+
+        // Draw part way between the last two ticks so movement stays smooth whatever the tick rate
+        snapshot.render(this, GameLoop.alpha(snapshot.getTime()));
+
+        displayUI(snapshot);
+    }
+
+    /**
+     * Puts every manager and player back to the start of a game then starts it. <br>
+     * Everything is reset in place, the loaded images, font, timers and menus are kept.
+     *
+     * @author Toby Essex
+     */
+    private void resetWorld() {
         WallManager.getInst().reset();
         AlienManager.getInst().reset();
+        MotherShipManager.getInst().reset();
+        PowerUpManager.getInst().reset();
+        CollisionManager.getInst().reset();
+
+        for (Player player : players)
+            player.restart();
+
+        currentGameState = GameState.GAME;
     }
 
     /**
      * Displays the UI.
      *
+     * @param snapshot Latest snapshot of the world, holding the scores and lives.
+     *
      * @author Craig Hughes
      */
-    private void displayUI() {
-        checkScore();
-
+    private void displayUI(WorldSnapshot snapshot) {
         // Line Separator
         rect(width / 2, height - 50, width - 60, 2);
 
-        if(!twoPlayerMode){
+        if(snapshot.getPlayerCount() < 2){
             textSize(16);
-            text(String.format("SCORE:%d | HIGHSCORE: %d", player.getScore(), getHighScore()), 30, 40);
+            text(String.format("SCORE:%d | HIGHSCORE: %d", snapshot.getScore(0), snapshot.getHighScore()), 30, 40);
 
-            IntStream.range(0, player.getLives()).forEach(i -> image(Image.LIFE.load(), (i * 30) + 30, height - 40, 30, 30));
+            IntStream.range(0, snapshot.getLives(0)).forEach(i -> image(Image.LIFE.load(), (i * 30) + 30, height - 40, 30, 30));
         } else {
             textSize(15);
-            text(String.format("P1 SCORE:%d | HIGHSCORE: %d | P2 SCORE:%d", player.getScore(), getHighScore(), player2.getScore()), 30, 40);
+            text(String.format("HIGHSCORE: %d", snapshot.getHighScore()), 30, 40);
+
+            // Each player has a lane with their score and lives, four lanes to a row
+            int lanes = Math.min(4, snapshot.getPlayerCount());
+            int laneWidth = (width - 260) / lanes;
 
             textSize(12);
-            text("P1 HEALTH:", 30, height - 27);
-            IntStream.range(0, player.getLives()).forEach(i -> image(Image.LIFE.load(), (i * 22) + 160, height - 42, 20, 20));
-            text("P2 HEALTH:", 30, height - 7);
-            IntStream.range(0, player2.getLives()).forEach(i -> image(Image.LIFE.load(), (i * 22) + 160, height - 22, 20, 20));
+
+            for (int p = 0; p < snapshot.getPlayerCount(); p++) {
+                int laneX = 30 + (p % lanes) * laneWidth;
+                int laneY = height - 27 + (p / lanes) * 20;
+
+                text(String.format("P%d:%d", p + 1, snapshot.getScore(p)), laneX, laneY);
+                IntStream.range(0, snapshot.getLives(p)).forEach(i -> image(Image.LIFE.load(), laneX + laneWidth - 60 + (i * 16), laneY - 12, 14, 14));
+            }
         }
 
         // Literally no use, needed for visual aesthetic only.
         textSize(18);
         text("CREDITS:∞", width - 200, height - 15);
+
+        if (scale.isStress() || scale.getArenaScreens() > 1)
+            displayStats(snapshot);
+    }
+
+    /**
+     * Displays how long frames and ticks are taking and how much is in the world, during a stress test or in an arena.
+     *
+     * @param snapshot Latest snapshot of the world, holding the counts.
+     *
+     * @author Toby Essex
+     */
+    private void displayStats(WorldSnapshot snapshot) {
+        textSize(12);
+        text(String.format("FRAME:%.1fms (%.0f FPS) | TICK:%.1fms", frameTime / 1e6, frameRate, tickTime / 1e6), 30, 62);
+        text(String.format("ALIENS:%d | BULLETS:%d | ENTITIES:%d | DRAWN:%d | CULLED:%d", snapshot.getAlienCount(),
+                snapshot.getBulletCount(), snapshot.getEntityCount(), snapshot.size(), snapshot.getCulledCount()), 30, 80);
     }
 
     /**
@@ -457,22 +870,32 @@ public class SpaceInvaders extends PApplet {
      * @author Craig Hughes
      */
     private void checkScore() {
-        if (player.getScore() > getHighScore()) {
+        int best = 0;
+
+        for (Player player : players)
+            best = Math.max(best, player.getScore());
+
+        if (best > getHighScore()) {
             try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("highscore.txt"), "utf-8"))) {
-                writer.write(String.valueOf(player.getScore()));
+                writer.write(String.valueOf(best));
             } catch (IOException e) {
-                System.out.println("Error checking or writing high score: " + e.getMessage());
-                e.printStackTrace();
+                Log.error("SpaceInvaders.checkScore", "Error checking or writing high score", e);
             }
+
+            // Kept even if it could not be saved, so a read-only file is not written to every tick
+            highScore = best;
         }
     }
 
     /**
-     * @return Returns saved High Score.
+     * @return Returns saved High Score. The file is only read the first time.
      *
      * @author Craig Hughes
      */
     private int getHighScore() {
+        if (highScore >= 0)
+            return highScore;
+
         createFileIfNotCreated();
 
         String hs = "0";
@@ -481,11 +904,12 @@ public class SpaceInvaders extends PApplet {
         try (BufferedReader bufferedReader = new BufferedReader(new FileReader("highscore.txt"))) {
             hs = bufferedReader.readLine();
         } catch (IOException e) {
-            System.out.println("Error reading high score: " + e.getMessage());
-            e.printStackTrace();
+            Log.error("SpaceInvaders.getHighScore", "Error reading high score", e);
         }
 
-        return Integer.parseInt(hs == null ? "0" : hs);
+        highScore = Integer.parseInt(hs == null ? "0" : hs);
+
+        return highScore;
     }
 
     /**
@@ -500,29 +924,34 @@ public class SpaceInvaders extends PApplet {
             // noinspection ResultOfMethodCallIgnored
             file.createNewFile();
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("SpaceInvaders.createFileIfNotCreated", "Error creating high score file", e);
         }
     }
 
     /**
-     * Called in draw check to see if a key is being pressed. <br>
-     * This is needed to allow multiple key to be pressed at once.
+     * Called at the start of each tick to move the players and fire bullets using the sampled key state. <br>
+     * Each player has their own keys, see {@link Controls}. A player only moves if exactly one of their direction keys
+     * is held.
      *
      * @author Toby Essex
      */
     private void checkKeyPressed() {
-        if (twoPlayerMode && player.isDead() && player2.isDead()) {
-            return;
-        } else if (player.isDead()) {
-            return;
-        }
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i];
+            Controls controls = Controls.of(i);
 
-        if (movePlayer) {
-            player.move(moveLeft);
-        }
+            if (player.isDead())
+                continue;
+
+            if (keys.isDown(controls.getLeft()) != keys.isDown(controls.getRight()))
+                player.move(keys.isDown(controls.getLeft()));
 
-        if (twoPlayerMode && movePlayer2) {
-            player2.move(moveLeft2);
+            // In a stress test holding fire shoots a stream of bullets every tick
+            if (scale.getPlayerStream() > 0 && keys.isDown(controls.getFire())) {
+                player.fireStream(scale.getPlayerStream());
+            } else if (keys.wasPressed(controls.getFire())) {
+                player.fireBullet();
+            }
         }
     }
 
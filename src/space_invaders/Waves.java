@@ -0,0 +1,648 @@
+package space_invaders;
+
+import space_invaders.engine.GameLoop;
+import space_invaders.resources.AssetArchive;
+import space_invaders.utils.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The waves of aliens played in a game, in order and then again from the first. <br>
+ * Waves are read from {@value Waves#FILE_NAME}, whose format is described at the top of the file. The file is parsed and
+ * checked once, the first time it is needed, into flat arrays, so starting a wave never parses or allocates. <br>
+ * If the file is missing or invalid the arcade's formation is played as the only wave. <br>
+ * This class uses the singleton pattern. Using lazy initialisation.
+ *
+ * @author Toby Essex
+ */
+final public class Waves {
+    /**
+     * Name of the waves file, in the resources folder (or the asset archive).
+     */
+    public static final String FILE_NAME = "waves.txt";
+
+    /**
+     * Tier of a place in the formation without an alien.
+     */
+    public static final byte EMPTY = -1;
+
+    /**
+     * Used as this class is a singleton.
+     */
+    private static Waves inst;
+
+    /**
+     * Number of alien tiers, 1 to 3 in the file and 0 to 2 once loaded.
+     */
+    private static final int TIERS = 3;
+
+    /**
+     * Highest and lowest the top row of a formation can start. Below the mother ship, and high enough that the tallest
+     * formation starts above the walls.
+     */
+    private static final int MIN_TOP = 60, MAX_TOP = 300;
+
+    /**
+     * Defaults of the settings left out of a wave.
+     */
+    private static final int DEFAULT_TOP = 100, DEFAULT_MARCH = 1, DEFAULT_VOLLEY = 1;
+    private static final float DEFAULT_FIRE_SECONDS = 2, DEFAULT_MOTHER_SHIP_SECONDS = 30;
+
+    /**
+     * Number of waves.
+     */
+    private final int count;
+
+    /**
+     * Number of rows and columns in each wave's formation, and the number of aliens in it.
+     */
+    private final int[] rows, columns, alienCount;
+
+    /**
+     * Y coordinate of each wave's top row.
+     */
+    private final int[] top;
+
+    /**
+     * Tier of every place in every formation, wave by wave then row by row. {@link Waves#EMPTY} for no alien.
+     */
+    private final byte[] places;
+
+    /**
+     * Index of each wave's first place in {@link Waves#places}.
+     */
+    private final int[] placeStart;
+
+    /**
+     * Points of every wave's march speed curve, in aliens moved per tick at 60 ticks per second.
+     */
+    private final int[] march;
+
+    /**
+     * Index of each wave's first point in {@link Waves#march}, and the number of points it has.
+     */
+    private final int[] marchStart, marchLength;
+
+    /**
+     * Number of ticks between each wave's volleys while its whole formation is alive, and the shots in each volley.
+     */
+    private final int[] fireInterval, volley;
+
+    /**
+     * Number of ticks into each wave until the first mother ship, then between the next ones (0 for only one).
+     */
+    private final int[] motherShipFirst, motherShipGap;
+
+    /**
+     * Most rows, columns and places of any wave.
+     */
+    private final int maxRows, maxColumns, maxPlaces;
+
+    /**
+     * Waves constructor. The arrays are kept, not copied.
+     *
+     * @param rows Number of rows in each formation.
+     * @param columns Number of columns in each formation.
+     * @param top Y coordinate of each formation's top row.
+     * @param places Tier of every place, wave by wave then row by row.
+     * @param march Points of every march speed curve, wave by wave.
+     * @param marchLength Number of points in each wave's curve.
+     * @param fireInterval Number of ticks between each wave's volleys.
+     * @param volley Number of shots in each wave's volleys.
+     * @param motherShipFirst Number of ticks into each wave until the first mother ship.
+     * @param motherShipGap Number of ticks between each wave's next mother ships.
+     */
+    private Waves(int[] rows, int[] columns, int[] top, byte[] places, int[] march, int[] marchLength, int[] fireInterval,
+                  int[] volley, int[] motherShipFirst, int[] motherShipGap) {
+        count = rows.length;
+
+        this.rows = rows;
+        this.columns = columns;
+        this.top = top;
+        this.places = places;
+        this.march = march;
+        this.marchLength = marchLength;
+        this.fireInterval = fireInterval;
+        this.volley = volley;
+        this.motherShipFirst = motherShipFirst;
+        this.motherShipGap = motherShipGap;
+
+        alienCount = new int[count];
+        placeStart = new int[count];
+        marchStart = new int[count];
+
+        int rowsMax = 0, columnsMax = 0, placesMax = 0;
+
+        for (int wave = 0, place = 0, point = 0; wave < count; wave++) {
+            placeStart[wave] = place;
+            marchStart[wave] = point;
+
+            int size = rows[wave] * columns[wave];
+
+            for (int i = place; i < place + size; i++) {
+                if (places[i] != EMPTY)
+                    alienCount[wave]++;
+            }
+
+            place += size;
+            point += marchLength[wave];
+
+            rowsMax = Math.max(rowsMax, rows[wave]);
+            columnsMax = Math.max(columnsMax, columns[wave]);
+            placesMax = Math.max(placesMax, size);
+        }
+
+        maxRows = rowsMax;
+        maxColumns = columnsMax;
+        maxPlaces = placesMax;
+    }
+
+    /**
+     * @return Returns the waves read from the waves file, or the arcade's formation if it could not be read.
+     *
+     * @author Toby Essex
+     */
+    public static synchronized Waves getInst() {
+        if (inst == null) {
+            try {
+                inst = load();
+            } catch (IOException | IllegalArgumentException e) {
+                Log.error("Waves", "Error loading " + FILE_NAME + ", playing the arcade formation", e);
+                inst = of(GameScale.ARCADE);
+            }
+        }
+
+        return inst;
+    }
+
+    /**
+     * Creates a single wave of a scale's formation, which fires as often as the scale does. <br>
+     * One fifth of the rows are the top tier, then two fifths each of the middle and bottom tiers. Formations larger than
+     * the arcade's march more aliens each tick, so a step takes as long.
+     *
+     * @param scale Scale of the game.
+     * @return Returns the wave.
+     *
+     * @author Toby Essex
+     */
+    public static Waves of(GameScale scale) {
+        int rows = scale.getRows(), columns = scale.getColumns();
+        byte[] places = new byte[rows * columns];
+
+        for (int row = 0; row < rows; row++)
+            Arrays.fill(places, row * columns, (row + 1) * columns, (byte) ((row * 5 / rows + 1) / 2));
+
+        int arcadeSize = GameScale.ARCADE.getRows() * GameScale.ARCADE.getColumns();
+        int motherShipTicks = ticks(DEFAULT_MOTHER_SHIP_SECONDS);
+
+        return new Waves(new int[]{rows}, new int[]{columns}, new int[]{DEFAULT_TOP}, places,
+                new int[]{(rows * columns + arcadeSize - 1) / arcadeSize}, new int[]{1},
+                new int[]{scale.getFireInterval()}, new int[]{scale.getAlienVolley()},
+                new int[]{motherShipTicks}, new int[]{motherShipTicks});
+    }
+
+    /**
+     * @param screens Width of the arena in screens.
+     * @return Returns these waves with each formation repeated across that many screens, marching as many more aliens
+     *         each tick so a step takes as long.
+     *
+     * @author Toby Essex
+     */
+    public Waves tiled(int screens) {
+        if (screens == 1)
+            return this;
+
+        int[] tiledColumns = new int[count];
+        byte[] tiledPlaces = new byte[places.length * screens];
+        int[] tiledMarch = new int[march.length];
+
+        for (int wave = 0, place = 0; wave < count; wave++) {
+            tiledColumns[wave] = columns[wave] * screens;
+
+            for (int row = 0; row < rows[wave]; row++) {
+                for (int column = 0; column < tiledColumns[wave]; column++)
+                    tiledPlaces[place++] = getTier(wave, row, column % columns[wave]);
+            }
+        }
+
+        for (int i = 0; i < march.length; i++)
+            tiledMarch[i] = march[i] * screens;
+
+        return new Waves(rows, tiledColumns, top, tiledPlaces, tiledMarch, marchLength, fireInterval, volley,
+                motherShipFirst, motherShipGap);
+    }
+
+    /**
+     * Reads the waves file, straight from the asset archive if there is one.
+     *
+     * @return Returns the waves.
+     * @throws IOException If the file could not be read.
+     * @throws IllegalArgumentException If the file is invalid, the message gives the line.
+     *
+     * @author Toby Essex
+     */
+    private static Waves load() throws IOException {
+        AssetArchive archive = AssetArchive.getInst();
+        InputStream stream = archive.contains(FILE_NAME)
+                ? archive.openStream(FILE_NAME)
+                : Waves.class.getResourceAsStream("/" + FILE_NAME);
+
+        if (stream == null)
+            throw new FileNotFoundException(FILE_NAME);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parses and checks every wave, then packs them into flat arrays.
+     *
+     * @param reader Reader over the waves file.
+     * @return Returns the waves.
+     * @throws IOException If the file could not be read.
+     * @throws IllegalArgumentException If the file is invalid, the message gives the line.
+     *
+     * @author Toby Essex
+     */
+    private static Waves parse(BufferedReader reader) throws IOException {
+        // Each wave's settings are collected as they are read, then packed once the whole file is checked
+        ArrayList<int[]> settings = new ArrayList<>();
+        ArrayList<int[]> marches = new ArrayList<>();
+        ArrayList<ArrayList<String>> layouts = new ArrayList<>();
+
+        String line;
+        int lineNumber = 0;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            // Anything after a # is a comment
+            int comment = line.indexOf('#');
+            String[] words = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+
+            if (words[0].isEmpty())
+                continue;
+
+            try {
+                if (words[0].equals("wave")) {
+                    expectValues(words, 0);
+
+                    if (!layouts.isEmpty())
+                        checkLayout(layouts.get(layouts.size() - 1), layouts.size());
+
+                    settings.add(new int[]{
+                            DEFAULT_TOP, ticks(DEFAULT_FIRE_SECONDS), DEFAULT_VOLLEY,
+                            ticks(DEFAULT_MOTHER_SHIP_SECONDS), ticks(DEFAULT_MOTHER_SHIP_SECONDS)
+                    });
+                    marches.add(new int[]{DEFAULT_MARCH});
+                    layouts.add(new ArrayList<>());
+                    continue;
+                }
+
+                if (settings.isEmpty())
+                    throw new IllegalArgumentException("'" + words[0] + "' before the first wave");
+
+                int[] wave = settings.get(settings.size() - 1);
+
+                switch (words[0]) {
+                    case "row":
+                        expectValues(words, 1);
+                        checkRow(words[1], layouts.get(layouts.size() - 1));
+                        layouts.get(layouts.size() - 1).add(words[1]);
+                        break;
+                    case "top":
+                        expectValues(words, 1);
+                        wave[0] = parseInt(words[1], MIN_TOP, MAX_TOP);
+                        break;
+                    case "march":
+                        if (words.length < 2)
+                            throw new IllegalArgumentException("march needs at least one point");
+
+                        int[] points = new int[words.length - 1];
+
+                        for (int i = 0; i < points.length; i++)
+                            points[i] = parseInt(words[i + 1], 1, Integer.MAX_VALUE);
+
+                        marches.set(marches.size() - 1, points);
+                        break;
+                    case "fire":
+                        expectValues(words, 2);
+                        wave[1] = Math.max(1, ticks(parseSeconds(words[1], false)));
+                        wave[2] = parseInt(words[2], 1, Integer.MAX_VALUE);
+                        break;
+                    case "mothership":
+                        expectValues(words, 2);
+                        wave[3] = ticks(parseSeconds(words[1], true));
+                        wave[4] = ticks(parseSeconds(words[2], true));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown setting '" + words[0] + "'");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(FILE_NAME + " line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        if (layouts.isEmpty())
+            throw new IllegalArgumentException(FILE_NAME + " has no waves");
+
+        try {
+            checkLayout(layouts.get(layouts.size() - 1), layouts.size());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(FILE_NAME + ": " + e.getMessage(), e);
+        }
+
+        return pack(settings, marches, layouts);
+    }
+
+    /**
+     * Packs checked waves into flat arrays.
+     *
+     * @param settings Top, fire interval, volley, first mother ship and mother ship gap of each wave.
+     * @param marches March speed curve of each wave.
+     * @param layouts Rows of each wave's formation.
+     * @return Returns the waves.
+     *
+     * @author Toby Essex
+     */
+    private static Waves pack(ArrayList<int[]> settings, ArrayList<int[]> marches, ArrayList<ArrayList<String>> layouts) {
+        int count = settings.size();
+        int[] rows = new int[count], columns = new int[count], top = new int[count], marchLength = new int[count];
+        int[] fireInterval = new int[count], volley = new int[count], motherShipFirst = new int[count], motherShipGap = new int[count];
+        int placeCount = 0, pointCount = 0;
+
+        for (int wave = 0; wave < count; wave++) {
+            rows[wave] = layouts.get(wave).size();
+            columns[wave] = layouts.get(wave).get(0).length();
+            placeCount += rows[wave] * columns[wave];
+            pointCount += marches.get(wave).length;
+        }
+
+        byte[] places = new byte[placeCount];
+        int[] march = new int[pointCount];
+
+        for (int wave = 0, place = 0, point = 0; wave < count; wave++) {
+            for (String row : layouts.get(wave)) {
+                for (int column = 0; column < row.length(); column++)
+                    places[place++] = row.charAt(column) == '.' ? EMPTY : (byte) (row.charAt(column) - '1');
+            }
+
+            int[] points = marches.get(wave);
+            System.arraycopy(points, 0, march, point, points.length);
+            point += points.length;
+            marchLength[wave] = points.length;
+
+            int[] setting = settings.get(wave);
+            top[wave] = setting[0];
+            fireInterval[wave] = setting[1];
+            volley[wave] = setting[2];
+            motherShipFirst[wave] = setting[3];
+            motherShipGap[wave] = setting[4];
+        }
+
+        return new Waves(rows, columns, top, places, march, marchLength, fireInterval, volley, motherShipFirst, motherShipGap);
+    }
+
+    /**
+     * Checks a row only holds tiers or gaps, and is as wide as the rows above it.
+     *
+     * @param row The row.
+     * @param layout Rows of the formation read so far.
+     * @throws IllegalArgumentException If the row is invalid.
+     *
+     * @author Toby Essex
+     */
+    private static void checkRow(String row, ArrayList<String> layout) {
+        if (!layout.isEmpty() && row.length() != layout.get(0).length())
+            throw new IllegalArgumentException("row is " + row.length() + " wide, the rows above are " + layout.get(0).length());
+
+        for (int i = 0; i < row.length(); i++) {
+            char place = row.charAt(i);
+
+            if (place != '.' && (place < '1' || place >= '1' + TIERS))
+                throw new IllegalArgumentException("'" + place + "' is not a tier (1 to " + TIERS + ") or .");
+        }
+    }
+
+    /**
+     * Checks a finished wave's formation has at least one alien.
+     *
+     * @param layout Rows of the formation.
+     * @param wave Number of the wave, from 1.
+     * @throws IllegalArgumentException If the formation is empty.
+     *
+     * @author Toby Essex
+     */
+    private static void checkLayout(ArrayList<String> layout, int wave) {
+        for (String row : layout) {
+            if (row.chars().anyMatch(place -> place != '.'))
+                return;
+        }
+
+        throw new IllegalArgumentException("wave " + wave + " has no aliens");
+    }
+
+    /**
+     * @param words Words of a line, the setting first.
+     * @param values Number of values the setting takes.
+     * @throws IllegalArgumentException If the line has a different number of values.
+     *
+     * @author Toby Essex
+     */
+    private static void expectValues(String[] words, int values) {
+        if (words.length != values + 1)
+            throw new IllegalArgumentException(words[0] + " takes " + values + " value" + (values == 1 ? "" : "s"));
+    }
+
+    /**
+     * @param word Word to parse.
+     * @param min Smallest value allowed.
+     * @param max Largest value allowed.
+     * @return Returns the whole number.
+     * @throws IllegalArgumentException If the word isn't a whole number in range.
+     *
+     * @author Toby Essex
+     */
+    private static int parseInt(String word, int min, int max) {
+        int value = Integer.parseInt(word);
+
+        if (value < min || value > max)
+            throw new IllegalArgumentException(value + " is out of range");
+
+        return value;
+    }
+
+    /**
+     * @param word Word to parse.
+     * @param isZeroAllowed If true 0 seconds is allowed.
+     * @return Returns the number of seconds.
+     * @throws IllegalArgumentException If the word isn't a number of seconds.
+     *
+     * @author Toby Essex
+     */
+    private static float parseSeconds(String word, boolean isZeroAllowed) {
+        float seconds = Float.parseFloat(word);
+
+        // Also catches NaN
+        if (!(isZeroAllowed ? seconds >= 0 : seconds > 0) || Float.isInfinite(seconds))
+            throw new IllegalArgumentException(word + " is not a valid number of seconds");
+
+        return seconds;
+    }
+
+    /**
+     * @param seconds Number of seconds.
+     * @return Returns the number of ticks in that many seconds.
+     *
+     * @author Toby Essex
+     */
+    private static int ticks(float seconds) {
+        return Math.round(seconds * GameLoop.TICK_RATE);
+    }
+
+    /**
+     * @return Returns the number of waves.
+     *
+     * @author Toby Essex
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the number of rows in the wave's formation.
+     *
+     * @author Toby Essex
+     */
+    public int getRows(int wave) {
+        return rows[wave];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the number of columns in the wave's formation.
+     *
+     * @author Toby Essex
+     */
+    public int getColumns(int wave) {
+        return columns[wave];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the number of aliens in the wave's formation.
+     *
+     * @author Toby Essex
+     */
+    public int getAlienCount(int wave) {
+        return alienCount[wave];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the Y coordinate of the wave's top row.
+     *
+     * @author Toby Essex
+     */
+    public int getTop(int wave) {
+        return top[wave];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @param row Row of the place, from the top.
+     * @param column Column of the place, from the left.
+     * @return Returns the tier of the alien in that place, 0 to 2, or {@link Waves#EMPTY} if there is none.
+     *
+     * @author Toby Essex
+     */
+    public byte getTier(int wave, int row, int column) {
+        return places[placeStart[wave] + row * columns[wave] + column];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @param killed Number of the wave's aliens killed.
+     * @return Returns the number of aliens to move each tick, at 60 ticks per second.
+     *
+     * @author Toby Essex
+     */
+    public int getMarch(int wave, int killed) {
+        // The points are spread evenly from the full formation to its last alien
+        int point = killed * (marchLength[wave] - 1) / Math.max(1, alienCount[wave] - 1);
+
+        return march[marchStart[wave] + Math.min(point, marchLength[wave] - 1)];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the number of ticks between volleys while the wave's whole formation is alive.
+     *
+     * @author Toby Essex
+     */
+    public int getFireInterval(int wave) {
+        return fireInterval[wave];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the number of shots in each of the wave's volleys.
+     *
+     * @author Toby Essex
+     */
+    public int getVolley(int wave) {
+        return volley[wave];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the number of ticks into the wave until the first mother ship.
+     *
+     * @author Toby Essex
+     */
+    public int getMotherShipFirst(int wave) {
+        return motherShipFirst[wave];
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the number of ticks between the wave's next mother ships, or 0 for only one.
+     *
+     * @author Toby Essex
+     */
+    public int getMotherShipGap(int wave) {
+        return motherShipGap[wave];
+    }
+
+    /**
+     * @return Returns the most rows of any wave.
+     *
+     * @author Toby Essex
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @return Returns the most columns of any wave.
+     *
+     * @author Toby Essex
+     */
+    public int getMaxColumns() {
+        return maxColumns;
+    }
+
+    /**
+     * @return Returns the most places (rows times columns) of any wave.
+     *
+     * @author Toby Essex
+     */
+    public int getMaxPlaces() {
+        return maxPlaces;
+    }
+}
@@ -0,0 +1,508 @@
+package space_invaders.engine;
+
+import space_invaders.resources.Image;
+
+import java.util.Arrays;
+
+/**
+ * Every entity with the same set of components. <br>
+ * Each component is stored as its own array with one row per entity, so a system touching a component reads it
+ * contiguously. Only the arrays for the archetype's components are created. Rows are kept packed, removing an entity
+ * moves the last row into its place.
+ *
+ * @see EntityWorld
+ *
+ * @author Toby Essex
+ */
+public class Archetype {
+    /**
+     * Position component, the entity's centre.
+     */
+    public static final int POSITION = 1;
+
+    /**
+     * Sprite component, an image (or a filled rectangle if there is no image) and the size it is drawn at.
+     */
+    public static final int SPRITE = 1 << 1;
+
+    /**
+     * Motion component, where the entity was before its last move and the move it makes each tick.
+     */
+    public static final int MOTION = 1 << 2;
+
+    /**
+     * Trajectory component, the table of moves the entity follows and how far along it the entity is.
+     */
+    public static final int TRAJECTORY = 1 << 3;
+
+    /**
+     * Collider component, a box around the entity's position, the collision layer it is on and whether it carries on
+     * after meeting another collider.
+     */
+    public static final int COLLIDER = 1 << 4;
+
+    /**
+     * Components every entity in this archetype has.
+     */
+    private final int signature;
+
+    /**
+     * Number of entities in this archetype.
+     */
+    private int size;
+
+    /**
+     * Entity in each row.
+     */
+    private int[] entities;
+
+    /**
+     * Position component.
+     */
+    private float[] x, y;
+
+    /**
+     * Sprite component.
+     */
+    private Image[] images;
+
+    /**
+     * Sprite component's size.
+     */
+    private float[] widths, heights;
+
+    /**
+     * Motion component, the position before the last move.
+     */
+    private float[] fromX, fromY;
+
+    /**
+     * Motion component, the move made each tick.
+     */
+    private float[] velocityX, velocityY;
+
+    /**
+     * Trajectory component.
+     */
+    private Trajectory[] trajectories;
+
+    /**
+     * Trajectory component's current step.
+     */
+    private int[] steps;
+
+    /**
+     * Collider component's half size.
+     */
+    private float[] halfWidths, halfHeights;
+
+    /**
+     * Collider component's collision layer.
+     */
+    private int[] layers;
+
+    /**
+     * Collider component, true if the entity carries on after meeting another collider.
+     */
+    private boolean[] durable;
+
+    /**
+     * Archetype constructor.
+     *
+     * @param signature Components every entity in this archetype has.
+     */
+    Archetype(int signature) {
+        this.signature = signature;
+
+        allocate(64);
+    }
+
+    /**
+     * Adds a row for an entity. Its components start at zero.
+     *
+     * @param entity The entity.
+     * @return Returns the entity's row.
+     *
+     * @author Toby Essex
+     */
+    int add(int entity) {
+        if (size == entities.length)
+            allocate(size * 2);
+
+        entities[size] = entity;
+
+        return size++;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     *
+     * @param row Row to remove.
+     * @return Returns the entity that was moved into the row, or -1 if the last row was removed.
+     *
+     * @author Toby Essex
+     */
+    int remove(int row) {
+        int last = --size;
+
+        if (row == last) {
+            clear(last);
+            return -1;
+        }
+
+        entities[row] = entities[last];
+
+        if (x != null) {
+            x[row] = x[last];
+            y[row] = y[last];
+        }
+
+        if (images != null) {
+            images[row] = images[last];
+            widths[row] = widths[last];
+            heights[row] = heights[last];
+        }
+
+        if (fromX != null) {
+            fromX[row] = fromX[last];
+            fromY[row] = fromY[last];
+            velocityX[row] = velocityX[last];
+            velocityY[row] = velocityY[last];
+        }
+
+        if (trajectories != null) {
+            trajectories[row] = trajectories[last];
+            steps[row] = steps[last];
+        }
+
+        if (layers != null) {
+            halfWidths[row] = halfWidths[last];
+            halfHeights[row] = halfHeights[last];
+            layers[row] = layers[last];
+            durable[row] = durable[last];
+        }
+
+        clear(last);
+
+        return entities[row];
+    }
+
+    /**
+     * @param components Components to check for.
+     * @return Returns true if the archetype has every one of the components.
+     *
+     * @author Toby Essex
+     */
+    public boolean has(int components) {
+        return (signature & components) == components;
+    }
+
+    /**
+     * Sets an entity's position.
+     *
+     * @param row Entity's row.
+     * @param x X coordinate of its centre.
+     * @param y Y coordinate of its centre.
+     *
+     * @author Toby Essex
+     */
+    public void setPosition(int row, float x, float y) {
+        this.x[row] = x;
+        this.y[row] = y;
+    }
+
+    /**
+     * Sets an entity's sprite.
+     *
+     * @param row Entity's row.
+     * @param image Image to draw, or null to draw a filled rectangle.
+     * @param width Width to draw it at.
+     * @param height Height to draw it at.
+     *
+     * @author Toby Essex
+     */
+    public void setSprite(int row, Image image, float width, float height) {
+        images[row] = image;
+        widths[row] = width;
+        heights[row] = height;
+    }
+
+    /**
+     * Sets where an entity was before its last move, and the move it makes each tick.
+     *
+     * @param row Entity's row.
+     * @param fromX X coordinate before the last move.
+     * @param fromY Y coordinate before the last move.
+     * @param velocityX Distance moved along the X axis each tick.
+     * @param velocityY Distance moved along the Y axis each tick.
+     *
+     * @author Toby Essex
+     */
+    public void setMotion(int row, float fromX, float fromY, float velocityX, float velocityY) {
+        this.fromX[row] = fromX;
+        this.fromY[row] = fromY;
+        this.velocityX[row] = velocityX;
+        this.velocityY[row] = velocityY;
+    }
+
+    /**
+     * Sets the trajectory an entity follows.
+     *
+     * @param row Entity's row.
+     * @param trajectory The trajectory.
+     * @param step Step of the trajectory the entity is at.
+     *
+     * @author Toby Essex
+     */
+    public void setTrajectory(int row, Trajectory trajectory, int step) {
+        trajectories[row] = trajectory;
+        steps[row] = step;
+    }
+
+    /**
+     * Sets an entity's collider.
+     *
+     * @param row Entity's row.
+     * @param halfWidth Half the width of the box around its position.
+     * @param halfHeight Half the height of the box around its position.
+     * @param layer Collision layer it is on, a single bit.
+     * @param isDurable If true the entity carries on after meeting another collider.
+     *
+     * @author Toby Essex
+     */
+    public void setCollider(int row, float halfWidth, float halfHeight, int layer, boolean isDurable) {
+        halfWidths[row] = halfWidth;
+        halfHeights[row] = halfHeight;
+        layers[row] = layer;
+        durable[row] = isDurable;
+    }
+
+    /**
+     * @return Returns the components every entity in this archetype has.
+     *
+     * @author Toby Essex
+     */
+    public int getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return Returns the number of entities in this archetype.
+     *
+     * @author Toby Essex
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Returns the entity in each row.
+     *
+     * @author Toby Essex
+     */
+    public int[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * @return Returns the X coordinate of each entity.
+     *
+     * @author Toby Essex
+     */
+    public float[] getX() {
+        return x;
+    }
+
+    /**
+     * @return Returns the Y coordinate of each entity.
+     *
+     * @author Toby Essex
+     */
+    public float[] getY() {
+        return y;
+    }
+
+    /**
+     * @return Returns the image each entity is drawn with, null for a filled rectangle.
+     *
+     * @author Toby Essex
+     */
+    public Image[] getImages() {
+        return images;
+    }
+
+    /**
+     * @return Returns the width each entity is drawn at.
+     *
+     * @author Toby Essex
+     */
+    public float[] getWidths() {
+        return widths;
+    }
+
+    /**
+     * @return Returns the height each entity is drawn at.
+     *
+     * @author Toby Essex
+     */
+    public float[] getHeights() {
+        return heights;
+    }
+
+    /**
+     * @return Returns the X coordinate of each entity before its last move.
+     *
+     * @author Toby Essex
+     */
+    public float[] getFromX() {
+        return fromX;
+    }
+
+    /**
+     * @return Returns the Y coordinate of each entity before its last move.
+     *
+     * @author Toby Essex
+     */
+    public float[] getFromY() {
+        return fromY;
+    }
+
+    /**
+     * @return Returns the distance each entity moves along the X axis each tick.
+     *
+     * @author Toby Essex
+     */
+    public float[] getVelocityX() {
+        return velocityX;
+    }
+
+    /**
+     * @return Returns the distance each entity moves along the Y axis each tick.
+     *
+     * @author Toby Essex
+     */
+    public float[] getVelocityY() {
+        return velocityY;
+    }
+
+    /**
+     * @return Returns the trajectory each entity follows.
+     *
+     * @author Toby Essex
+     */
+    public Trajectory[] getTrajectories() {
+        return trajectories;
+    }
+
+    /**
+     * @return Returns the step of its trajectory each entity is at.
+     *
+     * @author Toby Essex
+     */
+    public int[] getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Returns half the width of each entity's collider.
+     *
+     * @author Toby Essex
+     */
+    public float[] getHalfWidths() {
+        return halfWidths;
+    }
+
+    /**
+     * @return Returns half the height of each entity's collider.
+     *
+     * @author Toby Essex
+     */
+    public float[] getHalfHeights() {
+        return halfHeights;
+    }
+
+    /**
+     * @return Returns the collision layer of each entity.
+     *
+     * @author Toby Essex
+     */
+    public int[] getLayers() {
+        return layers;
+    }
+
+    /**
+     * @return Returns true for each entity that carries on after meeting another collider.
+     *
+     * @author Toby Essex
+     */
+    public boolean[] getDurable() {
+        return durable;
+    }
+
+    /**
+     * Zeroes a row that is no longer used, so its image and trajectory can be collected.
+     *
+     * @param row The row.
+     *
+     * @author Toby Essex
+     */
+    private void clear(int row) {
+        if (images != null)
+            images[row] = null;
+
+        if (trajectories != null)
+            trajectories[row] = null;
+    }
+
+    /**
+     * Creates or grows the arrays of the archetype's components.
+     *
+     * @param capacity Number of rows.
+     *
+     * @author Toby Essex
+     */
+    private void allocate(int capacity) {
+        entities = entities == null ? new int[capacity] : Arrays.copyOf(entities, capacity);
+
+        if (has(POSITION)) {
+            x = grow(x, capacity);
+            y = grow(y, capacity);
+        }
+
+        if (has(SPRITE)) {
+            images = images == null ? new Image[capacity] : Arrays.copyOf(images, capacity);
+            widths = grow(widths, capacity);
+            heights = grow(heights, capacity);
+        }
+
+        if (has(MOTION)) {
+            fromX = grow(fromX, capacity);
+            fromY = grow(fromY, capacity);
+            velocityX = grow(velocityX, capacity);
+            velocityY = grow(velocityY, capacity);
+        }
+
+        if (has(TRAJECTORY)) {
+            trajectories = trajectories == null ? new Trajectory[capacity] : Arrays.copyOf(trajectories, capacity);
+            steps = steps == null ? new int[capacity] : Arrays.copyOf(steps, capacity);
+        }
+
+        if (has(COLLIDER)) {
+            halfWidths = grow(halfWidths, capacity);
+            halfHeights = grow(halfHeights, capacity);
+            layers = layers == null ? new int[capacity] : Arrays.copyOf(layers, capacity);
+            durable = durable == null ? new boolean[capacity] : Arrays.copyOf(durable, capacity);
+        }
+    }
+
+    /**
+     * @param array Array to grow, or null.
+     * @param capacity New length.
+     * @return Returns a copy of the array with the new length, or a new array.
+     *
+     * @author Toby Essex
+     */
+    private static float[] grow(float[] array, int capacity) {
+        return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+    }
+}
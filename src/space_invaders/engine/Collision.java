@@ -0,0 +1,119 @@
+package space_invaders.engine;
+
+/**
+ * Swept collision tests for fast moving boxes such as bullets. <br>
+ * Rather than only testing where a box ends up after a tick, these test the whole path it moved along and return how
+ * far along that path it first touched something, so nothing thinner than a single move can be skipped over.
+ *
+ * @author Toby Essex
+ */
+final public class Collision {
+    /**
+     * Returned when the path does not touch anything.
+     */
+    public static final float MISS = Float.POSITIVE_INFINITY;
+
+    /** Private constructor so this class can't be constructed. */
+    private Collision() {}
+
+    /**
+     * Sweeps a box along a path against a fixed box.
+     *
+     * @param x0 X coordinate of the moving box's centre at the start of the path.
+     * @param y0 Y coordinate of the moving box's centre at the start of the path.
+     * @param x1 X coordinate of the moving box's centre at the end of the path.
+     * @param y1 Y coordinate of the moving box's centre at the end of the path.
+     * @param halfWidth Half the moving box's width.
+     * @param halfHeight Half the moving box's height.
+     * @param left Left edge of the fixed box.
+     * @param top Top edge of the fixed box.
+     * @param right Right edge of the fixed box.
+     * @param bottom Bottom edge of the fixed box.
+     * @return Returns how far along the path (0 to 1) the boxes first touch, or {@link Collision#MISS}.
+     *
+     * @author Toby Essex
+     */
+    public static float sweepBox(float x0, float y0, float x1, float y1, float halfWidth, float halfHeight,
+                                 float left, float top, float right, float bottom) {
+        // Growing the fixed box by the moving box's size turns this into a segment against a box (slab test)
+        float start = 0;
+        float end = 1;
+
+        float dx = x1 - x0;
+
+        if (dx == 0) {
+            if (x0 < left - halfWidth || x0 > right + halfWidth)
+                return MISS;
+        } else {
+            float near = (left - halfWidth - x0) / dx;
+            float far = (right + halfWidth - x0) / dx;
+
+            start = Math.max(start, Math.min(near, far));
+            end = Math.min(end, Math.max(near, far));
+
+            if (start > end)
+                return MISS;
+        }
+
+        float dy = y1 - y0;
+
+        if (dy == 0) {
+            if (y0 < top - halfHeight || y0 > bottom + halfHeight)
+                return MISS;
+        } else {
+            float near = (top - halfHeight - y0) / dy;
+            float far = (bottom + halfHeight - y0) / dy;
+
+            start = Math.max(start, Math.min(near, far));
+            end = Math.min(end, Math.max(near, far));
+
+            if (start > end)
+                return MISS;
+        }
+
+        return start;
+    }
+
+    /**
+     * Sweeps a box along a path against a bitmap of solid square cells. <br>
+     * Only the cells under the path's bounds are tested, each row's cells being picked out with a single mask.
+     *
+     * @param x0 X coordinate of the moving box's centre at the start of the path.
+     * @param y0 Y coordinate of the moving box's centre at the start of the path.
+     * @param x1 X coordinate of the moving box's centre at the end of the path.
+     * @param y1 Y coordinate of the moving box's centre at the end of the path.
+     * @param halfWidth Half the moving box's width.
+     * @param halfHeight Half the moving box's height.
+     * @param rows Bitmap, one long per row with bit n set if the n-th cell of the row is solid. Up to 64 columns.
+     * @param originX X coordinate of the bitmap's left edge.
+     * @param originY Y coordinate of the bitmap's top edge.
+     * @param cellSize Width and height of each cell.
+     * @return Returns how far along the path (0 to 1) the box first touches a solid cell, or {@link Collision#MISS}.
+     *
+     * @author Toby Essex
+     */
+    public static float sweepBitmap(float x0, float y0, float x1, float y1, float halfWidth, float halfHeight,
+                                    long[] rows, float originX, float originY, int cellSize) {
+        int firstColumn = Math.max(0, (int) Math.floor((Math.min(x0, x1) - halfWidth - originX) / cellSize));
+        int lastColumn = Math.min(63, (int) Math.floor((Math.max(x0, x1) + halfWidth - originX) / cellSize));
+        int firstRow = Math.max(0, (int) Math.floor((Math.min(y0, y1) - halfHeight - originY) / cellSize));
+        int lastRow = Math.min(rows.length - 1, (int) Math.floor((Math.max(y0, y1) + halfHeight - originY) / cellSize));
+
+        if (firstColumn > lastColumn)
+            return MISS;
+
+        long columns = (-1L >>> (63 - lastColumn)) & (-1L << firstColumn);
+        float first = MISS;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (long cells = rows[row] & columns; cells != 0; cells &= cells - 1) {
+                float left = originX + Long.numberOfTrailingZeros(cells) * cellSize;
+                float top = originY + row * cellSize;
+
+                first = Math.min(first, sweepBox(x0, y0, x1, y1, halfWidth, halfHeight, left, top, left + cellSize, top + cellSize));
+            }
+        }
+
+        return first;
+    }
+}
@@ -0,0 +1,243 @@
+package space_invaders.engine;
+
+import space_invaders.resources.Image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The systems run over the entities each tick. <br>
+ * Each system finds the archetypes with the components it needs, then runs down their arrays in one pass.
+ *
+ * @see EntityWorld
+ *
+ * @author Toby Essex
+ */
+public class EntitySystems {
+    /**
+     * Reused list of the archetypes matching a system.
+     */
+    private ArrayList<Archetype> matches = new ArrayList<>();
+
+    /**
+     * Sort-and-sweep used to find colliders that met each other.
+     */
+    private SweepAndPrune sweep = new SweepAndPrune();
+
+    /**
+     * Tests a pair of colliders whose paths overlap along the X axis.
+     */
+    private SweepAndPrune.PairConsumer meetPair = this::meet;
+
+    /**
+     * Archetype of each collider, in the order they were added to {@link EntitySystems#sweep}.
+     */
+    private Archetype[] colliderArchetypes = new Archetype[64];
+
+    /**
+     * Row of each collider in its archetype, and its entity.
+     */
+    private int[] colliderRows = new int[64], colliderEntities = new int[64];
+
+    /**
+     * False for each collider that has met another collider and is to be destroyed.
+     */
+    private boolean[] intact = new boolean[64];
+
+    /**
+     * Number of colliders added to {@link EntitySystems#sweep}.
+     */
+    private int colliderCount;
+
+    /**
+     * Number of pairs of colliders that met during the current collide pass.
+     */
+    private int meetings;
+
+    /**
+     * Moves every entity with a motion by one tick, remembering where it was so its move can be swept.
+     *
+     * @param world The entities.
+     *
+     * @author Toby Essex
+     */
+    public void move(EntityWorld world) {
+        world.query(Archetype.POSITION | Archetype.MOTION, matches);
+
+        for (Archetype archetype : matches) {
+            float[] x = archetype.getX(), y = archetype.getY();
+            float[] fromX = archetype.getFromX(), fromY = archetype.getFromY();
+            float[] velocityX = archetype.getVelocityX(), velocityY = archetype.getVelocityY();
+
+            for (int i = 0, size = archetype.size(); i < size; i++) {
+                fromX[i] = x[i];
+                fromY[i] = y[i];
+                x[i] += velocityX[i];
+                y[i] += velocityY[i];
+            }
+        }
+    }
+
+    /**
+     * Moves every entity following a trajectory on to its next step, which sets the move it makes next tick.
+     *
+     * @param world The entities.
+     *
+     * @author Toby Essex
+     */
+    public void age(EntityWorld world) {
+        world.query(Archetype.MOTION | Archetype.TRAJECTORY, matches);
+
+        for (Archetype archetype : matches) {
+            Trajectory[] trajectories = archetype.getTrajectories();
+            int[] steps = archetype.getSteps();
+            float[] velocityX = archetype.getVelocityX(), velocityY = archetype.getVelocityY();
+
+            for (int i = 0, size = archetype.size(); i < size; i++) {
+                int step = trajectories[i].next(steps[i]);
+
+                steps[i] = step;
+                velocityX[i] = trajectories[i].getX(step);
+                velocityY[i] = trajectories[i].getY(step);
+            }
+        }
+    }
+
+    /**
+     * Finds colliders on opposite sides that met during their last move, e.g. a player's bullet and an alien's. <br>
+     * The two are destroyed, unless they are durable, in which case they carry on and can meet others.
+     *
+     * @param world The entities.
+     * @param side Collision layer of one side, every other layer is the other side.
+     * @return Returns the number of pairs that met.
+     *
+     * @author Toby Essex
+     */
+    public int collide(EntityWorld world, int side) {
+        world.query(Archetype.POSITION | Archetype.MOTION | Archetype.COLLIDER, matches);
+
+        sweep.clear();
+        colliderCount = 0;
+
+        for (Archetype archetype : matches) {
+            float[] x = archetype.getX(), y = archetype.getY();
+            float[] fromX = archetype.getFromX(), fromY = archetype.getFromY();
+            float[] halfWidths = archetype.getHalfWidths(), halfHeights = archetype.getHalfHeights();
+            int[] layers = archetype.getLayers(), entities = archetype.getEntities();
+
+            for (int i = 0, size = archetype.size(); i < size; i++) {
+                // Each box covers the whole of the collider's last move
+                sweep.add(Math.min(fromX[i], x[i]) - halfWidths[i], Math.min(fromY[i], y[i]) - halfHeights[i],
+                        Math.max(fromX[i], x[i]) + halfWidths[i], Math.max(fromY[i], y[i]) + halfHeights[i],
+                        layers[i] == side ? 0 : 1);
+
+                addCollider(archetype, i, entities[i]);
+            }
+        }
+
+        meetings = 0;
+        sweep.sweep(meetPair);
+
+        // Rows move as entities are destroyed, so they are only destroyed once every pair has been tested
+        for (int i = 0; i < colliderCount; i++) {
+            if (!intact[i])
+                world.destroy(colliderEntities[i]);
+        }
+
+        return meetings;
+    }
+
+    /**
+     * Tests two colliders on opposite sides whose paths overlap, marking them to be destroyed if they met.
+     *
+     * @param a Index of the first collider.
+     * @param b Index of the second collider.
+     *
+     * @author Toby Essex
+     */
+    private void meet(int a, int b) {
+        // A collider only meets one other collider, unless it is durable
+        if (!intact[a] || !intact[b])
+            return;
+
+        Archetype first = colliderArchetypes[a], second = colliderArchetypes[b];
+        int row = colliderRows[a], other = colliderRows[b];
+
+        float halfWidth = first.getHalfWidths()[row], halfHeight = first.getHalfHeights()[row];
+
+        // Seen from the first collider the second one moves by the difference of their moves
+        float time = Collision.sweepBox(
+                second.getFromX()[other] - first.getFromX()[row], second.getFromY()[other] - first.getFromY()[row],
+                second.getX()[other] - first.getX()[row], second.getY()[other] - first.getY()[row],
+                second.getHalfWidths()[other], second.getHalfHeights()[other],
+                -halfWidth, -halfHeight, halfWidth, halfHeight
+        );
+
+        if (time == Collision.MISS)
+            return;
+
+        if (!first.getDurable()[row])
+            intact[a] = false;
+
+        if (!second.getDurable()[other])
+            intact[b] = false;
+
+        meetings++;
+    }
+
+    /**
+     * Adds a collider to the ones being tested.
+     *
+     * @param archetype Its archetype.
+     * @param row Its row in the archetype.
+     * @param entity The entity.
+     *
+     * @author Toby Essex
+     */
+    private void addCollider(Archetype archetype, int row, int entity) {
+        if (colliderCount == colliderRows.length) {
+            int capacity = colliderCount * 2;
+
+            colliderArchetypes = Arrays.copyOf(colliderArchetypes, capacity);
+            colliderRows = Arrays.copyOf(colliderRows, capacity);
+            colliderEntities = Arrays.copyOf(colliderEntities, capacity);
+            intact = Arrays.copyOf(intact, capacity);
+        }
+
+        colliderArchetypes[colliderCount] = archetype;
+        colliderRows[colliderCount] = row;
+        colliderEntities[colliderCount] = entity;
+        intact[colliderCount] = true;
+        colliderCount++;
+    }
+
+    /**
+     * Adds every entity with a sprite to the snapshot, culling those outside its view.
+     *
+     * @param world The entities.
+     * @param snapshot Snapshot of the world being written.
+     *
+     * @author Toby Essex
+     */
+    public void render(EntityWorld world, WorldSnapshot snapshot) {
+        world.query(Archetype.POSITION | Archetype.SPRITE, matches);
+
+        for (Archetype archetype : matches) {
+            float[] x = archetype.getX(), y = archetype.getY();
+            float[] widths = archetype.getWidths(), heights = archetype.getHeights();
+            Image[] images = archetype.getImages();
+
+            for (int i = 0, size = archetype.size(); i < size; i++) {
+                // Rectangles are centred on the entity and images start from it, this covers either
+                if (!snapshot.isVisible(x[i] - widths[i], x[i] + widths[i]))
+                    continue;
+
+                if (images[i] == null) {
+                    snapshot.rect(x[i], y[i], widths[i], heights[i]);
+                } else {
+                    snapshot.image(images[i], x[i], y[i], widths[i], heights[i]);
+                }
+            }
+        }
+    }
+}
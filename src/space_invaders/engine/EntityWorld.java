@@ -0,0 +1,212 @@
+package space_invaders.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Holds every entity, grouped into archetypes by the components they have. <br>
+ * An entity is an int handle made of a slot and a generation, the generation changes when the slot is reused so old
+ * handles to a destroyed entity stay dead.
+ *
+ * @see Archetype
+ *
+ * @author Toby Essex
+ */
+public class EntityWorld {
+    /**
+     * Number of bits of a handle used for its slot.
+     */
+    private static final int SLOT_BITS = 20;
+
+    /**
+     * Mask of the slot bits of a handle.
+     */
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+    /**
+     * Every archetype that has been used.
+     */
+    private ArrayList<Archetype> archetypes = new ArrayList<>();
+
+    /**
+     * Archetype and row of the entity in each slot, null if the slot is free.
+     */
+    private Archetype[] slotArchetypes = new Archetype[256];
+
+    /**
+     * Row of the entity in each slot.
+     */
+    private int[] slotRows = new int[256];
+
+    /**
+     * Generation of each slot, incremented each time its entity is destroyed.
+     */
+    private int[] generations = new int[256];
+
+    /**
+     * Slots freed by destroyed entities, to be reused.
+     */
+    private int[] freeSlots = new int[256];
+
+    /**
+     * Number of free slots, and number of slots ever used.
+     */
+    private int freeCount, slotCount;
+
+    /**
+     * Number of living entities.
+     */
+    private int size;
+
+    /**
+     * Creates an entity. Its components start at zero.
+     *
+     * @param signature Components the entity has.
+     * @return Returns the entity's handle.
+     *
+     * @author Toby Essex
+     */
+    public int create(int signature) {
+        int slot;
+
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount > SLOT_MASK)
+                throw new IllegalStateException("Too many entities");
+
+            if (slotCount == slotArchetypes.length)
+                growSlots();
+
+            slot = slotCount++;
+        }
+
+        int entity = generations[slot] << SLOT_BITS | slot;
+        Archetype archetype = getArchetype(signature);
+
+        slotArchetypes[slot] = archetype;
+        slotRows[slot] = archetype.add(entity);
+        size++;
+
+        return entity;
+    }
+
+    /**
+     * Destroys an entity. Does nothing if it is already dead.
+     *
+     * @param entity The entity's handle.
+     *
+     * @author Toby Essex
+     */
+    public void destroy(int entity) {
+        if (!isAlive(entity))
+            return;
+
+        int slot = entity & SLOT_MASK;
+        int moved = slotArchetypes[slot].remove(slotRows[slot]);
+
+        // The last entity of the archetype now lives in the destroyed entity's row
+        if (moved != -1)
+            slotRows[moved & SLOT_MASK] = slotRows[slot];
+
+        slotArchetypes[slot] = null;
+
+        // Generations wrap before reaching the sign bit, so handles are never negative
+        generations[slot] = (generations[slot] + 1) & (Integer.MAX_VALUE >>> SLOT_BITS);
+
+        if (freeCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * @param entity An entity's handle.
+     * @return Returns true if the entity has not been destroyed.
+     *
+     * @author Toby Essex
+     */
+    public boolean isAlive(int entity) {
+        int slot = entity & SLOT_MASK;
+
+        return slot < slotCount && slotArchetypes[slot] != null && generations[slot] == entity >>> SLOT_BITS;
+    }
+
+    /**
+     * @param entity A living entity's handle.
+     * @return Returns the archetype the entity is in.
+     *
+     * @author Toby Essex
+     */
+    public Archetype archetypeOf(int entity) {
+        return slotArchetypes[entity & SLOT_MASK];
+    }
+
+    /**
+     * @param entity A living entity's handle.
+     * @return Returns the entity's row in its archetype. Rows change as other entities are destroyed.
+     *
+     * @author Toby Essex
+     */
+    public int rowOf(int entity) {
+        return slotRows[entity & SLOT_MASK];
+    }
+
+    /**
+     * @param signature Set of components.
+     * @return Returns the archetype with exactly those components, creating it if needed.
+     *
+     * @author Toby Essex
+     */
+    public Archetype getArchetype(int signature) {
+        for (Archetype archetype : archetypes) {
+            if (archetype.getSignature() == signature)
+                return archetype;
+        }
+
+        Archetype archetype = new Archetype(signature);
+        archetypes.add(archetype);
+
+        return archetype;
+    }
+
+    /**
+     * Finds every archetype with all of the given components.
+     *
+     * @param components Components the archetypes must have.
+     * @param results List the archetypes are written to, it is cleared first.
+     *
+     * @author Toby Essex
+     */
+    public void query(int components, ArrayList<Archetype> results) {
+        results.clear();
+
+        for (Archetype archetype : archetypes) {
+            if (archetype.has(components) && archetype.size() > 0)
+                results.add(archetype);
+        }
+    }
+
+    /**
+     * @return Returns the number of living entities.
+     *
+     * @author Toby Essex
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the number of slots.
+     *
+     * @author Toby Essex
+     */
+    private void growSlots() {
+        int capacity = slotArchetypes.length * 2;
+
+        slotArchetypes = Arrays.copyOf(slotArchetypes, capacity);
+        slotRows = Arrays.copyOf(slotRows, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+    }
+}
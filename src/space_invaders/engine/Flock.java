@@ -0,0 +1,469 @@
+package space_invaders.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A flock of boids, each steered by separation, alignment and cohesion with its neighbours and drawn towards the
+ * nearest target. <br>
+ * Neighbours are found through a uniform grid of cells as wide as the neighbour radius, rebuilt each update by counting
+ * the boids in each cell and then placing them. A boid only looks at the 3 by 3 cells around its own, so an update is
+ * O(n) in the number of boids rather than testing every pair. <br>
+ * Every boid is steered from the velocities of the last update, so they can be steered in any order, and large flocks
+ * are split into ranges steered on the fork/join pool. <br>
+ * Boids are kept inside an arena, turning back as they near its edges.
+ *
+ * @author Toby Essex
+ */
+public class Flock {
+    /**
+     * Boids steered by one worker, a smaller flock is steered on the calling thread.
+     */
+    private static final int BOIDS_PER_WORKER = 256;
+
+    /**
+     * Fastest a boid flies, in pixels per tick.
+     */
+    private static final float MAX_SPEED = 3f;
+
+    /**
+     * Most a boid's velocity changes in a tick.
+     */
+    private static final float MAX_FORCE = 0.2f;
+
+    /**
+     * How strongly each rule steers a boid.
+     */
+    private static final float SEPARATION = 1.6f, ALIGNMENT = 1f, COHESION = 0.8f, ATTRACTION = 0.6f;
+
+    /**
+     * How near to an edge of the arena a boid starts to turn back.
+     */
+    private static final float EDGE_MARGIN = 40f;
+
+    /**
+     * Position of each boid, the top centre of the alien it steers.
+     */
+    private final float[] x, y;
+
+    /**
+     * Velocity of each boid.
+     */
+    private float[] vx, vy;
+
+    /**
+     * Velocity of each boid after this update, swapped with the current velocity once every boid has been steered.
+     */
+    private float[] nextVx, nextVy;
+
+    /**
+     * If true the boid is in the flock, boids that have been removed are not steered and are never a neighbour.
+     */
+    private final boolean[] isFlying;
+
+    /**
+     * Distance under which boids push apart, and the distance a boid can see its neighbours from.
+     */
+    private final float separation, radius;
+
+    /**
+     * Edges of the arena.
+     */
+    private float left, top, right, bottom;
+
+    /**
+     * Number of columns and rows of cells covering the arena.
+     */
+    private int gridColumns, gridRows;
+
+    /**
+     * Index in {@link Flock#cellBoids} of the first boid of each cell, with one more entry for the end of the last cell.
+     */
+    private int[] cellStart = new int[1];
+
+    /**
+     * Where the next boid of each cell is placed while the grid is built.
+     */
+    private int[] cellCursor = new int[1];
+
+    /**
+     * Boids that are flying, grouped by cell.
+     */
+    private final int[] cellBoids;
+
+    /**
+     * Cell of each boid, or -1 if it is not flying.
+     */
+    private final int[] boidCell;
+
+    /**
+     * Positions of the targets the boids are drawn towards, written by {@link Flock#update(float[], float[], int)}.
+     */
+    private float[] targetX, targetY;
+
+    /**
+     * Number of targets.
+     */
+    private int targetCount;
+
+    /**
+     * Flock constructor. Every boid starts removed, see {@link Flock#place(int, float, float)}.
+     *
+     * @param size Number of boids.
+     * @param spacing Distance boids keep apart, they see their neighbours from twice as far.
+     */
+    public Flock(int size, float spacing) {
+        x = new float[size];
+        y = new float[size];
+        vx = new float[size];
+        vy = new float[size];
+        nextVx = new float[size];
+        nextVy = new float[size];
+        isFlying = new boolean[size];
+        cellBoids = new int[size];
+        boidCell = new int[size];
+
+        separation = spacing;
+        radius = spacing * 2;
+    }
+
+    /**
+     * Sets the space the boids are kept inside, and sizes the grid to cover it.
+     *
+     * @param left Left edge.
+     * @param top Top edge.
+     * @param right Right edge.
+     * @param bottom Bottom edge.
+     *
+     * @author Toby Essex
+     */
+    public void setArena(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+
+        gridColumns = Math.max(1, (int) Math.ceil((right - left) / radius));
+        gridRows = Math.max(1, (int) Math.ceil((bottom - top) / radius));
+        cellStart = new int[gridColumns * gridRows + 1];
+        cellCursor = new int[gridColumns * gridRows];
+    }
+
+    /**
+     * Puts a boid into the flock at rest.
+     *
+     * @param boid Index of the boid.
+     * @param x X coordinate.
+     * @param y Y coordinate.
+     *
+     * @author Toby Essex
+     */
+    public void place(int boid, float x, float y) {
+        this.x[boid] = x;
+        this.y[boid] = y;
+        vx[boid] = 0;
+        vy[boid] = 0;
+        isFlying[boid] = true;
+    }
+
+    /**
+     * Takes a boid out of the flock.
+     *
+     * @param boid Index of the boid.
+     *
+     * @author Toby Essex
+     */
+    public void remove(int boid) {
+        isFlying[boid] = false;
+    }
+
+    /**
+     * Steers every boid then moves it along its new velocity.
+     *
+     * @param targetX X coordinate of each target.
+     * @param targetY Y coordinate of each target.
+     * @param targetCount Number of targets, with none the boids only flock.
+     *
+     * @author Toby Essex
+     */
+    public void update(float[] targetX, float[] targetY, int targetCount) {
+        this.targetX = targetX;
+        this.targetY = targetY;
+        this.targetCount = targetCount;
+
+        buildGrid();
+
+        if (x.length <= BOIDS_PER_WORKER) {
+            steer(0, x.length);
+        } else {
+            new Steer(0, x.length).invoke();
+        }
+
+        float[] swap = vx;
+        vx = nextVx;
+        nextVx = swap;
+
+        swap = vy;
+        vy = nextVy;
+        nextVy = swap;
+
+        for (int i = 0; i < x.length; i++) {
+            if (!isFlying[i])
+                continue;
+
+            x[i] = Math.max(left, Math.min(right, x[i] + vx[i]));
+            y[i] = Math.max(top, Math.min(bottom, y[i] + vy[i]));
+        }
+    }
+
+    /**
+     * Places every flying boid in the cell it is over. <br>
+     * The boids of each cell are counted, the counts are added up into where each cell starts, then the boids are
+     * placed. Nothing is allocated.
+     *
+     * @author Toby Essex
+     */
+    private void buildGrid() {
+        Arrays.fill(cellStart, 0);
+
+        for (int i = 0; i < x.length; i++) {
+            if (!isFlying[i]) {
+                boidCell[i] = -1;
+                continue;
+            }
+
+            boidCell[i] = cellOf(x[i], y[i]);
+            cellStart[boidCell[i] + 1]++;
+        }
+
+        for (int cell = 0; cell < cellCursor.length; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+            cellCursor[cell] = cellStart[cell];
+        }
+
+        for (int i = 0; i < x.length; i++) {
+            if (boidCell[i] >= 0)
+                cellBoids[cellCursor[boidCell[i]]++] = i;
+        }
+    }
+
+    /**
+     * @param x X coordinate.
+     * @param y Y coordinate.
+     * @return Returns the cell the coordinates are over, coordinates outside the arena are in its edge cells.
+     *
+     * @author Toby Essex
+     */
+    private int cellOf(float x, float y) {
+        int column = Math.max(0, Math.min(gridColumns - 1, (int) ((x - left) / radius)));
+        int row = Math.max(0, Math.min(gridRows - 1, (int) ((y - top) / radius)));
+
+        return row * gridColumns + column;
+    }
+
+    /**
+     * Works out the next velocity of a range of boids. Only reads the positions and velocities of the last update.
+     *
+     * @param from Index of the first boid in the range.
+     * @param to Index after the last boid in the range.
+     *
+     * @author Toby Essex
+     */
+    private void steer(int from, int to) {
+        float radiusSq = radius * radius, separationSq = separation * separation;
+
+        for (int i = from; i < to; i++) {
+            if (!isFlying[i])
+                continue;
+
+            float px = x[i], py = y[i];
+            float pushX = 0, pushY = 0, sumVx = 0, sumVy = 0, sumX = 0, sumY = 0;
+            int neighbours = 0;
+
+            int column = boidCell[i] % gridColumns, row = boidCell[i] / gridColumns;
+
+            for (int r = Math.max(0, row - 1); r <= Math.min(gridRows - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(gridColumns - 1, column + 1); c++) {
+                    int cell = r * gridColumns + c;
+
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int j = cellBoids[k];
+
+                        if (j == i)
+                            continue;
+
+                        float dx = px - x[j], dy = py - y[j];
+                        float distanceSq = dx * dx + dy * dy;
+
+                        if (distanceSq >= radiusSq)
+                            continue;
+
+                        // Pushed away harder the closer the neighbour is, boids on top of each other are split by index
+                        if (distanceSq < separationSq) {
+                            if (distanceSq == 0) {
+                                pushX += i < j ? -1 : 1;
+                            } else {
+                                pushX += dx / distanceSq;
+                                pushY += dy / distanceSq;
+                            }
+                        }
+
+                        sumVx += vx[j];
+                        sumVy += vy[j];
+                        sumX += x[j];
+                        sumY += y[j];
+                        neighbours++;
+                    }
+                }
+            }
+
+            float forceX = 0, forceY = 0;
+
+            if (neighbours > 0) {
+                forceX += SEPARATION * steerTowards(pushX, pushY, vx[i], true);
+                forceY += SEPARATION * steerTowards(pushX, pushY, vy[i], false);
+                forceX += ALIGNMENT * steerTowards(sumVx, sumVy, vx[i], true);
+                forceY += ALIGNMENT * steerTowards(sumVx, sumVy, vy[i], false);
+                forceX += COHESION * steerTowards(sumX / neighbours - px, sumY / neighbours - py, vx[i], true);
+                forceY += COHESION * steerTowards(sumX / neighbours - px, sumY / neighbours - py, vy[i], false);
+            }
+
+            int target = nearestTarget(px, py);
+
+            if (target >= 0) {
+                forceX += ATTRACTION * steerTowards(targetX[target] - px, targetY[target] - py, vx[i], true);
+                forceY += ATTRACTION * steerTowards(targetX[target] - px, targetY[target] - py, vy[i], false);
+            }
+
+            // Turn back from the edges before reaching them
+            if (px < left + EDGE_MARGIN)
+                forceX += MAX_FORCE;
+            else if (px > right - EDGE_MARGIN)
+                forceX -= MAX_FORCE;
+
+            if (py < top + EDGE_MARGIN)
+                forceY += MAX_FORCE;
+            else if (py > bottom - EDGE_MARGIN)
+                forceY -= MAX_FORCE;
+
+            float nextX = vx[i] + forceX, nextY = vy[i] + forceY;
+            float speed = (float) Math.sqrt(nextX * nextX + nextY * nextY);
+
+            if (speed > MAX_SPEED) {
+                nextX *= MAX_SPEED / speed;
+                nextY *= MAX_SPEED / speed;
+            }
+
+            nextVx[i] = nextX;
+            nextVy[i] = nextY;
+        }
+    }
+
+    /**
+     * Reynolds' steering, the change of velocity that turns a boid to fly at full speed in a direction, limited to
+     * {@link Flock#MAX_FORCE}.
+     *
+     * @param directionX X part of the direction, need not be of unit length.
+     * @param directionY Y part of the direction.
+     * @param velocity The boid's velocity along the axis being worked out.
+     * @param isX If true the X part of the steering is returned, otherwise the Y part.
+     * @return Returns one part of the steering, or 0 if there is no direction.
+     *
+     * @author Toby Essex
+     */
+    private static float steerTowards(float directionX, float directionY, float velocity, boolean isX) {
+        float length = (float) Math.sqrt(directionX * directionX + directionY * directionY);
+
+        if (length == 0)
+            return 0;
+
+        float desired = (isX ? directionX : directionY) / length * MAX_SPEED;
+
+        return Math.max(-MAX_FORCE, Math.min(MAX_FORCE, desired - velocity));
+    }
+
+    /**
+     * @param px X coordinate.
+     * @param py Y coordinate.
+     * @return Returns the index of the target nearest to the coordinates, or -1 if there are none.
+     *
+     * @author Toby Essex
+     */
+    private int nearestTarget(float px, float py) {
+        int nearest = -1;
+        float nearestSq = Float.POSITIVE_INFINITY;
+
+        for (int t = 0; t < targetCount; t++) {
+            float dx = targetX[t] - px, dy = targetY[t] - py;
+
+            if (dx * dx + dy * dy < nearestSq) {
+                nearest = t;
+                nearestSq = dx * dx + dy * dy;
+            }
+        }
+
+        return nearest;
+    }
+
+    /**
+     * @param boid Index of the boid.
+     * @return Returns the boid's X coordinate.
+     *
+     * @author Toby Essex
+     */
+    public float getX(int boid) {
+        return x[boid];
+    }
+
+    /**
+     * @param boid Index of the boid.
+     * @return Returns the boid's Y coordinate.
+     *
+     * @author Toby Essex
+     */
+    public float getY(int boid) {
+        return y[boid];
+    }
+
+    /**
+     * Steers a range of boids on the fork/join pool, splitting it in two until the ranges are small enough. Never
+     * serialized.
+     *
+     * @author Toby Essex
+     */
+    @SuppressWarnings("serial")
+    private class Steer extends RecursiveAction {
+        /**
+         * Index of the first boid in the range, and the index after the last.
+         */
+        private final int from, to;
+
+        /**
+         * Steer constructor.
+         *
+         * @param from Index of the first boid in the range.
+         * @param to Index after the last boid in the range.
+         */
+        Steer(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Steers the range, or splits it in two.
+         *
+         * @author Toby Essex
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= BOIDS_PER_WORKER) {
+                steer(from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+
+            invokeAll(new Steer(from, middle), new Steer(middle, to));
+        }
+    }
+}
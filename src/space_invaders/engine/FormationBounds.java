@@ -0,0 +1,145 @@
+package space_invaders.engine;
+
+import java.util.Arrays;
+
+/**
+ * The space covered by each column and each row of a formation. <br>
+ * A column runs from the left edge of its leftmost member to the right edge of its rightmost, and a row from the top of
+ * its highest member to the bottom of its lowest. Members march one at a time, so columns and rows can overlap a little.
+ * An empty column or row covers nothing. <br>
+ * Columns and rows are grouped into at most {@link FormationBounds#MAX_BANDS} bands each, so larger formations have
+ * several columns or rows to a band.
+ *
+ * @see FormationFilter
+ *
+ * @author Toby Essex
+ */
+public class FormationBounds {
+    /**
+     * Most bands of columns or rows, one bit each of an int mask.
+     */
+    public static final int MAX_BANDS = 32;
+
+    /**
+     * Number of columns and rows in the formation.
+     */
+    private final int columns, rows;
+
+    /**
+     * Left and right edges of each band of columns.
+     */
+    private final float[] columnLeft, columnRight;
+
+    /**
+     * Top and bottom edges of each band of rows.
+     */
+    private final float[] rowTop, rowBottom;
+
+    /**
+     * FormationBounds constructor.
+     *
+     * @param columns Number of columns.
+     * @param rows Number of rows.
+     */
+    public FormationBounds(int columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+
+        columnLeft = new float[Math.min(columns, MAX_BANDS)];
+        columnRight = new float[columnLeft.length];
+        rowTop = new float[Math.min(rows, MAX_BANDS)];
+        rowBottom = new float[rowTop.length];
+
+        clear();
+    }
+
+    /**
+     * Empties every band.
+     *
+     * @author Toby Essex
+     */
+    public void clear() {
+        Arrays.fill(columnLeft, Float.POSITIVE_INFINITY);
+        Arrays.fill(columnRight, Float.NEGATIVE_INFINITY);
+        Arrays.fill(rowTop, Float.POSITIVE_INFINITY);
+        Arrays.fill(rowBottom, Float.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Grows the bands of a column and a row to cover one of their members.
+     *
+     * @param row Row of the member.
+     * @param column Column of the member.
+     * @param left Left edge of the member.
+     * @param top Top edge of the member.
+     * @param right Right edge of the member.
+     * @param bottom Bottom edge of the member.
+     *
+     * @author Toby Essex
+     */
+    public void include(int row, int column, float left, float top, float right, float bottom) {
+        int columnBand = column * columnLeft.length / columns;
+        int rowBand = row * rowTop.length / rows;
+
+        columnLeft[columnBand] = Math.min(columnLeft[columnBand], left);
+        columnRight[columnBand] = Math.max(columnRight[columnBand], right);
+        rowTop[rowBand] = Math.min(rowTop[rowBand], top);
+        rowBottom[rowBand] = Math.max(rowBottom[rowBand], bottom);
+    }
+
+    /**
+     * @param band A band of columns, or the number of bands.
+     * @return Returns the first column in the band, or the number of columns.
+     *
+     * @author Toby Essex
+     */
+    public int getFirstColumn(int band) {
+        return (band * columns + columnLeft.length - 1) / columnLeft.length;
+    }
+
+    /**
+     * @param band A band of rows, or the number of bands.
+     * @return Returns the first row in the band, or the number of rows.
+     *
+     * @author Toby Essex
+     */
+    public int getFirstRow(int band) {
+        return (band * rows + rowTop.length - 1) / rowTop.length;
+    }
+
+    /**
+     * @return Returns the left edge of each band of columns.
+     *
+     * @author Toby Essex
+     */
+    public float[] getColumnLeft() {
+        return columnLeft;
+    }
+
+    /**
+     * @return Returns the right edge of each band of columns.
+     *
+     * @author Toby Essex
+     */
+    public float[] getColumnRight() {
+        return columnRight;
+    }
+
+    /**
+     * @return Returns the top edge of each band of rows.
+     *
+     * @author Toby Essex
+     */
+    public float[] getRowTop() {
+        return rowTop;
+    }
+
+    /**
+     * @return Returns the bottom edge of each band of rows.
+     *
+     * @author Toby Essex
+     */
+    public float[] getRowBottom() {
+        return rowBottom;
+    }
+}
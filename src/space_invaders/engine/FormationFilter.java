@@ -0,0 +1,61 @@
+package space_invaders.engine;
+
+import space_invaders.utils.Log;
+
+/**
+ * Finds which bands of columns and rows of a formation each of a batch of boxes overlaps. <br>
+ * A box can only touch a member of the formation in one of the columns and one of the rows it overlaps, so most boxes
+ * are ruled out without looking at a single member. The boxes are given as arrays of their edges so implementations can
+ * test several at once.
+ *
+ * @see FormationBounds
+ *
+ * @author Toby Essex
+ */
+public interface FormationFilter {
+    /**
+     * Name of the class that uses the incubating Vector API, only loaded if its module is present.
+     */
+    String VECTOR_FILTER = "space_invaders.engine.vector.VectorFormationFilter";
+
+    /**
+     * Finds the columns and rows a range of boxes overlap.
+     *
+     * @param left Left edge of each box.
+     * @param top Top edge of each box.
+     * @param right Right edge of each box.
+     * @param bottom Bottom edge of each box.
+     * @param from Index of the first box in the range.
+     * @param to Index after the last box in the range.
+     * @param bounds The formation's columns and rows.
+     * @param columnMasks Written with each box's bands of columns, bit n set if it overlaps the n-th band.
+     * @param rowMasks Written with each box's bands of rows, bit n set if it overlaps the n-th band.
+     *
+     * @author Toby Essex
+     */
+    void overlaps(float[] left, float[] top, float[] right, float[] bottom, int from, int to,
+                  FormationBounds bounds, int[] columnMasks, int[] rowMasks);
+
+    /**
+     * Creates the fastest filter available. <br>
+     * The Vector API is only used if the game was started with {@code --add-modules jdk.incubator.vector}, and can be
+     * turned off with {@code -Dspace_invaders.vectorTests=false}.
+     *
+     * @return Returns the filter.
+     *
+     * @author Toby Essex
+     */
+    static FormationFilter create() {
+        boolean isWanted = Boolean.parseBoolean(System.getProperty("space_invaders.vectorTests", "true"));
+
+        if (isWanted && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (FormationFilter) Class.forName(VECTOR_FILTER).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                Log.error("FormationFilter.create", "Vector API unavailable, using scalar hit tests", e);
+            }
+        }
+
+        return new ScalarFormationFilter();
+    }
+}
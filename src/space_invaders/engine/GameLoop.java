@@ -0,0 +1,187 @@
+package space_invaders.engine;
+
+import space_invaders.utils.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the simulation on its own thread at a fixed tick rate, separate from drawing. <br>
+ * Work that must not race with the simulation (e.g. restarting the game from a button) is posted to the loop and run
+ * at the start of the next tick.
+ *
+ * @author Toby Essex
+ */
+public class GameLoop implements Runnable {
+    /**
+     * Number of simulation ticks per second. <br>
+     * Can be set with "-Dspace_invaders.tickRate", drawing is interpolated so the game stays smooth at lower rates.
+     */
+    public static final int TICK_RATE = Math.max(1, Integer.getInteger("space_invaders.tickRate", 60));
+
+    /**
+     * Tick rate the game's speeds were designed for (one tick per frame at 60 frames per second).
+     */
+    private static final int BASE_TICK_RATE = 60;
+
+    /**
+     * Length of one tick in nanoseconds.
+     */
+    private static final long TICK_LENGTH = 1_000_000_000L / TICK_RATE;
+
+    /**
+     * If the loop falls this many ticks behind it skips ahead instead of trying to catch up.
+     */
+    private static final int MAX_CATCH_UP = 5;
+
+    /**
+     * Simulation step run once per tick.
+     */
+    private Runnable tick;
+
+    /**
+     * Work posted from other threads, run on the loop's thread before the next tick.
+     */
+    private ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The loop's thread.
+     */
+    private Thread thread;
+
+    /**
+     * If true the loop is running.
+     */
+    private volatile boolean isRunning = false;
+
+    /**
+     * Time the last tick took to run, in nanoseconds.
+     */
+    private volatile long lastTickTime = 0;
+
+    /**
+     * GameLoop constructor.
+     *
+     * @param tick Simulation step run once per tick.
+     */
+    public GameLoop(Runnable tick) {
+        this.tick = tick;
+    }
+
+    /**
+     * Starts the loop's thread.
+     *
+     * @author Toby Essex
+     */
+    public synchronized void start() {
+        if (isRunning)
+            return;
+
+        isRunning = true;
+
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop after the current tick.
+     *
+     * @author Toby Essex
+     */
+    public synchronized void stop() {
+        isRunning = false;
+    }
+
+    /**
+     * Runs the given work on the loop's thread before the next tick.
+     *
+     * @param command Work to run.
+     *
+     * @author Toby Essex
+     */
+    public void post(Runnable command) {
+        commands.add(command);
+    }
+
+    /**
+     * Scales a speed designed for 60 ticks per second to the current tick rate.
+     *
+     * @param speed Distance moved per tick at 60 ticks per second.
+     * @return Returns the distance to move per tick at the current tick rate.
+     *
+     * @author Toby Essex
+     */
+    public static int perTick(int speed) {
+        return Math.round((float) speed * BASE_TICK_RATE / TICK_RATE);
+    }
+
+    /**
+     * @param speed Distance moved per tick at 60 ticks per second.
+     * @return Returns the distance to move per tick at the current tick rate.
+     *
+     * @see GameLoop#perTick(int)
+     *
+     * @author Toby Essex
+     */
+    public static float perTick(float speed) {
+        return speed * BASE_TICK_RATE / TICK_RATE;
+    }
+
+    /**
+     * Works out how far the renderer is between the previous tick and the latest one.
+     *
+     * @param tickTime Time the latest tick was published, in nanoseconds.
+     * @return Returns the fraction of a tick that has passed since, from 0 to 1.
+     *
+     * @author Toby Essex
+     */
+    public static float alpha(long tickTime) {
+        float alpha = (float) (System.nanoTime() - tickTime) / TICK_LENGTH;
+
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    /**
+     * @return Returns the time the last tick took to run, in nanoseconds.
+     *
+     * @author Toby Essex
+     */
+    public long getLastTickTime() {
+        return lastTickTime;
+    }
+
+    /**
+     * The loop itself, runs a tick every {@link GameLoop#TICK_LENGTH} nanoseconds.
+     *
+     * @author Toby Essex
+     */
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime();
+
+        while (isRunning) {
+            long start = System.nanoTime();
+
+            try {
+                for (Runnable command; (command = commands.poll()) != null; )
+                    command.run();
+
+                tick.run();
+            } catch (RuntimeException e) {
+                // Keep the game running, a single bad tick should not kill the simulation
+                Log.error("GameLoop.run", "Error during simulation tick", e);
+            }
+
+            long now = System.nanoTime();
+            lastTickTime = now - start;
+            nextTick += TICK_LENGTH;
+
+            if (now - nextTick > MAX_CATCH_UP * TICK_LENGTH)
+                nextTick = now;
+
+            while ((now = System.nanoTime()) < nextTick)
+                LockSupport.parkNanos(nextTick - now);
+        }
+    }
+}
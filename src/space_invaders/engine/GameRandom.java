@@ -0,0 +1,46 @@
+package space_invaders.engine;
+
+import java.util.Random;
+
+/**
+ * A stream of the game's random numbers. <br>
+ * Every stream is seeded from the same game seed and its own name, and belongs to the resource its numbers decide (e.g.
+ * the aliens' stream decides where they fire from). Only systems that write that resource draw from it, so the
+ * {@link JobGraph} never runs two systems drawing from one stream at once and they draw in the order they were added. A
+ * game played with the same seed and the same inputs then plays out the same whether its jobs are run in parallel or
+ * not. The seed can be set with {@code -Dspace_invaders.seed}.
+ *
+ * @author Toby Essex
+ */
+final public class GameRandom {
+    /**
+     * Seed of the game, from the system property or the clock.
+     */
+    private static final long SEED = Long.getLong("space_invaders.seed", System.nanoTime());
+
+    /**
+     * The stream's generator.
+     */
+    private final Random random;
+
+    /**
+     * GameRandom constructor.
+     *
+     * @param name Name of the stream, different for every stream so each gets its own numbers.
+     */
+    public GameRandom(String name) {
+        // Spread the name's hash over every bit so streams with similar names don't start alike
+        random = new Random(SEED ^ name.hashCode() * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Used in place of {@link Math#random()}.
+     *
+     * @return Returns the next random number, from 0 (inclusive) to 1 (exclusive).
+     *
+     * @author Toby Essex
+     */
+    public double next() {
+        return random.nextDouble();
+    }
+}
@@ -0,0 +1,142 @@
+package space_invaders.engine;
+
+/**
+ * Lock-free single producer, single consumer ring buffer of timestamped key events. <br>
+ * The thread receiving key events is the only producer and the game loop is the only consumer. The consumer drains
+ * every waiting event, in order, into a {@link KeyState} at the start of each tick. <br>
+ * If the buffer is full the event is dropped and counted.
+ *
+ * @author Toby Essex
+ */
+public class InputBuffer {
+    /**
+     * Number of events the buffer can hold, must be a power of two.
+     */
+    private static final int CAPACITY = 256;
+
+    /**
+     * Key code of each event.
+     */
+    private final int[] keyCodes = new int[CAPACITY];
+
+    /**
+     * True if the event is a key press, false if it is a key release.
+     */
+    private final boolean[] isPress = new boolean[CAPACITY];
+
+    /**
+     * Time each event was received, in nanoseconds.
+     */
+    private final long[] times = new long[CAPACITY];
+
+    /**
+     * Number of events ever written. Only written by the producer.
+     */
+    private volatile long head = 0;
+
+    /**
+     * Number of events ever read. Only written by the consumer.
+     */
+    private volatile long tail = 0;
+
+    /**
+     * Number of events dropped because the buffer was full. Only written by the producer.
+     */
+    private volatile long dropped = 0;
+
+    /**
+     * Time between the most recently drained event being received and it being applied, in nanoseconds.
+     */
+    private volatile long lastLatency = 0;
+
+    /**
+     * Longest time between an event being received and it being applied, in nanoseconds.
+     */
+    private volatile long maxLatency = 0;
+
+    /**
+     * Adds a key event, called by the producer.
+     *
+     * @param keyCode Key code of the key.
+     * @param pressed True if the key was pressed, false if it was released.
+     * @return Returns false if the buffer was full and the event was dropped.
+     *
+     * @author Toby Essex
+     */
+    public boolean offer(int keyCode, boolean pressed) {
+        long h = head;
+
+        if (h - tail == CAPACITY) {
+            dropped++;
+            return false;
+        }
+
+        int slot = (int) (h & (CAPACITY - 1));
+        keyCodes[slot] = keyCode;
+        isPress[slot] = pressed;
+        times[slot] = System.nanoTime();
+
+        // Publishing the new head makes the slot visible to the consumer
+        head = h + 1;
+
+        return true;
+    }
+
+    /**
+     * Applies every waiting event to the key state, in the order they happened. Called by the consumer.
+     *
+     * @param keys Key state to update.
+     *
+     * @author Toby Essex
+     */
+    public void drain(KeyState keys) {
+        long t = tail;
+        long h = head;
+        long now = System.nanoTime();
+
+        keys.clearPressed();
+
+        for (; t < h; t++) {
+            int slot = (int) (t & (CAPACITY - 1));
+
+            if (isPress[slot]) {
+                keys.press(keyCodes[slot]);
+            } else {
+                keys.release(keyCodes[slot]);
+            }
+
+            lastLatency = now - times[slot];
+            maxLatency = Math.max(maxLatency, lastLatency);
+        }
+
+        // Publishing the new tail hands the slots back to the producer
+        tail = t;
+    }
+
+    /**
+     * @return Returns the time between the most recent key event being received and it being applied, in nanoseconds.
+     *
+     * @author Toby Essex
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * @return Returns the longest time between a key event being received and it being applied, in nanoseconds.
+     *
+     * @author Toby Essex
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * @return Returns the number of key events dropped because the buffer was full.
+     *
+     * @author Toby Essex
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,190 @@
+package space_invaders.engine;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a tick's systems as a graph of jobs on the fork/join pool. <br>
+ * Each job declares the resources it reads and writes, as bit masks. A job depends on every job added before it that
+ * writes something it reads or writes, or reads something it writes. Jobs are grouped into stages by their longest chain
+ * of dependencies, and the jobs of a stage run at the same time. <br>
+ * Jobs that conflict always run in the order they were added and jobs that run together share nothing they write, so the
+ * result is the same as running every job in order. Any randomness must be drawn from a {@link GameRandom} stream that
+ * belongs to a resource the job writes, so each stream's numbers are drawn in the same order.
+ *
+ * @author Toby Essex
+ */
+public class JobGraph {
+    /**
+     * If false every job is run in order on the calling thread, e.g. to compare against the parallel run.
+     */
+    private static final boolean IS_PARALLEL = Boolean.parseBoolean(System.getProperty("space_invaders.parallelJobs", "true"));
+
+    /**
+     * Pool the jobs are run on.
+     */
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Every job, in the order they were added.
+     */
+    private ArrayList<Job> jobs = new ArrayList<>();
+
+    /**
+     * Jobs grouped by stage, each stage only depends on the ones before it.
+     */
+    private ArrayList<ArrayList<Job>> stages = new ArrayList<>();
+
+    /**
+     * Adds a job after every job already added.
+     *
+     * @param name Name of the job, used when it fails.
+     * @param reads Resources the job reads.
+     * @param writes Resources the job writes.
+     * @param system Work the job does.
+     * @return Returns this graph, so jobs can be chained.
+     *
+     * @author Toby Essex
+     */
+    public JobGraph add(String name, int reads, int writes, Runnable system) {
+        Job job = new Job(name, reads, writes, system);
+
+        for (Job earlier : jobs) {
+            boolean isConflict = (earlier.writes & (reads | writes)) != 0 || (earlier.reads & writes) != 0;
+
+            if (isConflict)
+                job.stage = Math.max(job.stage, earlier.stage + 1);
+        }
+
+        while (stages.size() <= job.stage)
+            stages.add(new ArrayList<>());
+
+        stages.get(job.stage).add(job);
+        jobs.add(job);
+
+        return this;
+    }
+
+    /**
+     * Runs every job, waiting for each stage to finish before starting the next. <br>
+     * The first job of a stage is run on the calling thread and the rest on the pool.
+     *
+     * @author Toby Essex
+     */
+    public void run() {
+        if (!IS_PARALLEL) {
+            jobs.forEach(Job::compute);
+            return;
+        }
+
+        for (ArrayList<Job> stage : stages) {
+            for (int i = 1; i < stage.size(); i++) {
+                stage.get(i).reinitialize();
+                pool.execute(stage.get(i));
+            }
+
+            Throwable failure = null;
+
+            try {
+                stage.get(0).compute();
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            }
+
+            // Every forked job is joined even if one failed, so none is still running when the next tick reinitialises
+            // it. Joined in order, so if more than one fails it is always the same failure that is thrown
+            for (int i = 1; i < stage.size(); i++) {
+                try {
+                    stage.get(i).join();
+                } catch (RuntimeException | Error e) {
+                    if (failure == null)
+                        failure = e;
+                    else
+                        failure.addSuppressed(e);
+                }
+            }
+
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+
+            if (failure != null)
+                throw (Error) failure;
+        }
+    }
+
+    /**
+     * @return Returns the number of jobs added.
+     *
+     * @author Toby Essex
+     */
+    public int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * @return Returns the number of stages the jobs are run in.
+     *
+     * @author Toby Essex
+     */
+    public int getStageCount() {
+        return stages.size();
+    }
+
+    /**
+     * A system and the resources it reads and writes. Reused every tick, and never serialized.
+     *
+     * @author Toby Essex
+     */
+    @SuppressWarnings("serial")
+    private static class Job extends RecursiveAction {
+        /**
+         * Name of the job.
+         */
+        private final String name;
+
+        /**
+         * Resources the job reads and writes.
+         */
+        private final int reads, writes;
+
+        /**
+         * Work the job does.
+         */
+        private final Runnable system;
+
+        /**
+         * Stage the job runs in.
+         */
+        private int stage = 0;
+
+        /**
+         * Job constructor.
+         *
+         * @param name Name of the job.
+         * @param reads Resources the job reads.
+         * @param writes Resources the job writes.
+         * @param system Work the job does.
+         */
+        Job(String name, int reads, int writes, Runnable system) {
+            this.name = name;
+            this.reads = reads;
+            this.writes = writes;
+            this.system = system;
+        }
+
+        /**
+         * Runs the job's system.
+         *
+         * @author Toby Essex
+         */
+        @Override
+        protected void compute() {
+            try {
+                system.run();
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Job '" + name + "' failed", e);
+            }
+        }
+    }
+}
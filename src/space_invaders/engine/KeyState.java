@@ -0,0 +1,94 @@
+package space_invaders.engine;
+
+/**
+ * Which keys are held down, sampled once per tick from the {@link InputBuffer}. <br>
+ * Keys are stored as bits indexed by key code, so any number of keys (and players) can be held at once.
+ *
+ * @author Toby Essex
+ */
+public class KeyState {
+    /**
+     * Number of key codes that can be tracked. Any key code above this is ignored.
+     */
+    static final int MAX_KEY_CODE = 256;
+
+    /**
+     * Bit set of the keys currently held down.
+     */
+    private long[] down = new long[MAX_KEY_CODE / 64];
+
+    /**
+     * Bit set of the keys pressed since the last tick, kept even if the key was released before the tick.
+     */
+    private long[] pressed = new long[MAX_KEY_CODE / 64];
+
+    /**
+     * @param keyCode Key code of the key.
+     * @return Returns true if the key is held down.
+     *
+     * @author Toby Essex
+     */
+    public boolean isDown(int keyCode) {
+        return isSet(down, keyCode);
+    }
+
+    /**
+     * @param keyCode Key code of the key.
+     * @return Returns true if the key was pressed (or auto repeated) since the previous tick.
+     *
+     * @author Toby Essex
+     */
+    public boolean wasPressed(int keyCode) {
+        return isSet(pressed, keyCode);
+    }
+
+    /**
+     * Records a key being pressed.
+     *
+     * @param keyCode Key code of the key.
+     *
+     * @author Toby Essex
+     */
+    void press(int keyCode) {
+        if (keyCode < 0 || keyCode >= MAX_KEY_CODE)
+            return;
+
+        down[keyCode >>> 6] |= 1L << keyCode;
+        pressed[keyCode >>> 6] |= 1L << keyCode;
+    }
+
+    /**
+     * Records a key being released.
+     *
+     * @param keyCode Key code of the key.
+     *
+     * @author Toby Essex
+     */
+    void release(int keyCode) {
+        if (keyCode < 0 || keyCode >= MAX_KEY_CODE)
+            return;
+
+        down[keyCode >>> 6] &= ~(1L << keyCode);
+    }
+
+    /**
+     * Forgets which keys were pressed, called at the start of each tick before the new events are applied.
+     *
+     * @author Toby Essex
+     */
+    void clearPressed() {
+        for (int i = 0; i < pressed.length; i++)
+            pressed[i] = 0;
+    }
+
+    /**
+     * @param bits Bit set to check.
+     * @param keyCode Key code of the key.
+     * @return Returns true if the key's bit is set.
+     *
+     * @author Toby Essex
+     */
+    private static boolean isSet(long[] bits, int keyCode) {
+        return keyCode >= 0 && keyCode < MAX_KEY_CODE && (bits[keyCode >>> 6] & (1L << keyCode)) != 0;
+    }
+}
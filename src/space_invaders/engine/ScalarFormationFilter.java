@@ -0,0 +1,48 @@
+package space_invaders.engine;
+
+/**
+ * Tests one box at a time against every column and row. Used when the Vector API is not available, and for the boxes
+ * left over after the last full vector.
+ *
+ * @author Toby Essex
+ */
+public class ScalarFormationFilter implements FormationFilter {
+    /**
+     * Finds the columns and rows a range of boxes overlap.
+     *
+     * @param left Left edge of each box.
+     * @param top Top edge of each box.
+     * @param right Right edge of each box.
+     * @param bottom Bottom edge of each box.
+     * @param from Index of the first box in the range.
+     * @param to Index after the last box in the range.
+     * @param bounds The formation's columns and rows.
+     * @param columnMasks Written with each box's bands of columns, bit n set if it overlaps the n-th band.
+     * @param rowMasks Written with each box's bands of rows, bit n set if it overlaps the n-th band.
+     *
+     * @author Toby Essex
+     */
+    @Override
+    public void overlaps(float[] left, float[] top, float[] right, float[] bottom, int from, int to,
+                         FormationBounds bounds, int[] columnMasks, int[] rowMasks) {
+        float[] columnLeft = bounds.getColumnLeft(), columnRight = bounds.getColumnRight();
+        float[] rowTop = bounds.getRowTop(), rowBottom = bounds.getRowBottom();
+
+        for (int i = from; i < to; i++) {
+            int columns = 0, rows = 0;
+
+            for (int c = 0; c < columnLeft.length; c++) {
+                if (right[i] >= columnLeft[c] && left[i] <= columnRight[c])
+                    columns |= 1 << c;
+            }
+
+            for (int r = 0; r < rowTop.length; r++) {
+                if (bottom[i] >= rowTop[r] && top[i] <= rowBottom[r])
+                    rows |= 1 << r;
+            }
+
+            columnMasks[i] = columns;
+            rowMasks[i] = rows;
+        }
+    }
+}
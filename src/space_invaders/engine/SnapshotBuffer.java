@@ -0,0 +1,70 @@
+package space_invaders.engine;
+
+/**
+ * Hands world snapshots from the simulation thread to the render thread without either waiting on the other. <br>
+ * Three snapshots are rotated: the simulation writes the back snapshot and publishes it, the renderer draws the front
+ * snapshot, and the most recently published snapshot waits in between. Only the swaps are synchronised, never the
+ * writing or drawing.
+ *
+ * @author Toby Essex
+ */
+public class SnapshotBuffer {
+    /**
+     * Snapshot being written by the simulation.
+     */
+    private WorldSnapshot back = new WorldSnapshot();
+
+    /**
+     * Most recently published snapshot, not yet picked up by the renderer.
+     */
+    private WorldSnapshot ready = new WorldSnapshot();
+
+    /**
+     * Snapshot being drawn by the renderer.
+     */
+    private WorldSnapshot front = new WorldSnapshot();
+
+    /**
+     * If true a snapshot has been published since the renderer last picked one up.
+     */
+    private boolean hasNew = false;
+
+    /**
+     * @return Returns the snapshot the simulation should write to. Only called from the simulation thread.
+     *
+     * @author Toby Essex
+     */
+    public WorldSnapshot getBack() {
+        return back;
+    }
+
+    /**
+     * Publishes the back snapshot once the simulation has finished writing it.
+     *
+     * @author Toby Essex
+     */
+    public synchronized void publish() {
+        back.setTime(System.nanoTime());
+
+        WorldSnapshot published = back;
+        back = ready;
+        ready = published;
+        hasNew = true;
+    }
+
+    /**
+     * @return Returns the latest published snapshot to draw. Only called from the render thread.
+     *
+     * @author Toby Essex
+     */
+    public synchronized WorldSnapshot acquire() {
+        if (hasNew) {
+            WorldSnapshot latest = ready;
+            ready = front;
+            front = latest;
+            hasNew = false;
+        }
+
+        return front;
+    }
+}
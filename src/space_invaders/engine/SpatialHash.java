@@ -0,0 +1,384 @@
+package space_invaders.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Uniform grid broad-phase, rebuilt every tick. <br>
+ * Objects are added with their bounding box and a collision layer, and queries only return objects on the layers asked
+ * for whose boxes lie in the same cells. Objects outside the grid are kept in its edge cells. <br>
+ * Cells are stored as linked lists in flat arrays that only grow, so once they are large enough rebuilding the grid does
+ * not allocate. Each object's entry is found through an identity hash table, so objects can be removed without
+ * searching and without storing anything in the objects themselves.
+ *
+ * @param <T> Type of object stored in the grid.
+ *
+ * @author Toby Essex
+ */
+public class SpatialHash<T> {
+    /**
+     * Width and height of each cell.
+     */
+    private final int cellSize;
+
+    /**
+     * Number of cells along each axis.
+     */
+    private final int columns, rows;
+
+    /**
+     * Index of the first node in each cell, -1 if the cell is empty.
+     */
+    private final int[] cellHeads;
+
+    /**
+     * Entry each node refers to, and the next node in the same cell (-1 at the end of a cell).
+     */
+    private int[] nodeEntries = new int[256], nodeNext = new int[256];
+
+    /**
+     * Number of nodes in use.
+     */
+    private int nodeCount;
+
+    /**
+     * Objects added to the grid.
+     */
+    private Object[] objects = new Object[128];
+
+    /**
+     * Bounding box of each object.
+     */
+    private float[] lefts = new float[128], tops = new float[128], rights = new float[128], bottoms = new float[128];
+
+    /**
+     * Collision layer of each object, 0 once removed.
+     */
+    private int[] layers = new int[128];
+
+    /**
+     * Query each object was last returned by, so an object spread over several cells is only returned once.
+     */
+    private int[] stamps = new int[128];
+
+    /**
+     * Open addressing hash table from each object to its entry, -1 for an empty slot. Kept at most half full.
+     */
+    private int[] table = new int[256];
+
+    /**
+     * Number of objects added.
+     */
+    private int count;
+
+    /**
+     * Incremented by every query.
+     */
+    private int stamp;
+
+    /**
+     * SpatialHash constructor.
+     *
+     * @param width Width of the area covered.
+     * @param height Height of the area covered.
+     * @param cellSize Width and height of each cell. Best around the size of the larger objects.
+     */
+    public SpatialHash(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+        this.cellHeads = new int[columns * rows];
+
+        clear();
+    }
+
+    /**
+     * Removes every object from the grid.
+     *
+     * @author Toby Essex
+     */
+    public void clear() {
+        Arrays.fill(cellHeads, -1);
+        Arrays.fill(objects, 0, count, null);
+        Arrays.fill(table, -1);
+
+        nodeCount = 0;
+        count = 0;
+    }
+
+    /**
+     * Adds an object to every cell its bounding box covers.
+     *
+     * @param object Object to add.
+     * @param left Left edge of the object.
+     * @param top Top edge of the object.
+     * @param right Right edge of the object.
+     * @param bottom Bottom edge of the object.
+     * @param layer Collision layer the object is on, a single bit.
+     *
+     * @author Toby Essex
+     */
+    public void insert(T object, float left, float top, float right, float bottom, int layer) {
+        if (count == objects.length)
+            growEntries();
+
+        int entry = count++;
+
+        objects[entry] = object;
+        lefts[entry] = left;
+        tops[entry] = top;
+        rights[entry] = right;
+        bottoms[entry] = bottom;
+        layers[entry] = layer;
+        stamps[entry] = stamp;
+
+        if (count * 2 > table.length)
+            growTable();
+        else
+            addToTable(entry);
+
+        int lastColumn = column(right), lastRow = row(bottom);
+
+        for (int row = row(top); row <= lastRow; row++) {
+            for (int column = column(left); column <= lastColumn; column++) {
+                if (nodeCount == nodeEntries.length) {
+                    nodeEntries = Arrays.copyOf(nodeEntries, nodeCount * 2);
+                    nodeNext = Arrays.copyOf(nodeNext, nodeCount * 2);
+                }
+
+                int cell = row * columns + column;
+
+                nodeEntries[nodeCount] = entry;
+                nodeNext[nodeCount] = cellHeads[cell];
+                cellHeads[cell] = nodeCount++;
+            }
+        }
+    }
+
+    /**
+     * Removes an object so it is no longer returned by queries, e.g. an alien that has been killed this tick.
+     *
+     * Nothing happens if the object has not been added since the grid was cleared.
+     *
+     * @param object Object to remove.
+     *
+     * @author Toby Essex
+     */
+    public void remove(T object) {
+        int mask = table.length - 1;
+
+        // An object added more than once is removed everywhere it was added
+        for (int slot = slotOf(object); table[slot] != -1; slot = (slot + 1) & mask) {
+            if (objects[table[slot]] == object)
+                layers[table[slot]] = 0;
+        }
+    }
+
+    /**
+     * Finds every object whose bounding box overlaps a box.
+     *
+     * @param left Left edge of the box.
+     * @param top Top edge of the box.
+     * @param right Right edge of the box.
+     * @param bottom Bottom edge of the box.
+     * @param layerMask Collision layers to include.
+     * @param results List the objects found are written to, it is cleared first.
+     *
+     * @author Toby Essex
+     */
+    public void query(float left, float top, float right, float bottom, int layerMask, ArrayList<T> results) {
+        search(left, top, right, bottom, 0, 0, -1, layerMask, results);
+    }
+
+    /**
+     * Finds every object whose bounding box overlaps a box, without marking them as found. <br>
+     * An object spread over several cells can be returned more than once, but nothing in the grid is changed, so several
+     * threads can search at once as long as no objects are added or removed meanwhile.
+     *
+     * @param left Left edge of the box.
+     * @param top Top edge of the box.
+     * @param right Right edge of the box.
+     * @param bottom Bottom edge of the box.
+     * @param layerMask Collision layers to include.
+     * @param results List the objects found are written to, it is cleared first.
+     *
+     * @author Toby Essex
+     */
+    @SuppressWarnings("unchecked")
+    public void collect(float left, float top, float right, float bottom, int layerMask, ArrayList<T> results) {
+        results.clear();
+
+        int lastColumn = column(right), lastRow = row(bottom);
+
+        for (int row = row(top); row <= lastRow; row++) {
+            for (int column = column(left); column <= lastColumn; column++) {
+                for (int node = cellHeads[row * columns + column]; node != -1; node = nodeNext[node]) {
+                    int entry = nodeEntries[node];
+
+                    if ((layers[entry] & layerMask) == 0)
+                        continue;
+
+                    if (lefts[entry] > right || rights[entry] < left || tops[entry] > bottom || bottoms[entry] < top)
+                        continue;
+
+                    results.add((T) objects[entry]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds every object whose bounding box overlaps a circle.
+     *
+     * @param x X coordinate of the circle's centre.
+     * @param y Y coordinate of the circle's centre.
+     * @param radius Radius of the circle.
+     * @param layerMask Collision layers to include.
+     * @param results List the objects found are written to, it is cleared first.
+     *
+     * @author Toby Essex
+     */
+    public void queryRadius(float x, float y, float radius, int layerMask, ArrayList<T> results) {
+        search(x - radius, y - radius, x + radius, y + radius, x, y, radius, layerMask, results);
+    }
+
+    /**
+     * @return Returns the number of objects in the grid.
+     *
+     * @author Toby Essex
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Collects the objects in the cells under a box whose own boxes overlap it, and optionally a circle within it.
+     *
+     * @param left Left edge of the box.
+     * @param top Top edge of the box.
+     * @param right Right edge of the box.
+     * @param bottom Bottom edge of the box.
+     * @param x X coordinate of the circle's centre.
+     * @param y Y coordinate of the circle's centre.
+     * @param radius Radius of the circle, negative to only test the box.
+     * @param layerMask Collision layers to include.
+     * @param results List the objects found are written to, it is cleared first.
+     *
+     * @author Toby Essex
+     */
+    @SuppressWarnings("unchecked")
+    private void search(float left, float top, float right, float bottom, float x, float y, float radius,
+                        int layerMask, ArrayList<T> results) {
+        results.clear();
+        stamp++;
+
+        int lastColumn = column(right), lastRow = row(bottom);
+
+        for (int row = row(top); row <= lastRow; row++) {
+            for (int column = column(left); column <= lastColumn; column++) {
+                for (int node = cellHeads[row * columns + column]; node != -1; node = nodeNext[node]) {
+                    int entry = nodeEntries[node];
+
+                    if ((layers[entry] & layerMask) == 0 || stamps[entry] == stamp)
+                        continue;
+
+                    stamps[entry] = stamp;
+
+                    if (lefts[entry] > right || rights[entry] < left || tops[entry] > bottom || bottoms[entry] < top)
+                        continue;
+
+                    if (radius >= 0) {
+                        // Distance from the centre to the closest point of the object's box
+                        float dx = x - Math.max(lefts[entry], Math.min(x, rights[entry]));
+                        float dy = y - Math.max(tops[entry], Math.min(y, bottoms[entry]));
+
+                        if (dx * dx + dy * dy > radius * radius)
+                            continue;
+                    }
+
+                    results.add((T) objects[entry]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param x X coordinate.
+     * @return Returns the column the coordinate is in, clamped to the grid.
+     *
+     * @author Toby Essex
+     */
+    private int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / cellSize)));
+    }
+
+    /**
+     * @param y Y coordinate.
+     * @return Returns the row the coordinate is in, clamped to the grid.
+     *
+     * @author Toby Essex
+     */
+    private int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize)));
+    }
+
+    /**
+     * @param object An object.
+     * @return Returns the slot of the hash table the search for the object starts from.
+     *
+     * @author Toby Essex
+     */
+    private int slotOf(Object object) {
+        // Identity hashes can be close together, multiplying spreads them over the table
+        int hash = System.identityHashCode(object) * 0x9E3779B9;
+
+        return (hash ^ hash >>> 16) & (table.length - 1);
+    }
+
+    /**
+     * Adds an entry to the hash table, in the first empty slot from its object's slot.
+     *
+     * @param entry The entry.
+     *
+     * @author Toby Essex
+     */
+    private void addToTable(int entry) {
+        int mask = table.length - 1;
+        int slot = slotOf(objects[entry]);
+
+        while (table[slot] != -1)
+            slot = (slot + 1) & mask;
+
+        table[slot] = entry;
+    }
+
+    /**
+     * Doubles the size of the hash table and adds every entry to it again.
+     *
+     * @author Toby Essex
+     */
+    private void growTable() {
+        table = new int[table.length * 2];
+        Arrays.fill(table, -1);
+
+        for (int entry = 0; entry < count; entry++)
+            addToTable(entry);
+    }
+
+    /**
+     * Doubles the space for objects.
+     *
+     * @author Toby Essex
+     */
+    private void growEntries() {
+        int capacity = objects.length * 2;
+
+        objects = Arrays.copyOf(objects, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        tops = Arrays.copyOf(tops, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        bottoms = Arrays.copyOf(bottoms, capacity);
+        layers = Arrays.copyOf(layers, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+    }
+}
@@ -0,0 +1,157 @@
+package space_invaders.engine;
+
+import java.util.Arrays;
+
+/**
+ * One axis sort-and-sweep broad-phase between two groups of boxes. <br>
+ * Boxes are sorted by their left edge, then swept once keeping only the boxes still open along the X axis, so finding
+ * every overlapping pair is O(n log n) plus the number of pairs rather than testing all pairs. <br>
+ * Only pairs with one box from each group are reported, so boxes of the same group stacked in a column are never
+ * paired up. The open boxes of each group are kept apart and a box is only compared with those of the other group, along
+ * the Y axis as well before the pair is reported. <br>
+ * The arrays only grow, so once they are large enough a sweep does not allocate.
+ *
+ * @author Toby Essex
+ */
+public class SweepAndPrune {
+    /**
+     * Edges of each box.
+     */
+    private float[] lefts = new float[64], tops = new float[64], rights = new float[64], bottoms = new float[64];
+
+    /**
+     * Group of each box, 0 or 1.
+     */
+    private int[] groups = new int[64];
+
+    /**
+     * Boxes sorted by their left edge. Each key holds the left edge (as a sortable int) above the box's index.
+     */
+    private long[] order = new long[64];
+
+    /**
+     * Boxes of each group still open during a sweep, in no particular order.
+     */
+    private int[][] open = {new int[64], new int[64]};
+
+    /**
+     * Number of open boxes of each group during a sweep.
+     */
+    private int[] openCount = new int[2];
+
+    /**
+     * Number of boxes added.
+     */
+    private int count;
+
+    /**
+     * Called with each pair of boxes that overlap.
+     *
+     * @author Toby Essex
+     */
+    public interface PairConsumer {
+        /**
+         * @param a Index of the box that starts first along the X axis, in the order they were added.
+         * @param b Index of the other box.
+         */
+        void accept(int a, int b);
+    }
+
+    /**
+     * Removes every box.
+     *
+     * @author Toby Essex
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Adds a box.
+     *
+     * @param left Left edge.
+     * @param top Top edge.
+     * @param right Right edge.
+     * @param bottom Bottom edge.
+     * @param group Group of the box, 0 or 1. Boxes are only paired with boxes of the other group.
+     * @return Returns the box's index, passed back to the {@link PairConsumer}.
+     *
+     * @author Toby Essex
+     */
+    public int add(float left, float top, float right, float bottom, int group) {
+        if (count == lefts.length) {
+            int capacity = count * 2;
+
+            lefts = Arrays.copyOf(lefts, capacity);
+            tops = Arrays.copyOf(tops, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+            bottoms = Arrays.copyOf(bottoms, capacity);
+            groups = Arrays.copyOf(groups, capacity);
+            order = Arrays.copyOf(order, capacity);
+            open[0] = Arrays.copyOf(open[0], capacity);
+            open[1] = Arrays.copyOf(open[1], capacity);
+        }
+
+        lefts[count] = left;
+        tops[count] = top;
+        rights[count] = right;
+        bottoms[count] = bottom;
+        groups[count] = group;
+
+        return count++;
+    }
+
+    /**
+     * Finds every pair of boxes from different groups that overlap.
+     *
+     * @param consumer Called once for each overlapping pair.
+     *
+     * @author Toby Essex
+     */
+    public void sweep(PairConsumer consumer) {
+        for (int i = 0; i < count; i++)
+            order[i] = ((long) sortable(lefts[i]) << 32) | i;
+
+        Arrays.sort(order, 0, count);
+
+        openCount[0] = 0;
+        openCount[1] = 0;
+
+        for (int i = 0; i < count; i++) {
+            int b = (int) order[i];
+            int[] others = open[1 - groups[b]];
+            int othersCount = openCount[1 - groups[b]];
+
+            for (int k = 0; k < othersCount; ) {
+                int a = others[k];
+
+                // Every box after this one starts later, so a box that ends before it starts is closed for good
+                if (rights[a] < lefts[b]) {
+                    others[k] = others[--othersCount];
+                    continue;
+                }
+
+                if (tops[a] <= bottoms[b] && bottoms[a] >= tops[b])
+                    consumer.accept(a, b);
+
+                k++;
+            }
+
+            openCount[1 - groups[b]] = othersCount;
+            open[groups[b]][openCount[groups[b]]++] = b;
+        }
+    }
+
+    /**
+     * @param value A float.
+     * @return Returns an int that sorts in the same order as the float.
+     *
+     * @author Toby Essex
+     */
+    private static int sortable(float value) {
+        int bits = Float.floatToIntBits(value);
+
+        // Negative floats sort backwards as ints, flip everything but their sign bit
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+}
@@ -0,0 +1,68 @@
+package space_invaders.engine;
+
+/**
+ * Table of the moves an entity makes, one per tick, e.g. a bullet that drifts or zig-zags. <br>
+ * Once through an optional delay at the start the rest of the table repeats.
+ *
+ * @see Archetype#TRAJECTORY
+ *
+ * @author Toby Essex
+ */
+public class Trajectory {
+    /**
+     * Distance moved along each axis at each step.
+     */
+    private final int[] xSteps, ySteps;
+
+    /**
+     * Step after each step.
+     */
+    private final int[] nextSteps;
+
+    /**
+     * Trajectory constructor.
+     *
+     * @param xSteps Distance moved along the X axis at each step.
+     * @param ySteps Distance moved along the Y axis at each step.
+     * @param delay Number of steps at the start that are not repeated.
+     */
+    public Trajectory(int[] xSteps, int[] ySteps, int delay) {
+        this.xSteps = xSteps;
+        this.ySteps = ySteps;
+
+        nextSteps = new int[xSteps.length];
+
+        for (int i = 0; i < nextSteps.length; i++)
+            nextSteps[i] = i + 1 < nextSteps.length ? i + 1 : delay;
+    }
+
+    /**
+     * @param step A step.
+     * @return Returns the distance moved along the X axis at the step.
+     *
+     * @author Toby Essex
+     */
+    public int getX(int step) {
+        return xSteps[step];
+    }
+
+    /**
+     * @param step A step.
+     * @return Returns the distance moved along the Y axis at the step.
+     *
+     * @author Toby Essex
+     */
+    public int getY(int step) {
+        return ySteps[step];
+    }
+
+    /**
+     * @param step A step.
+     * @return Returns the step after it.
+     *
+     * @author Toby Essex
+     */
+    public int next(int step) {
+        return nextSteps[step];
+    }
+}
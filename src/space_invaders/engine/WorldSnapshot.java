@@ -0,0 +1,483 @@
+package space_invaders.engine;
+
+import processing.core.PApplet;
+import space_invaders.resources.Image;
+
+import java.util.Arrays;
+
+/**
+ * Everything needed to draw one tick of the game, written by the simulation and read by the renderer. <br>
+ * The world is stored as a flat list of draw commands (filled rectangles and images) plus the values shown in the
+ * HUD. The arrays only grow, so once they are large enough writing a snapshot does not allocate. <br>
+ * Each command also stores how far it moved during the tick, so the renderer can draw it part way between the previous
+ * tick and this one. <br>
+ * In an arena wider than the window the snapshot holds the camera's view, and objects outside it are culled rather than
+ * added.
+ *
+ * @see SnapshotBuffer
+ *
+ * @author Toby Essex
+ */
+public class WorldSnapshot {
+    /**
+     * Maximum number of players in a game, the HUD values are stored for each.
+     */
+    public static final int MAX_PLAYERS = 8;
+
+    /**
+     * Moves larger than this (in pixels) are drawn straight away instead of being interpolated. <br>
+     * Keeps the alien march a step and stops objects that are reset or respawned sliding across the screen.
+     */
+    private static final float MAX_INTERPOLATION = 32;
+
+    /**
+     * How far outside the view an object is still added, as it and the camera can each be drawn up to
+     * {@link WorldSnapshot#MAX_INTERPOLATION} behind where they are.
+     */
+    private static final float CULL_MARGIN = 2 * MAX_INTERPOLATION;
+
+    /**
+     * Draw command kind for a white rectangle, positioned by its centre.
+     */
+    private static final int RECT = 0;
+
+    /**
+     * Draw command kind for an image, positioned by its top left corner.
+     */
+    private static final int IMAGE = 1;
+
+    /**
+     * Number of draw commands in this snapshot.
+     */
+    private int count = 0;
+
+    /**
+     * Kind of each draw command.
+     */
+    private int[] kinds = new int[256];
+
+    /**
+     * Image drawn by each image command.
+     */
+    private Image[] images = new Image[256];
+
+    /**
+     * Position and size of each draw command.
+     */
+    private float[] xs = new float[256], ys = new float[256], widths = new float[256], heights = new float[256];
+
+    /**
+     * How far each draw command moved during the tick.
+     */
+    private float[] dxs = new float[256], dys = new float[256];
+
+    /**
+     * Movement applied to the commands being added.
+     *
+     * @see WorldSnapshot#setMotion(float, float)
+     */
+    private float motionX, motionY;
+
+    /**
+     * Time the snapshot was published, in nanoseconds.
+     */
+    private long time;
+
+    /**
+     * Number of players in the game.
+     */
+    private int playerCount;
+
+    /**
+     * Score of each player.
+     */
+    private int[] scores = new int[MAX_PLAYERS];
+
+    /**
+     * Lives of each player.
+     */
+    private int[] lives = new int[MAX_PLAYERS];
+
+    /**
+     * The high score.
+     */
+    private int highScore;
+
+    /**
+     * Number of living aliens, bullets in flight and entities, shown in a stress test.
+     */
+    private int alienCount, bulletCount, entityCount;
+
+    /**
+     * Left edge and width of the camera's view, the whole world is in view until it is set.
+     */
+    private float viewLeft = Float.NEGATIVE_INFINITY, viewWidth = Float.POSITIVE_INFINITY;
+
+    /**
+     * How far the camera moved since the previous tick.
+     */
+    private float viewDx;
+
+    /**
+     * Number of draw commands culled as they were outside the view.
+     */
+    private int culledCount;
+
+    /**
+     * Removes every draw command so the snapshot can be written again.
+     *
+     * @author Toby Essex
+     */
+    public void clear() {
+        // Drop image references so the arrays do not keep anything alive
+        for (int i = 0; i < count; i++)
+            images[i] = null;
+
+        count = 0;
+        motionX = 0;
+        motionY = 0;
+
+        viewLeft = Float.NEGATIVE_INFINITY;
+        viewWidth = Float.POSITIVE_INFINITY;
+        viewDx = 0;
+        culledCount = 0;
+    }
+
+    /**
+     * Sets the camera's view, objects outside it are culled from then on.
+     *
+     * @param left Left edge of the view.
+     * @param width Width of the view.
+     * @param dx How far the camera moved since the previous tick.
+     *
+     * @author Toby Essex
+     */
+    public void setView(float left, float width, float dx) {
+        viewLeft = left;
+        viewWidth = width;
+        viewDx = Math.abs(dx) > MAX_INTERPOLATION ? 0 : dx;
+    }
+
+    /**
+     * @return Returns true if the snapshot has a view, so objects outside it are culled.
+     *
+     * @author Toby Essex
+     */
+    public boolean isCulling() {
+        return viewWidth != Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return Returns the left edge of the space that can be drawn, the view plus a margin.
+     *
+     * @author Toby Essex
+     */
+    public float getDrawnLeft() {
+        return viewLeft - CULL_MARGIN;
+    }
+
+    /**
+     * @return Returns the right edge of the space that can be drawn, the view plus a margin.
+     *
+     * @author Toby Essex
+     */
+    public float getDrawnRight() {
+        return viewLeft + viewWidth + CULL_MARGIN;
+    }
+
+    /**
+     * Tests if an object can be seen, counting it as culled if not.
+     *
+     * @param left Left edge of the object.
+     * @param right Right edge of the object.
+     * @return Returns true if the object overlaps the space that can be drawn, so it should be added.
+     *
+     * @author Toby Essex
+     */
+    public boolean isVisible(float left, float right) {
+        if (!isCulling() || (right >= getDrawnLeft() && left <= getDrawnRight()))
+            return true;
+
+        culledCount++;
+
+        return false;
+    }
+
+    /**
+     * Counts draw commands that were culled without being tested one at a time.
+     *
+     * @param count Number of commands culled.
+     *
+     * @author Toby Essex
+     */
+    public void addCulled(int count) {
+        culledCount += count;
+    }
+
+    /**
+     * Sets how far the commands added next have moved since the previous tick, until it is set again. <br>
+     * Objects that did not move should set it back to zero once they have been added.
+     *
+     * @param dx Distance moved along the X axis.
+     * @param dy Distance moved along the Y axis.
+     *
+     * @author Toby Essex
+     */
+    public void setMotion(float dx, float dy) {
+        boolean isJump = Math.abs(dx) > MAX_INTERPOLATION || Math.abs(dy) > MAX_INTERPOLATION;
+
+        motionX = isJump ? 0 : dx;
+        motionY = isJump ? 0 : dy;
+    }
+
+    /**
+     * Adds a white rectangle.
+     *
+     * @param x Centre X coordinates.
+     * @param y Centre Y coordinates.
+     * @param width Rectangle's width.
+     * @param height Rectangle's height.
+     *
+     * @author Toby Essex
+     */
+    public void rect(float x, float y, float width, float height) {
+        add(RECT, null, x, y, width, height);
+    }
+
+    /**
+     * Adds an image.
+     *
+     * @param image Image to draw.
+     * @param x Left X coordinates.
+     * @param y Top Y coordinates.
+     * @param width Width to draw the image at.
+     * @param height Height to draw the image at.
+     *
+     * @author Toby Essex
+     */
+    public void image(Image image, float x, float y, float width, float height) {
+        add(IMAGE, image, x, y, width, height);
+    }
+
+    /**
+     * Sets the HUD values for a player.
+     *
+     * @param index Player's index, starting at 0.
+     * @param score Player's score.
+     * @param lives Player's lives.
+     *
+     * @author Toby Essex
+     */
+    public void setPlayer(int index, int score, int lives) {
+        this.scores[index] = score;
+        this.lives[index] = lives;
+        playerCount = Math.max(playerCount, index + 1);
+    }
+
+    /**
+     * Sets the number of players in the game.
+     *
+     * @param playerCount Number of players.
+     *
+     * @author Toby Essex
+     */
+    public void setPlayerCount(int playerCount) {
+        this.playerCount = playerCount;
+    }
+
+    /**
+     * @param highScore The high score.
+     *
+     * @author Toby Essex
+     */
+    public void setHighScore(int highScore) {
+        this.highScore = highScore;
+    }
+
+    /**
+     * Sets the number of things in the world, shown in a stress test.
+     *
+     * @param alienCount Number of living aliens.
+     * @param bulletCount Number of bullets in flight.
+     * @param entityCount Number of entities.
+     *
+     * @author Toby Essex
+     */
+    public void setCounts(int alienCount, int bulletCount, int entityCount) {
+        this.alienCount = alienCount;
+        this.bulletCount = bulletCount;
+        this.entityCount = entityCount;
+    }
+
+    /**
+     * @return Returns the number of draw commands culled as they were outside the view.
+     *
+     * @author Toby Essex
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /**
+     * @return Returns the number of players in the game.
+     *
+     * @author Toby Essex
+     */
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    /**
+     * @param index Player's index, starting at 0.
+     * @return Returns the player's score.
+     *
+     * @author Toby Essex
+     */
+    public int getScore(int index) {
+        return scores[index];
+    }
+
+    /**
+     * @param index Player's index, starting at 0.
+     * @return Returns the player's lives.
+     *
+     * @author Toby Essex
+     */
+    public int getLives(int index) {
+        return lives[index];
+    }
+
+    /**
+     * @return Returns the high score.
+     *
+     * @author Toby Essex
+     */
+    public int getHighScore() {
+        return highScore;
+    }
+
+    /**
+     * @return Returns the number of living aliens.
+     *
+     * @author Toby Essex
+     */
+    public int getAlienCount() {
+        return alienCount;
+    }
+
+    /**
+     * @return Returns the number of bullets in flight.
+     *
+     * @author Toby Essex
+     */
+    public int getBulletCount() {
+        return bulletCount;
+    }
+
+    /**
+     * @return Returns the number of entities.
+     *
+     * @author Toby Essex
+     */
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    /**
+     * @param time Time the snapshot was published, in nanoseconds.
+     *
+     * @author Toby Essex
+     */
+    void setTime(long time) {
+        this.time = time;
+    }
+
+    /**
+     * @return Returns the time the snapshot was published, in nanoseconds.
+     *
+     * @author Toby Essex
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return Returns the number of draw commands.
+     *
+     * @author Toby Essex
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Draws every command in the snapshot, interpolated between the previous tick and this one. <br>
+     * With a view the commands are drawn as seen by the camera, which is interpolated in the same way.
+     *
+     * @param parent PApplet class so we can access the drawing methods.
+     * @param alpha How far between the previous tick (0) and this tick (1) to draw.
+     *
+     * @author Toby Essex
+     */
+    public void render(PApplet parent, float alpha) {
+        float behind = 1 - alpha;
+
+        parent.fill(255);
+        parent.rectMode(PApplet.CENTER);
+        parent.pushMatrix();
+
+        if (isCulling())
+            parent.translate(-(viewLeft - viewDx * behind), 0);
+
+        for (int i = 0; i < count; i++) {
+            float x = xs[i] - dxs[i] * behind;
+            float y = ys[i] - dys[i] * behind;
+
+            if (kinds[i] == RECT) {
+                parent.rect(x, y, widths[i], heights[i]);
+            } else {
+                parent.image(images[i].load(), x, y, widths[i], heights[i]);
+            }
+        }
+
+        parent.popMatrix();
+    }
+
+    /**
+     * Adds a draw command, growing the arrays if needed.
+     *
+     * @author Toby Essex
+     */
+    private void add(int kind, Image image, float x, float y, float width, float height) {
+        if (count == kinds.length)
+            grow();
+
+        kinds[count] = kind;
+        images[count] = image;
+        xs[count] = x;
+        ys[count] = y;
+        widths[count] = width;
+        heights[count] = height;
+        dxs[count] = motionX;
+        dys[count] = motionY;
+        count++;
+    }
+
+    /**
+     * Doubles the capacity of the draw command arrays.
+     *
+     * @author Toby Essex
+     */
+    private void grow() {
+        int capacity = kinds.length * 2;
+
+        kinds = Arrays.copyOf(kinds, capacity);
+        images = Arrays.copyOf(images, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        dxs = Arrays.copyOf(dxs, capacity);
+        dys = Arrays.copyOf(dys, capacity);
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Classes here drive the game rather than being part of it, such as input handling and the game loop.
+ *
+ * @author Toby Essex
+ */
+package space_invaders.engine;
@@ -0,0 +1,83 @@
+package space_invaders.engine.vector;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import space_invaders.engine.FormationBounds;
+import space_invaders.engine.ScalarFormationFilter;
+
+/**
+ * Tests a whole vector of boxes against each column and row at once, using the incubating Vector API. <br>
+ * Each lane holds one box, a column's edges are broadcast to every lane and compared, and the lanes that overlap have the
+ * column's bit set in their mask. Boxes left over after the last full vector are tested one at a time.
+ *
+ * @author Toby Essex
+ */
+public class VectorFormationFilter extends ScalarFormationFilter {
+    /**
+     * Widest vector of floats the CPU supports.
+     */
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * Vector of ints with a lane for each float lane, holding the masks.
+     */
+    private static final VectorSpecies<Integer> INTS = FLOATS.withLanes(int.class);
+
+    /**
+     * Finds the columns and rows a range of boxes overlap.
+     *
+     * @param left Left edge of each box.
+     * @param top Top edge of each box.
+     * @param right Right edge of each box.
+     * @param bottom Bottom edge of each box.
+     * @param from Index of the first box in the range.
+     * @param to Index after the last box in the range.
+     * @param bounds The formation's columns and rows.
+     * @param columnMasks Written with each box's bands of columns, bit n set if it overlaps the n-th band.
+     * @param rowMasks Written with each box's bands of rows, bit n set if it overlaps the n-th band.
+     *
+     * @author Toby Essex
+     */
+    @Override
+    public void overlaps(float[] left, float[] top, float[] right, float[] bottom, int from, int to,
+                         FormationBounds bounds, int[] columnMasks, int[] rowMasks) {
+        float[] columnLeft = bounds.getColumnLeft(), columnRight = bounds.getColumnRight();
+        float[] rowTop = bounds.getRowTop(), rowBottom = bounds.getRowBottom();
+
+        int end = from + FLOATS.loopBound(to - from);
+        int i = from;
+
+        for (; i < end; i += FLOATS.length()) {
+            FloatVector lefts = FloatVector.fromArray(FLOATS, left, i);
+            FloatVector rights = FloatVector.fromArray(FLOATS, right, i);
+            IntVector columns = IntVector.zero(INTS);
+
+            for (int c = 0; c < columnLeft.length; c++) {
+                VectorMask<Float> overlap = rights.compare(VectorOperators.GE, columnLeft[c])
+                        .and(lefts.compare(VectorOperators.LE, columnRight[c]));
+
+                columns = columns.lanewise(VectorOperators.OR, 1 << c, overlap.cast(INTS));
+            }
+
+            columns.intoArray(columnMasks, i);
+
+            FloatVector tops = FloatVector.fromArray(FLOATS, top, i);
+            FloatVector bottoms = FloatVector.fromArray(FLOATS, bottom, i);
+            IntVector rows = IntVector.zero(INTS);
+
+            for (int r = 0; r < rowTop.length; r++) {
+                VectorMask<Float> overlap = bottoms.compare(VectorOperators.GE, rowTop[r])
+                        .and(tops.compare(VectorOperators.LE, rowBottom[r]));
+
+                rows = rows.lanewise(VectorOperators.OR, 1 << r, overlap.cast(INTS));
+            }
+
+            rows.intoArray(rowMasks, i);
+        }
+
+        super.overlaps(left, top, right, bottom, i, to, bounds, columnMasks, rowMasks);
+    }
+}
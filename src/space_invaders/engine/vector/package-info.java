@@ -0,0 +1,7 @@
+/**
+ * Classes here use the incubating Vector API and need {@code --add-modules jdk.incubator.vector} to compile and run.
+ * They are only loaded when the module is present, the game falls back to scalar code otherwise.
+ *
+ * @author Toby Essex
+ */
+package space_invaders.engine.vector;
@@ -1,7 +1,12 @@
 package space_invaders.game_objects;
 
 import processing.core.PApplet;
-import processing.core.PImage;
+import space_invaders.SpaceInvaders;
+import space_invaders.engine.Collision;
+import space_invaders.engine.SpatialHash;
+import space_invaders.engine.WorldSnapshot;
+import space_invaders.managers.CollisionManager;
+import space_invaders.resources.CollisionMask;
 import space_invaders.resources.Image;
 
 /**
@@ -20,15 +25,10 @@ public class Alien extends GameObject {
      */
     private int height = 40;
 
-    /**
-     * Sets speed in which the Alien will increment by each frame.
-     */
-    private int xSpeed = 40;
-
     /**
      * space_invaders.resources.Image to be used as the Alien's background.
      */
-    private PImage pImg;
+    private Image image;
 
     /**
      * Integer to be used to delegate points based on its value.
@@ -45,22 +45,77 @@ public class Alien extends GameObject {
      */
     private boolean isAlt = false;
 
+    /**
+     * Position and image the alien started with, used when the game is restarted.
+     */
+    private int startX, startY;
+    private Image startImage;
+
+    /**
+     * Row (from the top) and column (from the left) of the alien's place in the formation.
+     */
+    private int row, column;
+
     /**
      * Alien constructor.
      *
      * @param parent Parent class to access all required methods.
      * @param tier Integer used to appoint a score value.
-     * @param img PImage becomes Alien's background load.
+     * @param image Image becomes Alien's background load.
+     * @param row Row of the alien's place in the formation.
+     * @param column Column of the alien's place in the formation.
      * @param x space_invaders.Alien's X coordinate.
      * @param y space_invaders.Alien's Y coordinate.
      *
      * @author Craig Hughes
      */
-    public Alien(PApplet parent, int tier, PImage img, int x, int y) {
+    public Alien(PApplet parent, int tier, Image image, int row, int column, int x, int y) {
         super(parent, x,  y);
 
         alienTier = tier;
-        pImg = img;
+        this.image = image;
+        this.row = row;
+        this.column = column;
+
+        startX = x;
+        startY = y;
+        startImage = image;
+    }
+
+    /**
+     * Gives the alien a new place in a formation, reusing it for the next wave.
+     *
+     * @param tier Integer used to appoint a score value.
+     * @param image Image becomes Alien's background load.
+     * @param row Row of the alien's place in the formation.
+     * @param column Column of the alien's place in the formation.
+     * @param x Alien's starting X coordinate.
+     * @param y Alien's starting Y coordinate.
+     *
+     * @author Toby Essex
+     */
+    public void respawn(int tier, Image image, int row, int column, int x, int y) {
+        alienTier = tier;
+        this.row = row;
+        this.column = column;
+
+        startX = x;
+        startY = y;
+        startImage = image;
+
+        reset();
+    }
+
+    /**
+     * Puts the alien back to its starting position, direction and image.
+     *
+     * @author Toby Essex
+     */
+    public void reset() {
+        x = startX;
+        y = startY;
+        image = startImage;
+        isAlt = false;
     }
 
     /**
@@ -68,35 +123,105 @@ public class Alien extends GameObject {
      *
      * @author Craig Hughes
      */
-    public void show(){
-        parent.image(pImg,x - width / 2, y, width, height);
+    public void show(WorldSnapshot snapshot){
+        showMotion(snapshot);
+        snapshot.image(image, x - width / 2, y, width, height);
+        snapshot.setMotion(0, 0);
     }
 
     /**
-     * Will constantly repeat giving the Alien movement.
+     * Adds the alien to the broad-phase grid.
      *
-     * @author Craig Hughes
+     * @param grid The grid.
+     *
+     * @author Toby Essex
      */
-    public void move(){
-        x += xSpeed;
+    public void addTo(SpatialHash<GameObject> grid) {
+        // Aliens are drawn from their top centre
+        grid.insert(this, x - width / 2f, y, x + width / 2f, y + height, CollisionManager.ALIENS);
     }
 
     /**
-     * @return Checks if any alive Aliens have gone out of bounds, if so, a true value is returned.
+     * @param bullet Bullet to compare against the alien.
+     * @return Returns how far along its last move (0 to 1) the bullet hit the alien, or {@link Collision#MISS}.
      *
-     * @author Craig Hughes
+     * @author Toby Essex
      */
-    public boolean checkX(){
-        return x >= parent.width - 40 || x <= 40;
+    @Override
+    public float sweep(Bullet bullet) {
+        CollisionMask mask = image.getMask();
+
+        // Only the alien's solid pixels can be hit, the box is used if the images were not loaded
+        if (mask != null)
+            return bullet.sweep(mask, x - width / 2f, y);
+
+        return bullet.sweep(x - width / 2f, y, x + width / 2f, y + height);
     }
 
     /**
-     * @return Checks if any alive Aliens have gone out of bounds, if so, a true value is returned.
+     * Clears the blocks of a wall that the alien's solid pixels are over.
      *
-     * @author Craig Hughes
+     * @param wall Wall the alien has marched into.
+     *
+     * @author Toby Essex
+     */
+    public void erode(Wall wall) {
+        // Aliens are drawn from their top centre
+        wall.erode(image.getMask(), x - width / 2, y, width, height);
+    }
+
+    /**
+     * Moves the alien to its place in the formation and shows the formation's animation frame.
+     *
+     * @param offsetX How far the formation has moved along the X axis from where it started.
+     * @param offsetY How far the formation has moved along the Y axis from where it started.
+     * @param isAlt If true the alien shows its alternative image.
+     *
+     * @author Toby Essex
+     */
+    public void march(int offsetX, int offsetY, boolean isAlt) {
+        x = startX + offsetX;
+        y = startY + offsetY;
+
+        this.isAlt = isAlt;
+        setImage();
+    }
+
+    /**
+     * Moves the alien to where its boid has flown, out of formation.
+     *
+     * @param x X coordinate of the alien's top centre.
+     * @param y Y coordinate of the alien's top.
+     * @param isAlt If true the alien shows its alternative image.
+     *
+     * @author Toby Essex
+     */
+    public void fly(int x, int y, boolean isAlt) {
+        this.x = x;
+        this.y = y;
+
+        this.isAlt = isAlt;
+        setImage();
+    }
+
+    /**
+     * @param isMovingRight If true the formation is marching right, otherwise left.
+     * @return Checks if the Alien has reached the edge it is marching towards, if so, a true value is returned.
+     *
+     * @author Craig Hughes, Toby Essex
+     */
+    public boolean checkX(boolean isMovingRight){
+        return isMovingRight ? x >= SpaceInvaders.getArenaWidth() - 40 : x <= 40;
+    }
+
+    /**
+     * @return Checks if any alive Aliens have landed on the players' row, if so, a true value is returned.
+     *
+     * @author Craig Hughes, Toby Essex
      */
     public boolean checkY(){
-        return y >= parent.height - 250;
+        // Aliens can march down through the walls, they land once they reach the top of the players' ships
+        return y + height >= parent.height - 95;
     }
 
     /**
@@ -118,12 +243,30 @@ public class Alien extends GameObject {
     }
 
     /**
-     * Reflects movement speed to change Alien's direction
+     * @return Returns the X coordinate the alien started at.
      *
-     * @author Craig Hughes
+     * @author Toby Essex
      */
-    public void switchX(){
-        xSpeed *= -1;
+    public int getStartX() {
+        return startX;
+    }
+
+    /**
+     * @return Returns the row of the alien's place in the formation.
+     *
+     * @author Toby Essex
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return Returns the column of the alien's place in the formation.
+     *
+     * @author Toby Essex
+     */
+    public int getColumn() {
+        return column;
     }
 
     /**
@@ -142,14 +285,12 @@ public class Alien extends GameObject {
      */
     public void setImage(){
         if (alienTier == 0) {
-            pImg = isAlt ? Image.ALIEN_TIER_1_ALT.load() : Image.ALIEN_TIER_1.load();
+            image = isAlt ? Image.ALIEN_TIER_1_ALT : Image.ALIEN_TIER_1;
         } else if (alienTier == 1) {
-            pImg = isAlt ? Image.ALIEN_TIER_2_ALT.load() : Image.ALIEN_TIER_2.load();
+            image = isAlt ? Image.ALIEN_TIER_2_ALT : Image.ALIEN_TIER_2;
         } else if (alienTier == 2) {
-            pImg = isAlt ? Image.ALIEN_TIER_3_ALT.load() : Image.ALIEN_TIER_3.load();
+            image = isAlt ? Image.ALIEN_TIER_3_ALT : Image.ALIEN_TIER_3;
         }
-
-        isAlt = !isAlt;
     }
 
 }
\ No newline at end of file
@@ -1,120 +1,241 @@
 package space_invaders.game_objects;
 
 import processing.core.PApplet;
+import space_invaders.engine.Archetype;
+import space_invaders.engine.Collision;
+import space_invaders.engine.EntityWorld;
+import space_invaders.engine.GameLoop;
+import space_invaders.engine.SpatialHash;
+import space_invaders.engine.Trajectory;
+import space_invaders.engine.WorldSnapshot;
+import space_invaders.managers.CollisionManager;
+import space_invaders.managers.EntityManager;
+import space_invaders.resources.CollisionMask;
+
+import java.util.ArrayList;
 
 /**
- * Represents a bullet which can be fired by the user.
+ * Represents a bullet which can be fired by the user. <br>
+ * The bullet's position, movement and collider are components of an entity, so every bullet is moved at once by the
+ * entity systems. This is the handle its owner keeps, the entity is destroyed along with the bullet.
  * @see Player
+ * @see Archetype
  *
  * @author Toby Essex
  */
-public class Bullet extends GameObject {
+public class Bullet {
     /**
-     * Alien's width.
+     * Represents the parent class (space_invaders.SpaceInvaders) so we can access all the methods and variables declared is the PApplet class.
      */
-    private int width = 5;
+    private PApplet parent;
 
     /**
-     * Alien's height.
+     * Bullet's height.
      */
     private int height = 15;
 
     /**
-     * Represent the speed that the bullet moves.
+     * What kind of bullet this is, which decides how it moves and what it hits.
      */
-    private int SPEED = 11;
+    private BulletType type;
 
     /**
-     * If true the bullet has collided with the top of the game.
+     * Entities the bullet's entity belongs to.
      */
-    private boolean hasHitTop = false;
+    private final EntityWorld world;
 
     /**
-     * If true the bullet has collided with the bottom of the game.
+     * The bullet's entity.
      */
-    private boolean hasHitBottom = false;
+    private final int entity;
 
     /**
-     * If true the bullet is firing towards the aliens, otherwise it is aiming towards the players.
+     * space_invaders.game_objects.Bullet constructor.
+     *
+     * @param parent Parent class so this class can use all the needed methods in PApplet.
+     * @param x Player's X coordinates so we know where along the X axis the bullet starts.
+     * @param y Player's Y coordinates so we know where along the Y axis the bullet starts.
+     * @param type - What kind of bullet it is, e.g. a bomb or one of the aliens' shots.
      */
-    private boolean isShootingAliens;
+    public Bullet(PApplet parent, int x, int y, BulletType type) {
+        this.parent = parent;
+        this.type = type;
+
+        world = EntityManager.getInst().getWorld();
+        entity = world.create(Archetype.POSITION | Archetype.MOTION | Archetype.TRAJECTORY | Archetype.COLLIDER);
+
+        Archetype archetype = world.archetypeOf(entity);
+        int row = world.rowOf(entity);
+
+        // Until its first move the bullet has only been where it starts
+        archetype.setPosition(row, x + 35, y);
+        archetype.setMotion(row, x + 35, y, type.trajectory.getX(0), type.trajectory.getY(0));
+        archetype.setTrajectory(row, type.trajectory, 0);
+        archetype.setCollider(row, getWidth() / 2f, height / 2f, type.layer, isBomb());
+    }
 
     /**
-     * If true this bullet is a bomb.
-     * Which moves slower and destroys aliens in a radius.
+     * Displays the bullet.
+     *
+     * @author Craig Hughes, Toby Essex
      */
-    private boolean isBomb;
+    public void show(WorldSnapshot snapshot) {
+        Archetype archetype = world.archetypeOf(entity);
+        int row = world.rowOf(entity);
+
+        float x = archetype.getX()[row], y = archetype.getY()[row];
+
+        // Drawn between where its last move started and where it is now
+        snapshot.setMotion(x - archetype.getFromX()[row], y - archetype.getFromY()[row]);
+
+        // Bullets are not in the broad-phase grid, so they are culled by their own position
+        if (snapshot.isVisible(x - getWidth() / 2f, x + getWidth() / 2f))
+            snapshot.rect(x, y, getWidth(), height);
+
+        snapshot.setMotion(0, 0);
+    }
 
     /**
-     * If true then the bullet is part of the split fire power up.
+     * Finds every object the bullet could have hit along its last move.
+     *
+     * @param grid The grid.
+     * @param layerMask Collision layers the bullet can hit.
+     * @param results List the objects are written to, it is cleared first.
+     *
+     * @author Toby Essex
      */
-    private boolean isSplit = false;
+    public void query(SpatialHash<GameObject> grid, int layerMask, ArrayList<GameObject> results) {
+        grid.query(getSweptLeft(), getSweptTop(), getSweptRight(), getSweptBottom(), layerMask, results);
+    }
 
     /**
-     * If true the bullet is moving left, while in split fire mode, otherwise it is moving right.
+     * Sweeps the bullet along its last move against a box.
+     *
+     * @param left Left edge of the box.
+     * @param top Top edge of the box.
+     * @param right Right edge of the box.
+     * @param bottom Bottom edge of the box.
+     * @return Returns how far along its last move (0 to 1) the bullet first touched the box, or {@link Collision#MISS}.
+     *
+     * @author Toby Essex
      */
-    private boolean isLeft = false;
+    public float sweep(float left, float top, float right, float bottom) {
+        return Collision.sweepBox(getFromX(), getFromY(), getX(), getY(), getWidth() / 2f, height / 2f, left, top, right, bottom);
+    }
 
     /**
-     * space_invaders.game_objects.Bullet constructor.
+     * Sweeps the bullet along its last move against a sprite's collision mask. <br>
+     * Once the bullet reaches the sprite's box it is stepped a pixel at a time and its box tested against the mask.
      *
-     * @param parent Parent class so this class can use all the needed methods in PApplet.
-     * @param x Player's X coordinates so we know where along the X axis the bullet starts.
-     * @param y Player's Y coordinates so we know where along the Y axis the bullet starts.
-     * @param isShootingAliens - If true the bullet is fired towards the aliens, If false the bullet is being fired towards the player
-     * @param isBomb - If true the bullet will be a bomb which will destroy aliens around it as well.
+     * @param mask The sprite's collision mask.
+     * @param left X coordinate of the sprite's left edge.
+     * @param top Y coordinate of the sprite's top edge.
+     * @return Returns how far along its last move (0 to 1) the bullet first touched the sprite, or {@link Collision#MISS}.
+     *
+     * @author Toby Essex
      */
-    public Bullet(PApplet parent, int x, int y, boolean isShootingAliens, boolean isBomb) {
-        super(parent, x + 35, y);
+    public float sweep(CollisionMask mask, float left, float top) {
+        float start = sweep(left, top, left + mask.getWidth(), top + mask.getHeight());
+
+        if (start == Collision.MISS)
+            return start;
+
+        float halfWidth = getWidth() / 2f, halfHeight = height / 2f;
+        int x = getX(), y = getY(), fromX = getFromX(), fromY = getFromY();
+        int steps = Math.max(1, Math.max(Math.abs(x - fromX), Math.abs(y - fromY)));
 
-        this.isShootingAliens = isShootingAliens;
-        this.isBomb = isBomb;
+        for (int step = (int) (start * steps); step <= steps; step++) {
+            float time = Math.max(start, (float) step / steps);
+            float boxX = fromX + (x - fromX) * time - left;
+            float boxY = fromY + (y - fromY) * time - top;
+
+            if (mask.overlaps(
+                    (int) Math.floor(boxX - halfWidth), (int) Math.floor(boxY - halfHeight),
+                    (int) Math.ceil(boxX + halfWidth) - 1, (int) Math.ceil(boxY + halfHeight) - 1
+            )) {
+                return time;
+            }
+        }
+
+        return Collision.MISS;
     }
 
     /**
-     * space_invaders.game_objects.Bullet constructor.
+     * Sweeps the bullet along its last move against a bitmap of solid cells.
      *
-     * @param parent Parent class so this class can use all the needed methods in PApplet.
-     * @param x Player's X coordinates so we know where along the X axis the bullet starts.
-     * @param y Player's Y coordinates so we know where along the Y axis the bullet starts.
-     * @param isShootingAliens - If true the bullet is fired towards the aliens, If false the bullet is being fired towards the player
+     * @param rows Bitmap, one long per row.
+     * @param originX X coordinate of the bitmap's left edge.
+     * @param originY Y coordinate of the bitmap's top edge.
+     * @param cellSize Width and height of each cell.
+     * @return Returns how far along its last move (0 to 1) the bullet first touched a cell, or {@link Collision#MISS}.
+     *
+     * @see Collision#sweepBitmap(float, float, float, float, float, float, long[], float, float, int)
+     *
+     * @author Toby Essex
      */
-    public Bullet(PApplet parent, int x, int y, boolean isShootingAliens) {
-        this(parent, x, y, isShootingAliens, false);
+    public float sweep(long[] rows, float originX, float originY, int cellSize) {
+        return Collision.sweepBitmap(getFromX(), getFromY(), getX(), getY(), getWidth() / 2f, height / 2f, rows, originX, originY, cellSize);
     }
 
     /**
-     * Displays the bullet.
+     * @param time How far along the bullet's last move, from 0 to 1.
+     * @return Returns the bullet's X coordinate at that point.
      *
-     * @author Craig Hughes, Toby Essex
+     * @author Toby Essex
      */
-    public void show() {
-        parent.fill(255);
-        parent.rectMode(parent.CENTER);
-        parent.rect(x, y, isBomb ? 10 : width, height);
+    public int getX(float time) {
+        int fromX = getFromX();
+
+        return Math.round(fromX + (getX() - fromX) * time);
     }
 
     /**
-     * Moves the bullet until it collides with another GameObject.
+     * @param time How far along the bullet's last move, from 0 to 1.
+     * @return Returns the bullet's Y coordinate at that point.
      *
      * @author Toby Essex
      */
-    public void move() {
-        if(y - getWidth() <= 0) {
-            hasHitTop = true;
-            return;
-        } else if (y + getWidth() >= parent.height - 50) {
-            hasHitBottom = true;
-        }
+    public int getY(float time) {
+        int fromY = getFromY();
 
-        // If its a bomb half the speed
-        int _SPEED = isBomb ?  SPEED / 2 : SPEED;
+        return Math.round(fromY + (getY() - fromY) * time);
+    }
 
-        y = isShootingAliens ? y - _SPEED : y + _SPEED;
+    /**
+     * @return Returns the bullet's X coordinates.
+     *
+     * @author Toby Essex
+     */
+    public int getX() {
+        return (int) world.archetypeOf(entity).getX()[world.rowOf(entity)];
+    }
+
+    /**
+     * @return Returns the bullet's Y coordinates.
+     *
+     * @author Toby Essex
+     */
+    public int getY() {
+        return (int) world.archetypeOf(entity).getY()[world.rowOf(entity)];
+    }
 
-        /* If is a split bullet, it will be given an X value to animate by. which way it will animate is based on the
-           isLeft Boolean. */
-        x = isShootingAliens && isSplit && y <= parent.height - 200 ? isLeft ? x - (_SPEED / 4) : x + (_SPEED / 4) : x;
+    /**
+     * @return Returns the bullet's X coordinates before its last move. Collisions are tested along the path from here to
+     * where it is now.
+     *
+     * @author Toby Essex
+     */
+    private int getFromX() {
+        return (int) world.archetypeOf(entity).getFromX()[world.rowOf(entity)];
+    }
+
+    /**
+     * @return Returns the bullet's Y coordinates before its last move.
+     *
+     * @author Toby Essex
+     */
+    private int getFromY() {
+        return (int) world.archetypeOf(entity).getFromY()[world.rowOf(entity)];
     }
 
     /**
@@ -123,7 +244,7 @@ public class Bullet extends GameObject {
      * @author Toby Essex
      */
     public boolean hasHitTop() {
-        return hasHitTop;
+        return getY() - getWidth() <= 0;
     }
 
     /**
@@ -132,14 +253,42 @@ public class Bullet extends GameObject {
      * @author Toby Essex
      */
     public boolean hasHitBottom() {
-        return hasHitBottom;
+        return getY() + getWidth() >= parent.height - 50;
+    }
+
+    /**
+     * Destroys the bullet and its entity, the bullet is removed by whoever fired it. Does nothing if it is already
+     * destroyed.
+     *
+     * @author Toby Essex
+     */
+    public void destroy() {
+        world.destroy(entity);
+    }
+
+    /**
+     * @return Returns true if the bullet has been destroyed, e.g. by another bullet.
+     *
+     * @author Toby Essex
+     */
+    public boolean isDestroyed() {
+        return !world.isAlive(entity);
+    }
+
+    /**
+     * @return Returns what kind of bullet this is.
+     *
+     * @author Toby Essex
+     */
+    public BulletType getType() {
+        return type;
     }
 
     /**
      * @return Returns true if direction of the bullet is towards the aliens.
      */
     public boolean isShootingAliens() {
-        return isShootingAliens;
+        return type.layer == CollisionManager.PLAYER_BULLETS;
     }
 
     /**
@@ -147,7 +296,7 @@ public class Bullet extends GameObject {
      * @return Returns true if this bullet is a bomb.
      */
     public boolean isBomb() {
-        return isBomb;
+        return type.blastRadius > 0;
     }
 
     /**
@@ -161,20 +310,164 @@ public class Bullet extends GameObject {
      * @return Returns the bullets width
      */
     public int getWidth() {
-        return width;
+        return type.width;
+    }
+
+    /**
+     * @return Returns the left edge of the area the bullet covered during its last move.
+     *
+     * @author Toby Essex
+     */
+    public float getSweptLeft() {
+        return Math.min(getFromX(), getX()) - getWidth() / 2f;
+    }
+
+    /**
+     * @return Returns the top edge of the area the bullet covered during its last move.
+     *
+     * @author Toby Essex
+     */
+    public float getSweptTop() {
+        return Math.min(getFromY(), getY()) - height / 2f;
     }
 
     /**
-     * Sets split bullet.
+     * @return Returns the right edge of the area the bullet covered during its last move.
      *
-     * @param left Sets the bullet to move left once split (used with the 'SPLIT_FIRE' power-up)
+     * @author Toby Essex
+     */
+    public float getSweptRight() {
+        return Math.max(getFromX(), getX()) + getWidth() / 2f;
+    }
+
+    /**
+     * @return Returns the bottom edge of the area the bullet covered during its last move.
      *
-     * @see PowerUp.PowerUpType
+     * @author Toby Essex
+     */
+    public float getSweptBottom() {
+        return Math.max(getFromY(), getY()) + height / 2f;
+    }
+
+    /**
+     * Represents the different kinds of bullet. <br>
+     * A type's movement is held as a trajectory, a table of steps with one entry per tick that loops once the bullet
+     * reaches the end. So every bullet is moved by the same entity systems, and new types are new data rather than new
+     * branches.
      *
-     * @author Craig Hughes
+     * @author Toby Essex
      */
-    public void setSplit(boolean left){
-        isSplit = true;
-        isLeft = left;
+    public enum BulletType {
+        /**
+         * The player's normal bullet.
+         */
+        BULLET(-11, 0, 0, 0, 5, 0, CollisionManager.PLAYER_BULLETS,
+                CollisionManager.ALIENS | CollisionManager.WALLS | CollisionManager.MOTHER_SHIP),
+
+        /**
+         * Moves at half speed and destroys every alien within its blast radius.
+         */
+        BOMB(-5, 0, 0, 0, 10, 50, CollisionManager.PLAYER_BULLETS,
+                CollisionManager.ALIENS | CollisionManager.WALLS | CollisionManager.MOTHER_SHIP),
+
+        /**
+         * Split fire bullet which starts to drift left once clear of the player.
+         */
+        SPLIT_LEFT(-11, -2, 9, 0, 5, 0, CollisionManager.PLAYER_BULLETS,
+                CollisionManager.ALIENS | CollisionManager.WALLS | CollisionManager.MOTHER_SHIP),
+
+        /**
+         * Split fire bullet which starts to drift right once clear of the player.
+         */
+        SPLIT_RIGHT(-11, 2, 9, 0, 5, 0, CollisionManager.PLAYER_BULLETS,
+                CollisionManager.ALIENS | CollisionManager.WALLS | CollisionManager.MOTHER_SHIP),
+
+        /**
+         * The aliens' aimed shot.
+         */
+        ROLLING(11, 0, 0, 0, 5, 0, CollisionManager.ALIEN_BULLETS, CollisionManager.WALLS | CollisionManager.PLAYERS),
+
+        /**
+         * A faster alien shot that falls straight down.
+         */
+        PLUNGER(14, 0, 0, 0, 5, 0, CollisionManager.ALIEN_BULLETS, CollisionManager.WALLS | CollisionManager.PLAYERS),
+
+        /**
+         * A slower alien shot that zig-zags as it falls.
+         */
+        SQUIGGLY(9, 2, 0, 16, 5, 0, CollisionManager.ALIEN_BULLETS, CollisionManager.WALLS | CollisionManager.PLAYERS);
+
+        /**
+         * Distance moved along each axis on each tick.
+         */
+        private final Trajectory trajectory;
+
+        /**
+         * Width the bullet is drawn and collides at.
+         */
+        private final int width;
+
+        /**
+         * Radius around an alien hit directly in which other aliens are also destroyed, 0 for no blast.
+         */
+        private final int blastRadius;
+
+        /**
+         * Collision layer the bullet is on, and the layers it can hit.
+         */
+        private final int layer, targets;
+
+        /**
+         * BulletType constructor. Speeds and times are given at 60 ticks per second.
+         *
+         * @param speed Distance moved down each tick, negative to move up.
+         * @param drift Distance moved sideways each tick, negative to move left.
+         * @param driftDelay Number of ticks before the bullet starts to move sideways.
+         * @param zigZagPeriod Number of ticks to drift one way then back again, 0 to keep drifting the same way.
+         * @param width Width of the bullet.
+         * @param blastRadius Radius of the blast when it hits an alien, 0 for no blast.
+         * @param layer Collision layer the bullet is on.
+         * @param targets Collision layers the bullet can hit.
+         */
+        BulletType(int speed, int drift, int driftDelay, int zigZagPeriod, int width, int blastRadius, int layer, int targets) {
+            int delay = Math.round(driftDelay / GameLoop.perTick(1f));
+            int period = Math.max(1, Math.round(zigZagPeriod / GameLoop.perTick(1f)));
+
+            int[] xSteps = new int[delay + period];
+            int[] ySteps = new int[delay + period];
+
+            for (int i = 0; i < xSteps.length; i++) {
+                boolean isReversed = zigZagPeriod > 0 && i - delay >= period / 2;
+
+                xSteps[i] = i < delay ? 0 : GameLoop.perTick(isReversed ? -drift : drift);
+                ySteps[i] = GameLoop.perTick(speed);
+            }
+
+            // Once through the delay the rest of the table loops
+            trajectory = new Trajectory(xSteps, ySteps, delay);
+
+            this.width = width;
+            this.blastRadius = blastRadius;
+            this.layer = layer;
+            this.targets = targets;
+        }
+
+        /**
+         * @return Returns the radius of the blast when the bullet hits an alien, 0 for no blast.
+         *
+         * @author Toby Essex
+         */
+        public int getBlastRadius() {
+            return blastRadius;
+        }
+
+        /**
+         * @return Returns the collision layers the bullet can hit.
+         *
+         * @author Toby Essex
+         */
+        public int getTargets() {
+            return targets;
+        }
     }
 }
@@ -1,6 +1,8 @@
 package space_invaders.game_objects;
 
 import processing.core.PApplet;
+import space_invaders.engine.Collision;
+import space_invaders.engine.WorldSnapshot;
 
 /**
  * Abstract base class for any game object.
@@ -23,6 +25,11 @@ abstract public class GameObject {
      */
     int y;
 
+    /**
+     * Object's coordinates the last time it was shown, used to draw it between ticks.
+     */
+    int prevX, prevY;
+
     /**
      * GameObject's constructor.
      *
@@ -34,14 +41,46 @@ abstract public class GameObject {
         this.parent = parent;
         this.x = x;
         this.y = y;
+        this.prevX = x;
+        this.prevY = y;
+    }
+
+    /**
+     * Sweeps a bullet along its last move against this object. Objects that can't be hit by bullets never are.
+     *
+     * @param bullet Bullet to test.
+     * @return Returns how far along its last move (0 to 1) the bullet hit this object, or {@link Collision#MISS}.
+     *
+     * @author Toby Essex
+     */
+    public float sweep(Bullet bullet) {
+        return Collision.MISS;
     }
 
     /**
-     * Displays the game object
+     * Tells the snapshot how far this object has moved since it was last shown, so it can be drawn between ticks. <br>
+     * Called at the start of {@link GameObject#show(WorldSnapshot)} by objects that move. They must set the motion
+     * back to zero once they have been added.
+     *
+     * @param snapshot Snapshot of the world being written.
+     *
+     * @author Toby Essex
+     */
+    void showMotion(WorldSnapshot snapshot) {
+        snapshot.setMotion(x - prevX, y - prevY);
+
+        prevX = x;
+        prevY = y;
+    }
+
+    /**
+     * Displays the game object by adding it to the snapshot that will be drawn.
+     *
+     * @param snapshot Snapshot of the world being written.
      *
      * @author Toby Essex
      */
-    abstract public void show();
+    abstract public void show(WorldSnapshot snapshot);
 
     /**
      * @return Returns the object's X coordinates
@@ -1,6 +1,14 @@
 package space_invaders.game_objects;
 
 import processing.core.PApplet;
+import space_invaders.SpaceInvaders;
+import space_invaders.engine.Collision;
+import space_invaders.engine.GameLoop;
+import space_invaders.engine.GameRandom;
+import space_invaders.engine.SpatialHash;
+import space_invaders.engine.WorldSnapshot;
+import space_invaders.managers.CollisionManager;
+import space_invaders.resources.CollisionMask;
 import space_invaders.resources.Image;
 
 /**
@@ -22,13 +30,18 @@ public class MotherShip extends GameObject {
     /**
      * Speed the mother ship will move.
      */
-    private int SPEED = 5;
+    private int SPEED = GameLoop.perTick(5);
 
     /**
      * If true the mother ship will move left, else it will move right.
      */
     private boolean isMovingLeft;
 
+    /**
+     * Random numbers deciding the mother ship's direction and score, only drawn by systems that write the mother ship.
+     */
+    private static final GameRandom RANDOM = new GameRandom("mother ship");
+
     /**
      * Array of scores, to be picked from a random value.
      */
@@ -47,11 +60,11 @@ public class MotherShip extends GameObject {
     public MotherShip(PApplet parent, int x, int y) {
         super(parent, x,  y);
 
-        isMovingLeft = Math.random() > 0.5;
+        isMovingLeft = RANDOM.next() > 0.5;
 
         // Start on the right if moving left
         if(isMovingLeft)
-            this.x = this.parent.width + Math.abs(x);
+            this.x = SpaceInvaders.getArenaWidth() + Math.abs(x);
     }
 
     /**
@@ -59,8 +72,10 @@ public class MotherShip extends GameObject {
      *
      * @author Craig Hughes
      */
-    public void show() {
-        parent.image(Image.BOSS.load(), x, y, width, height);
+    public void show(WorldSnapshot snapshot) {
+        showMotion(snapshot);
+        snapshot.image(Image.BOSS, x, y, width, height);
+        snapshot.setMotion(0, 0);
     }
 
     /**
@@ -72,17 +87,32 @@ public class MotherShip extends GameObject {
         x = isMovingLeft ? x - SPEED : x + SPEED;
     }
 
+    /**
+     * Adds the mother ship to the broad-phase grid.
+     *
+     * @param grid The grid.
+     *
+     * @author Toby Essex
+     */
+    public void addTo(SpatialHash<GameObject> grid) {
+        grid.insert(this, x, y, x + width, y + height, CollisionManager.MOTHER_SHIP);
+    }
+
     /**
      * @param bullet Bullet to compare against the mother ship.
-     * @return Returns true if the mother ship has been hit by the bullet given.
+     * @return Returns how far along its last move (0 to 1) the bullet hit the mother ship, or {@link Collision#MISS}.
      *
-     * @author Craig Hughes
+     * @author Craig Hughes, Toby Essex
      */
-    public boolean hasBeenHit(Bullet bullet) {
-        return  bullet.getX() >= x &&
-                bullet.getX() <= x + width &&
-                bullet.getY() <= y + height &&
-                bullet.getY() >= y;
+    @Override
+    public float sweep(Bullet bullet) {
+        CollisionMask mask = Image.BOSS.getMask();
+
+        // Only the ship's solid pixels can be hit, the box is used if the images were not loaded
+        if (mask != null)
+            return bullet.sweep(mask, x, y);
+
+        return bullet.sweep(x, y, x + width, y + height);
     }
 
     /**
@@ -119,7 +149,7 @@ public class MotherShip extends GameObject {
      */
     public int getScore() {
         // Score is randomly returned
-        return scores[(int)(Math.random() * scores.length)];
+        return scores[(int)(RANDOM.next() * scores.length)];
     }
 
 }
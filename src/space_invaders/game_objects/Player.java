@@ -3,12 +3,15 @@ package space_invaders.game_objects;
 import processing.core.PApplet;
 import space_invaders.resources.Sound;
 import space_invaders.SpaceInvaders;
+import space_invaders.engine.Collision;
+import space_invaders.engine.GameLoop;
+import space_invaders.engine.SpatialHash;
+import space_invaders.engine.WorldSnapshot;
 import space_invaders.managers.AlienManager;
+import space_invaders.managers.CollisionManager;
 import space_invaders.managers.MotherShipManager;
-import space_invaders.managers.WallManager;
 
 import java.util.ArrayList;
-import java.util.stream.IntStream;
 
 /**
  * Player GameObject that represents the player.
@@ -52,24 +55,35 @@ public class Player extends GameObject {
     private int startX;
 
     /**
-     * Will retrieve the current system clock's seconds value. Used for timing Alien Movement.
+     * Array of all bullets fired by the player.
      */
-    private int secondaryTime = PApplet.second();
+    private ArrayList<Bullet> playerBullets = new ArrayList<>();
 
     /**
-     * Will retrieve the current system clock's seconds value. This value will be changed as program runs.
+     * Reused list of every bullet the player has in flight, tested for hits together.
      */
-    private int secondsPassed = PApplet.second();
+    private ArrayList<Bullet> inFlight = new ArrayList<>();
 
     /**
      * Array of all bullets fired by the player.
      */
-    private ArrayList<Bullet> playerBullets = new ArrayList<>();
+    private int shotsFired = 0;
 
     /**
-     * Array of all bullets fired by the player.
+     * Distance between the bullets of a stream.
      */
-    private int shotsFired = 0;
+    private static final int STREAM_GAP = 3;
+
+    /**
+     * Number of ticks a hit player is shown dead before they are back at the start (2 seconds).
+     */
+    private static final int RESPAWN_TICKS = 2 * GameLoop.TICK_RATE;
+
+    /**
+     * Number of ticks until a hit player is back at the start, 0 unless they are respawning. <br>
+     * While respawning the player can't move, fire or be hit, the rest of the game carries on.
+     */
+    private int respawnCountdown = 0;
 
 
     /**
@@ -87,79 +101,62 @@ public class Player extends GameObject {
     }
 
     /**
-     * Resets the player to the middle then delays for 2 seconds.
+     * Shows the player dead where they were hit for 2 seconds, then puts them back at their starting position. <br>
+     * Counted in ticks by {@link Player#update()}, so the rest of the game carries on meanwhile.
      *
      * @author Toby Essex
      */
     public void reset() {
-        // Reset player to starting position
-        x = startX;
-
-        // Sleep for 2 seconds
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        respawnCountdown = RESPAWN_TICKS;
 
         // Make sure the player is alive
         isDead = false;
     }
 
     /**
-     * Displays the player. <br>
-     * If the player has fired a bullet this will move the bullet as well.
+     * Puts the player back to how they were at the start of a game, reusing the player's bullet list.
+     *
+     * @author Toby Essex
+     */
+    public void restart() {
+        x = startX;
+        isDead = false;
+        respawnCountdown = 0;
+        lives = 3;
+        score = 0;
+        powerUp = null;
+        removeBullets();
+        shotsFired = 0;
+    }
+
+    /**
+     * Checks what the player's bullets hit during their last move, the entity systems have already moved them. <br>
+     * Also ends the game if the aliens have reached the player.
      *
      * @author Toby Essex, Craig Hughes
      */
-    public void show() {
-        parent.fill(255);
+    public void update() {
+        // Back at the start once the respawn countdown runs out
+        if (respawnCountdown > 0 && --respawnCountdown == 0)
+            x = startX;
 
-        parent.rectMode(parent.CENTER);
+        CollisionManager collisions = CollisionManager.getInst();
 
-        if (isDead) {
-            // NOTE: paused before dead player is shown
-            makeDeadPlayer();
-        } else {
-            makePlayer();
-        }
+        // Every bullet's hit is found at once, then applied in order
+        inFlight.clear();
+        collectBullets(inFlight);
+        collisions.findHits(inFlight);
 
-        if (secondaryTime == 59 && secondsPassed == 1)
-            secondaryTime = 0;
-
-        if(bullet != null && hasFiredBullet) {
-            if (bullet.hasHitTop() ||
-                AlienManager.getInst().checkBulletHitsAlien(this, bullet) ||
-                WallManager.getInst().hasHitWall(bullet) ||
-                MotherShipManager.getInst().hasBeenHit(this, bullet)
-            ) {
-                // Reset bullet
-                hasFiredBullet = false;
-            } else {
-                bullet.show();
-                bullet.move();
-            }
-        }
+        for (int i = 0; i < inFlight.size(); i++) {
+            Bullet bullet = inFlight.get(i);
 
-        // Loop over each player bullet and display and move it
-        for (int i = 0; i < playerBullets.size(); i++) {
-            Bullet bullet = playerBullets.get(i);
-
-            if(bullet != null) {
-                if (bullet.hasHitTop() ||
-                    AlienManager.getInst().checkBulletHitsAlien(this, bullet) ||
-                    WallManager.getInst().hasHitWall(bullet) ||
-                    MotherShipManager.getInst().hasBeenHit(this, bullet)
-                ) {
-                    // Reset bullet
-                    playerBullets.remove(i);
-                } else {
-                    bullet.show();
-                    bullet.move();
-                }
-            }
+            // A bullet that reached the top may have hit something on the way
+            if (hasHit(bullet, collisions.confirmHit(i, bullet)) || bullet.hasHitTop())
+                bullet.destroy();
         }
 
+        removeDestroyedBullets();
+
         // Game over, aliens have reached the bottom
         if(AlienManager.getInst().getAliens() != null && AlienManager.getInst().checkY()){
             lives = 0;
@@ -168,6 +165,108 @@ public class Player extends GameObject {
         }
     }
 
+    /**
+     * Applies what one of the player's bullets hit during its last move. <br>
+     * Only the first thing along the bullet's path is hit, so a bullet can't pass through a wall to hit an alien.
+     *
+     * @param bullet The player's bullet.
+     * @param target The first object the bullet hit, or null.
+     * @return Returns true if the bullet hit something.
+     *
+     * @author Toby Essex
+     */
+    private boolean hasHit(Bullet bullet, GameObject target) {
+        CollisionManager collisions = CollisionManager.getInst();
+
+        if (target == null)
+            return false;
+
+        if (target instanceof Alien) {
+            AlienManager.getInst().hitAlien(this, (Alien) target, bullet.getType().getBlastRadius());
+        } else if (target instanceof Wall) {
+            float time = collisions.getHitTime();
+            ((Wall) target).damage(bullet.getX(time), bullet.getY(time), bullet.isBomb());
+        } else {
+            MotherShipManager.getInst().hitMotherShip(this);
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds every bullet the player has in flight to a list.
+     *
+     * @param bullets List to add to.
+     *
+     * @author Toby Essex
+     */
+    private void collectBullets(ArrayList<Bullet> bullets) {
+        if (bullet != null && hasFiredBullet)
+            bullets.add(bullet);
+
+        for (Bullet bullet : playerBullets) {
+            if (bullet != null)
+                bullets.add(bullet);
+        }
+    }
+
+    /**
+     * Removes any of the player's bullets destroyed by other bullets.
+     *
+     * @author Toby Essex
+     */
+    public void removeDestroyedBullets() {
+        if (bullet != null && bullet.isDestroyed())
+            bullet = null;
+
+        // Other kinds of fire also hold the trigger, it is let go once the single bullet has gone
+        if (bullet == null)
+            hasFiredBullet = false;
+
+        playerBullets.removeIf(Bullet::isDestroyed);
+    }
+
+    /**
+     * Adds the player to the broad-phase grid.
+     *
+     * @param grid The grid.
+     *
+     * @author Toby Essex
+     */
+    public void addTo(SpatialHash<GameObject> grid) {
+        // A respawning player can't be hit or pick anything up
+        if (isRespawning())
+            return;
+
+        grid.insert(this, getX(), getY(), getX() + getWidth(), getY() + getHeight(), CollisionManager.PLAYERS);
+    }
+
+    /**
+     * Displays the player and any bullets they have fired.
+     *
+     * @param snapshot Snapshot of the world being written.
+     *
+     * @author Toby Essex, Craig Hughes
+     */
+    public void show(WorldSnapshot snapshot) {
+        showMotion(snapshot);
+
+        if (isDead || isRespawning()) {
+            // Shown dead where they were hit until they respawn
+            makeDeadPlayer(snapshot);
+        } else {
+            makePlayer(snapshot);
+        }
+
+        snapshot.setMotion(0, 0);
+
+        if(bullet != null && hasFiredBullet)
+            bullet.show(snapshot);
+
+        for (Bullet bullet : playerBullets)
+            bullet.show(snapshot);
+    }
+
     /**
      * Moves the player either left or right.
      *
@@ -176,14 +275,19 @@ public class Player extends GameObject {
      * @author Toby Essex
      */
     public void move(boolean isLeft) {
+        if (isRespawning())
+            return;
+
         // Stops the player moving out of bounds
         if (isLeft) {
             if (x <= SpaceInvaders.BLOCK_SIZE * 2) return;
         } else {
-            if (x >= parent.width - SpaceInvaders.BLOCK_SIZE * 16) return;
+            if (x >= SpaceInvaders.getArenaWidth() - SpaceInvaders.BLOCK_SIZE * 16) return;
         }
 
-        x = isLeft ? x - SpaceInvaders.BLOCK_SIZE : x + SpaceInvaders.BLOCK_SIZE;
+        int step = GameLoop.perTick(SpaceInvaders.BLOCK_SIZE);
+
+        x = isLeft ? x - step : x + step;
     }
 
     /**
@@ -192,7 +296,7 @@ public class Player extends GameObject {
      * @author Toby Essex, Craig Hughes
      */
     public void fireBullet() {
-        if(hasFiredBullet) return;
+        if(hasFiredBullet || isRespawning()) return;
 
         boolean isBomb = powerUp != null && powerUp == PowerUp.PowerUpType.BOMB;
         boolean isFastFire = powerUp != null && powerUp == PowerUp.PowerUpType.FAST_FIRE;
@@ -200,7 +304,7 @@ public class Player extends GameObject {
 
         if (!isFastFire && !isSplit) {
             // Normal Bullet / Bomb
-            bullet = new Bullet(parent, x, parent.height - 90, true, isBomb);
+            bullet = new Bullet(parent, x, parent.height - 90, isBomb ? Bullet.BulletType.BOMB : Bullet.BulletType.BULLET);
             hasFiredBullet = true;
             powerUp = null;
             Sound.SHOOT.play();
@@ -210,13 +314,13 @@ public class Player extends GameObject {
             if (shotsFired <= 10) {
                 // Initializes fast bullet array . Can not check coordinates otherwise.
                 if (playerBullets.isEmpty()) {
-                    playerBullets.add(new Bullet(parent, x, parent.height - 90, true, false));
+                    playerBullets.add(new Bullet(parent, x, parent.height - 90, Bullet.BulletType.BULLET));
                     ++shotsFired;
                     Sound.SHOOT.play();
                 }
                 // Will shoot as long as closest bullet is far enough away from the player.
                 else if (playerBullets.get(playerBullets.size() - 1).getY() <= (this.getY() - 100)) {
-                    playerBullets.add(new Bullet(parent, x, parent.height - 90, true, false));
+                    playerBullets.add(new Bullet(parent, x, parent.height - 90, Bullet.BulletType.BULLET));
                     ++shotsFired;
                     hasFiredBullet = false;
                     Sound.SHOOT.play();
@@ -236,9 +340,9 @@ public class Player extends GameObject {
         } else {
             // Only shoot if list is empty.
             if (playerBullets.isEmpty()) {
-                IntStream.range(0, 3).forEach(i -> playerBullets.add(new Bullet(parent, x, parent.height - 90, true, false)));
-                playerBullets.get(0).setSplit(true);
-                playerBullets.get(2).setSplit(false);
+                playerBullets.add(new Bullet(parent, x, parent.height - 90, Bullet.BulletType.SPLIT_LEFT));
+                playerBullets.add(new Bullet(parent, x, parent.height - 90, Bullet.BulletType.BULLET));
+                playerBullets.add(new Bullet(parent, x, parent.height - 90, Bullet.BulletType.SPLIT_RIGHT));
                 shotsFired += 3;
                 hasFiredBullet = true;
                 powerUp = null;
@@ -247,19 +351,48 @@ public class Player extends GameObject {
     }
 
     /**
-     * Checks players coordinates against bullet to see if collision has occurred.
+     * Fires a fan of bullets at once, used while the fire key is held in a stress test. <br>
+     * The bullets are spread either side of the ship, taking turns between going straight and drifting out each way.
+     *
+     * @param count Number of bullets to fire.
+     *
+     * @author Toby Essex
+     */
+    public void fireStream(int count) {
+        if (isRespawning())
+            return;
+
+        for (int i = 0; i < count; i++) {
+            Bullet.BulletType type = i % 3 == 0 ? Bullet.BulletType.BULLET
+                    : i % 3 == 1 ? Bullet.BulletType.SPLIT_LEFT : Bullet.BulletType.SPLIT_RIGHT;
+
+            playerBullets.add(new Bullet(parent, x + (i - count / 2) * STREAM_GAP, parent.height - 90, type));
+        }
+    }
+
+    /**
+     * @return Returns the number of the player's bullets in flight.
      *
-     * @param bullet Bullet instance to compare its locations against the players to see if they collide.
-     * @return Returns true if the player has been hit by the bullet, false is not.
+     * @author Toby Essex
+     */
+    public int getBulletCount() {
+        return playerBullets.size() + (bullet != null && hasFiredBullet ? 1 : 0);
+    }
+
+    /**
+     * Checks players coordinates against the bullet's last move to see if collision has occurred.
+     *
+     * @param bullet Bullet instance to compare its path against the players to see if they collide.
+     * @return Returns how far along its last move (0 to 1) the bullet hit the player, or {@link Collision#MISS}.
      *
-     * @author Craig Hughes
+     * @author Craig Hughes, Toby Essex
      */
-    public boolean hasBeenHit(Bullet bullet) {
-        return  bullet.getX() >= getX()               &&
-                bullet.getX() <= getX() + getWidth()  &&
-                bullet.getY() >= getY()               &&
-                bullet.getY() <= getY() + getHeight() &&
-                getLives() > 0;
+    @Override
+    public float sweep(Bullet bullet) {
+        if (getLives() <= 0 || isRespawning())
+            return Collision.MISS;
+
+        return bullet.sweep(getX(), getY(), getX() + getWidth(), getY() + getHeight());
     }
 
     /**
@@ -319,11 +452,38 @@ public class Player extends GameObject {
     }
 
     /**
-     * Kills the alien.
+     * @return Returns true if the player was hit and is waiting to be put back at the start.
+     *
+     * @author Toby Essex
+     */
+    public boolean isRespawning() {
+        return respawnCountdown > 0;
+    }
+
+    /**
+     * Kills the player, taking them out of the game along with their bullets.
      */
     public void kill() {
         isDead = true;
         lives = 0;
+        removeBullets();
+    }
+
+    /**
+     * Destroys every bullet the player has in flight.
+     *
+     * @author Toby Essex
+     */
+    public void removeBullets() {
+        if (bullet != null)
+            bullet.destroy();
+
+        for (Bullet bullet : playerBullets)
+            bullet.destroy();
+
+        bullet = null;
+        hasFiredBullet = false;
+        playerBullets.clear();
     }
 
     /**
@@ -343,13 +503,15 @@ public class Player extends GameObject {
     /**
      * Creates the players GameObject.
      *
+     * @param snapshot Snapshot of the world being written.
+     *
      * @author Toby Essex
      */
-    private void makePlayer() {
+    private void makePlayer(WorldSnapshot snapshot) {
         // Column for loop, inner for loop is each row but depending on the column decides how many blocks it is
         for (int i = 0; i < 7; i++) {
             if (i == 0) {
-                parent.rect(
+                snapshot.rect(
                     x + (8 * SpaceInvaders.BLOCK_SIZE) - SpaceInvaders.BLOCK_SIZE,
                     parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 60,
                     SpaceInvaders.BLOCK_SIZE,
@@ -357,7 +519,7 @@ public class Player extends GameObject {
                 );
             } else if(i == 1 || i == 2) {
                 for (int j = 0; j < 3; j++) {
-                    parent.rect(
+                    snapshot.rect(
                         x + (8 * SpaceInvaders.BLOCK_SIZE) - (j * SpaceInvaders.BLOCK_SIZE),
                         parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 60,
                         SpaceInvaders.BLOCK_SIZE,
@@ -366,7 +528,7 @@ public class Player extends GameObject {
                 }
             } else if(i == 3){
                 for (int j = 0; j < 13; j++) {
-                    parent.rect(
+                    snapshot.rect(
                         x + (j * SpaceInvaders.BLOCK_SIZE) + SpaceInvaders.BLOCK_SIZE,
                         parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 60,
                         SpaceInvaders.BLOCK_SIZE,
@@ -375,7 +537,7 @@ public class Player extends GameObject {
                 }
             } else {
                 for (int j = 0; j < 15; j++) {
-                    parent.rect(
+                    snapshot.rect(
                         x + (j * SpaceInvaders.BLOCK_SIZE),
                         parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 60,
                         SpaceInvaders.BLOCK_SIZE,
@@ -389,14 +551,16 @@ public class Player extends GameObject {
     /**
      * Displays the player after it has been exploded
      *
+     * @param snapshot Snapshot of the world being written.
+     *
      * @author Toby Essex
      */
-    private void makeDeadPlayer() {
+    private void makeDeadPlayer(WorldSnapshot snapshot) {
         for (int i = 0; i < 11; i++) {
             if (i == 1) continue;
 
             if (i == 0) {
-                parent.rect(
+                snapshot.rect(
                     x + (4 * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                     SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                 );
@@ -404,7 +568,7 @@ public class Player extends GameObject {
                 for (int j = 0; j < 15; j++) {
                     if (j != 2 && j != 7  && j != 11) continue;
 
-                    parent.rect(
+                    snapshot.rect(
                         x +  (j * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                         SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                     );
@@ -413,7 +577,7 @@ public class Player extends GameObject {
                 for (int j = 0; j < 15; j++) {
                     if (j != 4 && j != 6 && j != 10) continue;
 
-                    parent.rect(
+                    snapshot.rect(
                         x +  (j * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                         SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                     );
@@ -422,7 +586,7 @@ public class Player extends GameObject {
                 for (int j = 0; j < 15; j++) {
                     if (j != 2 && j != 6 && j != 12 && j != 13) continue;
 
-                    parent.rect(
+                    snapshot.rect(
                         x +  (j * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                         SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                     );
@@ -431,7 +595,7 @@ public class Player extends GameObject {
                 for (int j = 0; j < 15; j++) {
                     if (j != 2 && j != 14) continue;
 
-                    parent.rect(
+                    snapshot.rect(
                         x + (j * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                         SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                     );
@@ -440,7 +604,7 @@ public class Player extends GameObject {
                 for (int j = 0; j < 15; j++) {
                     if (j != 5 && j != 7 && j != 8) continue;
 
-                    parent.rect(
+                    snapshot.rect(
                         x + (j * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                         SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                     );
@@ -449,7 +613,7 @@ public class Player extends GameObject {
                 for (int j = 0; j < 15; j++) {
                     if (!(j == 0 || j > 3 && j < 13)) continue;
 
-                    parent.rect(
+                    snapshot.rect(
                         x + (j * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                         SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                     );
@@ -458,14 +622,14 @@ public class Player extends GameObject {
                 for (int j = 0; j < 15; j++) {
                     if (!(j > 2 && j < 14)) continue;
 
-                    parent.rect(
+                    snapshot.rect(
                         x + (j * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                         SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                     );
                 }
             } else {
                 for (int j = 0; j < 15; j++) {
-                    parent.rect(
+                    snapshot.rect(
                         x + (j * SpaceInvaders.BLOCK_SIZE), parent.height - (SpaceInvaders.BLOCK_SIZE * (7 - i)) - 75,
                         SpaceInvaders.BLOCK_SIZE, SpaceInvaders.BLOCK_SIZE
                     );
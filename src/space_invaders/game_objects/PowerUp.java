@@ -1,6 +1,11 @@
 package space_invaders.game_objects;
 
 import processing.core.PApplet;
+import space_invaders.engine.GameLoop;
+import space_invaders.engine.GameRandom;
+import space_invaders.engine.SpatialHash;
+import space_invaders.engine.WorldSnapshot;
+import space_invaders.managers.CollisionManager;
 
 /**
  * Represents a pick up-able object that gives the user a special ability or a reward
@@ -8,6 +13,11 @@ import processing.core.PApplet;
  * @author Toby Essex
  */
 public class PowerUp extends GameObject {
+    /**
+     * Random numbers deciding which power-up is dropped, only drawn by systems that write the power-up.
+     */
+    private static final GameRandom RANDOM = new GameRandom("power-up type");
+
     /**
      * Represent which power-up this instance is.
      */
@@ -42,13 +52,18 @@ public class PowerUp extends GameObject {
      * @author Toby Essex
      */
     @Override
-    public void show() {
-        parent.fill(255);
-        parent.rectMode(parent.CENTER);
-        parent.rect(x, y, currentSize, currentSize);
+    public void show(WorldSnapshot snapshot) {
+        snapshot.rect(x, y, currentSize, currentSize);
+    }
 
+    /**
+     * Animates the power-up pick up by growing and shrinking it.
+     *
+     * @author Toby Essex
+     */
+    public void update() {
         // Increase or decrease the physical object for a nice animation
-        currentSize = isIncreasing ? currentSize + 0.1f : currentSize - 0.1f;
+        currentSize = isIncreasing ? currentSize + GameLoop.perTick(0.1f) : currentSize - GameLoop.perTick(0.1f);
 
         // Check for max or min size of the block to stop it getting too large or too small
         if(currentSize <= 15) {
@@ -58,6 +73,17 @@ public class PowerUp extends GameObject {
         }
     }
 
+    /**
+     * Adds the power-up to the broad-phase grid.
+     *
+     * @param grid The grid.
+     *
+     * @author Toby Essex
+     */
+    public void addTo(SpatialHash<GameObject> grid) {
+        grid.insert(this, x - getWidth() / 2f, y - getWidth() / 2f, x + getWidth() / 2f, y + getWidth() / 2f, CollisionManager.POWER_UPS);
+    }
+
     /**
      * @return Returns the power up type
      *
@@ -108,7 +134,7 @@ public class PowerUp extends GameObject {
          * @author Toby Essexs
          */
         public static PowerUpType getRandom() {
-            double random = Math.random();
+            double random = RANDOM.next();
 
             if (random < 0.25) {
                 return BOMB;
@@ -1,7 +1,16 @@
 package space_invaders.game_objects;
 
 import processing.core.PApplet;
+import space_invaders.engine.Archetype;
+import space_invaders.engine.EntityWorld;
+import space_invaders.engine.GameRandom;
+import space_invaders.engine.WorldSnapshot;
+import space_invaders.engine.Collision;
+import space_invaders.engine.SpatialHash;
+import space_invaders.managers.CollisionManager;
+import space_invaders.managers.EntityManager;
 import space_invaders.managers.WallManager;
+import space_invaders.resources.CollisionMask;
 
 import java.util.*;
 
@@ -11,6 +20,26 @@ import java.util.*;
  * @author Toby Essex
  */
 public class Wall extends GameObject {
+    /**
+     * Size of each block of the wall.
+     */
+    private static final int BLOCK_SIZE = 5;
+
+    /**
+     * One bit for each pixel across a block.
+     */
+    private static final long BLOCK_PIXELS = (1L << BLOCK_SIZE) - 1;
+
+    /**
+     * Random numbers deciding how much a hit knocks off, only drawn by systems that write the walls.
+     */
+    private static final GameRandom RANDOM = new GameRandom("walls");
+
+    /**
+     * Bitmap of the blocks still standing, one long per row of blocks. <br>
+     * Bit n of a row is set if the n-th block along is standing. Used to test bullets against the whole wall at once.
+     */
+    private long[] cells = new long[getHeight() / BLOCK_SIZE];
 
     /**
      * Wall constructor.
@@ -23,19 +52,62 @@ public class Wall extends GameObject {
         super(parent, x, y);
 
         createWall();
+        updateCells();
+    }
+
+    /**
+     * Repairs every section of the wall, reusing the blocks it was built with.
+     *
+     * @author Toby Essex
+     */
+    public void reset() {
+        Arrays.stream(Section.values()).forEach(section -> section.reset(this));
+        updateCells();
     }
 
     /**
-     * Displays the wall.
+     * Destroys every block of the wall, once the wall is no longer used.
+     *
+     * @author Toby Essex
+     */
+    public void remove() {
+        Arrays.stream(Section.values()).forEach(section -> section.remove(this));
+    }
+
+    /**
+     * Adds the wall to the broad-phase grid.
+     *
+     * @param grid The grid.
+     *
+     * @author Toby Essex
+     */
+    public void addTo(SpatialHash<GameObject> grid) {
+        grid.insert(this, x - BLOCK_SIZE / 2f, y - BLOCK_SIZE / 2f, x + getWidth(), y + getHeight(), CollisionManager.WALLS);
+    }
+
+    /**
+     * Sweeps a bullet along its last move against the blocks still standing.
+     *
+     * @param bullet Bullet to test.
+     * @return Returns how far along its last move (0 to 1) the bullet first touched a block, or {@link Collision#MISS}.
      *
      * @author Toby Essex
      */
     @Override
-    public void show() {
-        // Display each section of the wall
-        Arrays.stream(Section.values()).forEach(section -> section.show(this));
+    public float sweep(Bullet bullet) {
+        // Blocks are drawn centred on their coordinates, so the bitmap starts half a block up and to the left
+        return bullet.sweep(cells, x - BLOCK_SIZE / 2f, y - BLOCK_SIZE / 2f, BLOCK_SIZE);
     }
 
+    /**
+     * Displays the wall. Its blocks are entities, added to the snapshot by {@link EntityManager} along with every
+     * other entity, so there is nothing left for the wall itself to add.
+     *
+     * @author Toby Essex
+     */
+    @Override
+    public void show(WorldSnapshot snapshot) {}
+
     /**
      * If the wall has been hit, this works each which section was hit and damages it.
      *
@@ -43,11 +115,17 @@ public class Wall extends GameObject {
      * @param bulletY Bullet's Y coordinates.
      * @param isBomb If true the current bullet is a bomb.
      *
-     * @see WallManager#hasHitWall(Bullet)
+     * @see WallManager#hitSweptWall(Bullet)
      *
      * @author Toby Essex
      */
     public void damage(int bulletX, int bulletY, boolean isBomb) {
+        // A bullet can touch the outer blocks from just outside the wall
+        bulletX = PApplet.constrain(bulletX, x, x + getWidth());
+
+        // Other bullets that hit this wall may now pass through it
+        CollisionManager.getInst().touch(this);
+
         boolean isTopSection = bulletY >= y && bulletY <= y + (getWidth() / 4);
 
         if (bulletX >= x && bulletX <= x + getWidth() / 3) {
@@ -59,10 +137,80 @@ public class Wall extends GameObject {
         } else if (bulletX >= x + (getWidth() / 3) * 2 && bulletX <= x + getWidth()) {
             isTopSection = isTopSection || Section.BOTTOM_RIGHT.damageTier(this) == 0;
             (isTopSection ? Section.TOP_RIGHT : Section.BOTTOM_RIGHT).damage(this, isBomb);
-        } else {
-            // FIXME: sometimes the bullet is not registering as any section
-            System.out.println("Not registering section");
         }
+
+        updateCells();
+    }
+
+    /**
+     * Clears the blocks under a sprite's solid pixels, e.g. an alien marching through the wall. <br>
+     * For each row of blocks the sprite's mask rows over it are OR'd together, the blocks they cover are found with a
+     * mask per block, then AND-NOT'd out of that row of the bitmap. Blocks are only removed if any were cleared.
+     *
+     * @param mask Sprite's collision mask, or null if the whole sprite is solid.
+     * @param left X coordinate of the sprite's left edge.
+     * @param top Y coordinate of the sprite's top edge.
+     * @param width Sprite's width, up to 64.
+     * @param height Sprite's height.
+     *
+     * @author Toby Essex
+     */
+    public void erode(CollisionMask mask, int left, int top, int width, int height) {
+        // Blocks are drawn centred on their coordinates, so block n along covers the pixels from 5n - 3 along
+        int originX = x - (BLOCK_SIZE + 1) / 2, originY = y - (BLOCK_SIZE + 1) / 2;
+
+        int firstRow = Math.max(0, Math.floorDiv(top - originY, BLOCK_SIZE));
+        int lastRow = Math.min(cells.length - 1, Math.floorDiv(top + height - 1 - originY, BLOCK_SIZE));
+        int firstColumn = Math.max(0, Math.floorDiv(left - originX, BLOCK_SIZE));
+        int lastColumn = Math.min(getWidth() / BLOCK_SIZE - 1, Math.floorDiv(left + width - 1 - originX, BLOCK_SIZE));
+
+        boolean isEroded = false;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            int from = Math.max(0, originY + row * BLOCK_SIZE - top);
+            int to = Math.min(height - 1, originY + (row + 1) * BLOCK_SIZE - 1 - top);
+
+            long pixels = 0;
+
+            for (int y = from; y <= to; y++)
+                pixels |= mask != null ? mask.getRow(y) : -1L >>> (64 - width);
+
+            if (pixels == 0)
+                continue;
+
+            long covered = 0;
+
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                // Pixels of the sprite under this block, the block can start just left of the sprite
+                int start = originX + column * BLOCK_SIZE - left;
+                long block = start >= 0 ? BLOCK_PIXELS << start : BLOCK_PIXELS >>> -start;
+
+                if ((pixels & block) != 0)
+                    covered |= 1L << column;
+            }
+
+            if ((cells[row] & covered) != 0) {
+                cells[row] &= ~covered;
+                isEroded = true;
+            }
+        }
+
+        if (isEroded) {
+            for (Section section : Section.values())
+                section.removeCleared(this, cells);
+        }
+    }
+
+    /**
+     * Rebuilds the bitmap of standing blocks from each section's blocks.
+     *
+     * @author Toby Essex
+     */
+    private void updateCells() {
+        Arrays.fill(cells, 0);
+
+        for (Section section : Section.values())
+            section.addStanding(this, cells);
     }
 
     /**
@@ -85,7 +233,7 @@ public class Wall extends GameObject {
                 haveSwitched = true;
             }
 
-            section.createSection(this, parent, _x, _y);
+            section.createSection(this, _x, _y);
             _x += 35;
         }
     }
@@ -144,6 +292,11 @@ public class Wall extends GameObject {
          */
         BOTTOM_RIGHT;
 
+        /**
+         * Components of each block, a filled square.
+         */
+        private static final int BLOCK = Archetype.POSITION | Archetype.SPRITE;
+
         /**
          * Used so we know how damaged the wall is. <br>
          * When it reached zero this particular section of the wall will be gone.
@@ -151,32 +304,86 @@ public class Wall extends GameObject {
         private HashMap<Wall, Integer> damageTier = new HashMap<>();
 
         /**
-         * Hash map of all the block in each section. <br>
+         * Entity of every block in each section, the entity is dead once its block has been destroyed. <br>
          * Split into key, values with a key being a wall instance and an enum is static.
          */
-        private HashMap<Wall, ArrayList<GameObject>> blocks = new HashMap<>();
+        private HashMap<Wall, int[]> blocks = new HashMap<>();
 
         /**
-         * Returns all the blocks in a wall section.
+         * Cell of the wall's bitmap each block fills, as row * 64 + column. Used to rebuild destroyed blocks.
+         */
+        private HashMap<Wall, int[]> blockCells = new HashMap<>();
+
+        /**
+         * Sets the bits of the wall's bitmap for the blocks still standing in this section.
+         *
+         * @param wall Specific wall so it can be founds in the hash map.
+         * @param cells The wall's bitmap.
+         *
+         * @author Toby Essex
+         */
+        public void addStanding(Wall wall, long[] cells) {
+            EntityWorld world = EntityManager.getInst().getWorld();
+            int[] blocks = this.blocks.get(wall), blockCells = this.blockCells.get(wall);
+
+            for (int i = 0; i < blocks.length; i++) {
+                if (world.isAlive(blocks[i]))
+                    cells[blockCells[i] >> 6] |= 1L << (blockCells[i] & 63);
+            }
+        }
+
+        /**
+         * Destroys the blocks whose bits have been cleared from the wall's bitmap.
          *
          * @param wall Specific wall so it can be founds in the hash map.
-         * @return List of block in this section.
+         * @param cells The wall's bitmap.
+         *
+         * @author Toby Essex
+         */
+        public void removeCleared(Wall wall, long[] cells) {
+            EntityWorld world = EntityManager.getInst().getWorld();
+            int[] blocks = this.blocks.get(wall), blockCells = this.blockCells.get(wall);
+
+            for (int i = 0; i < blocks.length; i++) {
+                if ((cells[blockCells[i] >> 6] & 1L << (blockCells[i] & 63)) == 0)
+                    world.destroy(blocks[i]);
+            }
+        }
+
+        /**
+         * Repairs the section, rebuilding any destroyed blocks.
+         *
+         * @param wall Specific wall so it can be founds in the key/value array.
          *
          * @author Toby Essex
          */
-        public ArrayList<GameObject> getBlocks(Wall wall) {
-            return blocks.get(wall);
+        public void reset(Wall wall) {
+            EntityWorld world = EntityManager.getInst().getWorld();
+            int[] blocks = this.blocks.get(wall), blockCells = this.blockCells.get(wall);
+
+            for (int i = 0; i < blocks.length; i++) {
+                if (!world.isAlive(blocks[i]))
+                    blocks[i] = createBlock(wall, blockCells[i]);
+            }
+
+            damageTier.put(wall, 4);
         }
 
         /**
-         * Display's the wall.
+         * Destroys the section's blocks and forgets the wall.
          *
          * @param wall Specific wall so it can be founds in the key/value array.
          *
          * @author Toby Essex
          */
-        public void show(Wall wall) {
-            blocks.get(wall).forEach(GameObject::show);
+        public void remove(Wall wall) {
+            EntityWorld world = EntityManager.getInst().getWorld();
+
+            for (int block : blocks.remove(wall))
+                world.destroy(block);
+
+            blockCells.remove(wall);
+            damageTier.remove(wall);
         }
 
         /**
@@ -211,41 +418,41 @@ public class Wall extends GameObject {
          * @author Toby Essex
          */
         public void damage(Wall wall, boolean isBomb) {
-            // If the bullet is a bomb the whole section will be destroyed
-            if(isBomb) {
-                blocks.put(wall, new ArrayList<>());
-                damageTier.put(wall, 0);
-                return;
-            }
+            EntityWorld world = EntityManager.getInst().getWorld();
+            int tier = damageTier.get(wall);
+            int standing = 0;
+
+            for (int block : blocks.get(wall)) {
+                if (!world.isAlive(block))
+                    continue;
 
-            // Randomly removes blocks from the wall
-            blocks.get(wall).removeIf(block ->
-                    damageTier.get(wall) != 0 &&
-                    blocks.get(wall).indexOf(block) % ((int)(Math.random() * blocks.size()) + 1) == 0 ||
-                    damageTier.get(wall) == 1
-            );
+                // If the bullet is a bomb the whole section will be destroyed, otherwise blocks are randomly removed
+                if (isBomb || tier != 0 && standing % ((int)(RANDOM.next() * blocks.size()) + 1) == 0 || tier == 1)
+                    world.destroy(block);
 
-            damageTier.put(wall, damageTier.get(wall) - 1);
+                standing++;
+            }
+
+            damageTier.put(wall, isBomb ? 0 : tier - 1);
         }
 
         /**
          * Crates this particular wall section
          *
          * @param wall Specific wall so it can be created in the hash map.
-         * @param parent Represents the parent class (space_invaders.SpaceInvaders) so we can access all the methods and variables declared is the PApplet class.
          * @param _x Section's X coordinates
          * @param _y Section's Y coordinates
          *
          * @see Wall#createWall()
          * @author Toby Essex
          */
-        private void createSection(Wall wall, PApplet parent, int _x, int _y) {
+        private void createSection(Wall wall, int _x, int _y) {
             // Create copy's so we can return reset the original values during the for loop
             int x = _x;
             int y = _y;
 
-            // Array for the section
-            ArrayList<GameObject> section = new ArrayList<>();
+            // Cell of each block in the section
+            ArrayList<Integer> section = new ArrayList<>();
 
             // Loop over the wall (outer array is no. of columns, inner array is no. of rows)
             for (int i = 0; i < (this == BOTTOM_MIDDLE ? 2 : 7); i++) {
@@ -268,15 +475,7 @@ public class Wall extends GameObject {
                 }
 
                 for (int j = 0; j < max; j++) {
-                    // Add a new section (via anonymous class)
-                    section.add(new GameObject(parent, x, y) {
-                        @Override
-                        public void show() {
-                            parent.fill(255);
-                            parent.rectMode(parent.CENTER);
-                            parent.rect(x, y, 5, 5);
-                        }
-                    });
+                    section.add((y - wall.y) / BLOCK_SIZE * 64 + (x - wall.x) / BLOCK_SIZE);
                     x += 5;
                 }
                 // Reset X, move down to the next row
@@ -284,9 +483,39 @@ public class Wall extends GameObject {
                 y += 5;
             }
 
-            // Add the section to the hash map, set the walls damage tier
-            blocks.put(wall, section);
+            // Add the section's blocks to the hash map, set the walls damage tier
+            int[] blockCells = section.stream().mapToInt(Integer::intValue).toArray();
+            int[] blocks = new int[blockCells.length];
+
+            for (int i = 0; i < blocks.length; i++)
+                blocks[i] = createBlock(wall, blockCells[i]);
+
+            this.blocks.put(wall, blocks);
+            this.blockCells.put(wall, blockCells);
             damageTier.put(wall, 4);
         }
+
+        /**
+         * Creates the entity of a block.
+         *
+         * @param wall Wall the block is part of.
+         * @param cell Cell of the wall's bitmap the block fills.
+         * @return Returns the block's entity.
+         *
+         * @author Toby Essex
+         */
+        private static int createBlock(Wall wall, int cell) {
+            EntityWorld world = EntityManager.getInst().getWorld();
+            int block = world.create(BLOCK);
+
+            // Blocks are drawn centred on their coordinates
+            Archetype archetype = world.archetypeOf(block);
+            int row = world.rowOf(block);
+
+            archetype.setPosition(row, wall.x + (cell & 63) * BLOCK_SIZE, wall.y + (cell >> 6) * BLOCK_SIZE);
+            archetype.setSprite(row, null, BLOCK_SIZE, BLOCK_SIZE);
+
+            return block;
+        }
     }
 }
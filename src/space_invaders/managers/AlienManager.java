@@ -3,15 +3,30 @@ package space_invaders.managers;
 import processing.core.PApplet;
 import space_invaders.resources.Image;
 import space_invaders.resources.Sound;
+import space_invaders.GameScale;
 import space_invaders.SpaceInvaders;
+import space_invaders.Waves;
+import space_invaders.engine.Flock;
+import space_invaders.engine.FormationBounds;
+import space_invaders.engine.GameLoop;
+import space_invaders.engine.GameRandom;
+import space_invaders.engine.SpatialHash;
+import space_invaders.engine.WorldSnapshot;
 import space_invaders.game_objects.Alien;
 import space_invaders.game_objects.Bullet;
+import space_invaders.game_objects.GameObject;
 import space_invaders.game_objects.Player;
+import space_invaders.game_objects.Wall;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Manges all the aliens in the game. <br>
+ * The aliens either march in formation, or in a swarm break formation and fly as a flock. <br>
+ * A game is played as {@link Waves}, and the next wave's formation is built in the background while the current one is
+ * played, so starting it only swaps the two formations over. <br>
  * This class uses the singleton pattern. Using lazy initialisation.
  *
  * @author Toby Essex
@@ -29,14 +44,64 @@ final public class AlienManager {
     private PApplet parent;
 
     /**
-     * How many columns of aliens will be displayed.
+     * Size of the game.
      */
-    private final int NO_OF_COLUMNS = 5;
+    private GameScale scale;
 
     /**
-     * Number of aliens per row.
+     * Waves played in the game, the waves file's for the arcade and arena, or a single wave of the scale's formation.
      */
-    private final int NO_OF_ALIENS_PER_ROW = 10;
+    private Waves waves;
+
+    /**
+     * Index of the wave being played.
+     */
+    private int wave;
+
+    /**
+     * How many rows of aliens will be displayed this wave.
+     */
+    private int rowCount;
+
+    /**
+     * Number of places per row this wave.
+     */
+    private int columnCount;
+
+    /**
+     * Number of aliens in this wave's formation.
+     */
+    private int alienCount;
+
+    /**
+     * X coordinate of the formation's first column.
+     */
+    private final int FORMATION_LEFT = 50;
+
+    /**
+     * How far the formation moves along the X axis each step of the march.
+     */
+    private final int MARCH_STEP = 40;
+
+    /**
+     * Distance between the aliens of a row, and between rows. Large formations are packed closer to fit the screen.
+     */
+    private int spacingX, spacingY;
+
+    /**
+     * How far the formation moves down when it reaches an edge.
+     */
+    private final int MARCH_DROP = 20;
+
+    /**
+     * Number of aliens that move each tick, from the wave's march speed curve.
+     */
+    private int marchPerTick;
+
+    /**
+     * Fewest ticks between march sounds, so the last few aliens don't play one every tick.
+     */
+    private final int MARCH_SOUND_GAP = GameLoop.TICK_RATE / 8;
 
     /**
      * 2D list of all the aliens
@@ -44,25 +109,180 @@ final public class AlienManager {
     private ArrayList<ArrayList<Alien>> aliens;
 
     /**
-     * Will retrieve the current system clock's seconds value.
+     * Every alien in the formation, dead or alive, at (row * {@link AlienManager#columnCount} + column). <br>
+     * Used to rebuild the formation without creating new aliens. Places without an alien this wave may hold one left
+     * over from an earlier wave.
+     */
+    private Alien[] formation;
+
+    /**
+     * The next wave's formation, built in the background by {@link AlienManager#builder}. Null if there is only one wave.
+     */
+    private Alien[] nextFormation;
+
+    /**
+     * Builds the next wave's formation, reused for every wave.
+     */
+    private final WaveBuilder builder = new WaveBuilder();
+
+    /**
+     * If true the builder has been started and not yet joined.
+     */
+    private boolean isBuilding;
+
+    /**
+     * Wave {@link AlienManager#nextFormation} was built for, -1 if none.
+     */
+    private int nextFormationWave = -1;
+
+    /**
+     * One list of living aliens for every row, kept so they can be reused.
+     */
+    private ArrayList<ArrayList<Alien>> rows;
+
+    /**
+     * Ticks between alien shots once only one alien is left (half a second), unless the scale fires faster.
+     */
+    private final int MIN_FIRE_INTERVAL = GameLoop.TICK_RATE / 2;
+
+    /**
+     * Every this many shots is aimed at a player instead of fired from a random column.
+     */
+    private final int AIMED_SHOT_EVERY = 3;
+
+    /**
+     * Random numbers deciding which column fires, only drawn by systems that write the aliens.
+     */
+    private final GameRandom random = new GameRandom("aliens");
+
+    /**
+     * Number of ticks between volleys while the whole formation is alive, and the shots in each volley, this wave.
+     */
+    private int fireInterval, alienVolley;
+
+    /**
+     * Ticks until the next alien shot.
      */
-    private int initTime = PApplet.second();
+    private int fireCountdown;
 
     /**
-     * Will retrieve the current system clock's seconds value. Used for timing Alien Movement.
+     * Number of shots fired, used to pick aimed shots and which player they are aimed at.
      */
-    private int secondaryTime = PApplet.second();
+    private int shotsFired;
 
     /**
-     * Will retrieve the current system clock's seconds value. This value will be changed as program runs.
+     * If true the alien at (row * {@link AlienManager#columnCount} + column) in the formation is alive.
      */
-    private int secondsPassed = PApplet.second();
+    private boolean[] isAlive;
+
+    /**
+     * Number of aliens alive.
+     */
+    private int aliveCount;
+
+    /**
+     * True if the formation has been reset since it was last added to the broad-phase grid, so the grid can't be used
+     * to find the aliens in view.
+     */
+    private boolean isGridStale = true;
+
+    /**
+     * Row of the lowest living alien in each column, -1 once the column is empty. Only these aliens can shoot.
+     */
+    private int[] lowestInColumn;
+
+    /**
+     * Columns that still have a living alien, packed at the front so a shooter can be picked in O(1).
+     */
+    private int[] shooterColumns;
+
+    /**
+     * Position of each column in {@link AlienManager#shooterColumns}, -1 once the column is empty.
+     */
+    private int[] shooterSlots;
+
+    /**
+     * Number of columns in {@link AlienManager#shooterColumns}.
+     */
+    private int shooterCount;
 
     /**
      * Array of all bullets fired by the aliens.
      */
     private ArrayList<Bullet> alienBullets = new ArrayList<>();
 
+    /**
+     * How far the formation has marched from where it started. <br>
+     * Each alien is moved to its start plus this offset when its turn comes, so an alien skipped because the row
+     * changed under the cursor simply catches up on its next turn.
+     */
+    private int marchX, marchY;
+
+    /**
+     * Direction the formation is marching, 1 for right and -1 for left.
+     */
+    private int marchDirection;
+
+    /**
+     * If true the aliens show their alternative image this step.
+     */
+    private boolean isMarchAlt;
+
+    /**
+     * If true an alien reached the edge during this step, so the next step drops the formation and turns it around.
+     */
+    private boolean hasReachedEdge;
+
+    /**
+     * March cursor, the row (counting up from the bottom) and position within it of the next alien to move.
+     */
+    private int marchRow, marchIndex;
+
+    /**
+     * Number of ticks since a march sound was played.
+     */
+    private int ticksSinceMarchSound;
+
+    /**
+     * Reused list of the aliens caught in a bomb's blast.
+     */
+    private ArrayList<GameObject> inBlast = new ArrayList<>();
+
+    /**
+     * Reused list of the aliens in the camera's view.
+     */
+    private ArrayList<GameObject> inView = new ArrayList<>();
+
+    /**
+     * Space covered by each column and row of living aliens, see {@link AlienManager#updateBounds()}.
+     */
+    private FormationBounds bounds;
+
+    /**
+     * Boids steering the aliens of a swarm, one per place in the formation. Null unless the scale is swarmed.
+     */
+    private Flock flock;
+
+    /**
+     * Gap kept between a swarm and the top of the walls.
+     */
+    private final int SWARM_FLOOR_GAP = 10;
+
+    /**
+     * Ticks between a swarm's flaps, when the aliens swap images.
+     */
+    private final int FLAP_TICKS = GameLoop.TICK_RATE / 4;
+
+    /**
+     * Ticks until the swarm's next flap.
+     */
+    private int flapCountdown;
+
+    /**
+     * Centre of each living player, reused as the targets the swarm is drawn towards.
+     */
+    private float[] targetX = new float[0], targetY = new float[0];
+
     /**
      * @return Returns a instance of this class.
      *
@@ -76,7 +296,9 @@ final public class AlienManager {
     }
 
     /** Private constructor so this class can't be constructed. */
-    private AlienManager() {}
+    private AlienManager() {
+        setScale(GameScale.ARCADE);
+    }
 
     /**
      * Sets the parent class.
@@ -89,157 +311,646 @@ final public class AlienManager {
     }
 
     /**
-     * Deletes the aliens so they will be remade, next time they are shown
+     * Sets the size of the game and the waves to play. The formation is created again the next tick. <br>
+     * Stress tests and swarms play a single wave of the scale's formation, other games the waves file's tiled across
+     * the arena.
+     *
+     * @param scale Scale of the game.
      *
      * @author Toby Essex
      */
-    public void reset() {
+    public void setScale(GameScale scale) {
+        this.scale = scale;
+
+        // The builder may still be building the last game's next wave
+        awaitBuild();
+
+        waves = scale.isStress() || scale.isSwarm() ? Waves.of(scale) : Waves.getInst().tiled(scale.getArenaScreens());
+
+        // Sized for the largest wave, so no wave needs them to grow
+        isAlive = new boolean[waves.getMaxPlaces()];
+        lowestInColumn = new int[waves.getMaxColumns()];
+        shooterColumns = new int[waves.getMaxColumns()];
+        shooterSlots = new int[waves.getMaxColumns()];
+        bounds = new FormationBounds(waves.getMaxColumns(), waves.getMaxRows());
+
         aliens = null;
+        formation = null;
+        nextFormation = null;
+        nextFormationWave = -1;
+        rows = null;
+        flock = null;
+        removeBullets();
+
+        wave = 0;
+        fireCountdown = waves.getFireInterval(0);
+        shotsFired = 0;
+    }
+
+    /**
+     * Starts the game again from the first wave and removes any alien bullets. <br>
+     * The existing aliens and lists are reused.
+     *
+     * @author Toby Essex
+     */
+    public void reset() {
+        if (formation != null) {
+            if (wave != 0) {
+                // Restarting isn't a wave ending, so the first wave is built straight away
+                awaitBuild();
+                build(formation, 0);
+            }
+
+            startWave(0);
+        }
+
+        removeBullets();
+
+        fireCountdown = waves.getFireInterval(0);
+        shotsFired = 0;
     }
 
     /**
-     * This displayed all the aliens in the game. <br>
-     * It will also create them if they haven't already been created.
+     * Moves the aliens in the game and their bullets. <br>
+     * It will also create them if they haven't already been created, and starts the next wave once they are all killed. <br>
+     * Like the arcade, only one alien moves per tick, so the march speeds up as aliens are killed. A swarm flies every
+     * alien each tick instead.
+     *
+     * @param players Players in the game, so some shots can be aimed at them.
      *
      * @author Craig Hughes, Toby Essex
      */
-    public void showAliens() {
-        if (aliens == null || aliens.size() == 0)
+    public void updateAliens(Player... players) {
+        if (aliens == null)
             createAliens();
 
-        aliens.stream().flatMap(Collection::stream).forEach(alien -> {
-            alien.show();
+        // This removes any columns that no longer have aliens
+        aliens.removeIf(r -> r.size() == 0);
+
+        if (aliens.size() == 0)
+            nextWave();
+
+        ticksSinceMarchSound++;
+
+        if (flock != null) {
+            // A swarm stays above the walls, so it never lands or eats through them
+            fly(players);
+        } else {
+            marchPerTick = Math.max(1, GameLoop.perTick(waves.getMarch(wave, alienCount - aliveCount)));
+
+            for (int i = 0; i < marchPerTick; i++)
+                marchNext();
+
+            // A stress test never ends, a formation that lands starts again at the top
+            if (scale.isStress() && checkY())
+                resetAliens();
+
+            erodeWalls();
+        }
+
+        alienShoot(players);
+    }
+
+    /**
+     * Steers the swarm towards the living players, then moves each alien to where its boid has flown.
+     *
+     * @param players Players the swarm is drawn towards.
+     *
+     * @author Toby Essex
+     */
+    private void fly(Player... players) {
+        if (targetX.length < players.length) {
+            targetX = new float[players.length];
+            targetY = new float[players.length];
+        }
+
+        int targets = 0;
+
+        for (Player player : players) {
+            if (player.isDead())
+                continue;
+
+            targetX[targets] = player.getX() + player.getWidth() / 2f;
+            targetY[targets] = player.getY();
+            targets++;
+        }
 
-            if (secondaryTime == 59 && secondsPassed == 1)
-                secondaryTime = 0;
+        flock.update(targetX, targetY, targets);
 
-            if (alien.checkX()) {
-                switchAliens();
-                aliens.stream().flatMap(Collection::stream).forEach(Alien::move);
-            } else if (secondsPassed >= secondaryTime + 1 || (secondsPassed == 0 && secondaryTime == 1)) {
-                secondaryTime = secondsPassed;
+        if (--flapCountdown <= 0) {
+            isMarchAlt = !isMarchAlt;
+            flapCountdown = FLAP_TICKS;
+        }
 
-                aliens.stream().flatMap(Collection::stream).forEach(a -> {
-                    a.move();
-                    a.setImage();
-                });
+        for (ArrayList<Alien> row : aliens) {
+            for (Alien alien : row) {
+                int boid = alien.getRow() * columnCount + alien.getColumn();
+                alien.fly(Math.round(flock.getX(boid)), Math.round(flock.getY(boid)), isMarchAlt);
             }
-            secondsPassed = PApplet.second();
-        });
+        }
+    }
 
-        // This removes any columns that no longer have aliens
-        aliens.removeIf(r -> r.size() == 0);
+    /**
+     * Puts a boid in the flock for every alien in the formation, where the alien is now.
+     *
+     * @author Toby Essex
+     */
+    private void startSwarm() {
+        for (ArrayList<Alien> row : aliens) {
+            for (Alien alien : row)
+                flock.place(alien.getRow() * columnCount + alien.getColumn(), alien.getX(), alien.getY());
+        }
 
-        alienShoot();
+        flapCountdown = FLAP_TICKS;
     }
 
     /**
-     * Checks players coordinates against bullet to see if collision has occurred.
+     * Has the rows of aliens that have marched down into the walls eat through them.
      *
-     * @param player Player instance to compare against the each bullet to see if they have collided.
+     * @author Toby Essex
+     */
+    private void erodeWalls() {
+        int wallTop = WallManager.getInst().getTop();
+
+        // Rows are in order from the top, so stop at the first row that is still above the walls
+        for (int i = aliens.size() - 1; i >= 0; i--) {
+            ArrayList<Alien> row = aliens.get(i);
+
+            if (row.isEmpty())
+                continue;
+
+            if (row.get(0).getY() + row.get(0).getHeight() < wallTop)
+                break;
+
+            for (Alien alien : row)
+                WallManager.getInst().erode(alien);
+        }
+    }
+
+    /**
+     * This displays all the aliens in the game and their bullets. <br>
+     * If the snapshot has a view only the aliens the grid has under it are shown, unless the formation was reset since
+     * the grid was built.
+     *
+     * @param snapshot Snapshot of the world being written.
+     *
+     * @author Toby Essex
+     */
+    public void showAliens(WorldSnapshot snapshot) {
+        if (aliens == null)
+            return;
+
+        if (snapshot.isCulling() && !isGridStale) {
+            // The grid was built before the aliens moved this tick, so look a march step further out
+            CollisionManager.getInst().query(snapshot.getDrawnLeft() - MARCH_STEP, 0, snapshot.getDrawnRight() + MARCH_STEP,
+                    parent.height, CollisionManager.ALIENS, inView);
+
+            for (GameObject alien : inView)
+                alien.show(snapshot);
+
+            snapshot.addCulled(aliveCount - inView.size());
+        } else {
+            for (ArrayList<Alien> row : aliens) {
+                for (Alien alien : row)
+                    alien.show(snapshot);
+            }
+        }
+
+        for (Bullet bullet : alienBullets)
+            bullet.show(snapshot);
+    }
+
+    /**
+     * Checks every alien bullet against the players, walls included, in one pass through the broad-phase. <br>
+     * A player who runs out of lives is out of the game, which is over once every player is.
+     *
+     * @param players Players in the game.
      *
      * @author Toby Essex, Craig Hughes
      */
-    public void playerHit(Player player){
+    public void playerHit(Player... players){
         if(alienBullets == null)
             return;
 
-        // Loop over each alien bullet and display and move it
-        for (Iterator<Bullet> bulletIterator = alienBullets.iterator(); bulletIterator.hasNext();) {
-            Bullet bullet = bulletIterator.next();
+        // Every bullet's hit is found at once, then applied in order
+        CollisionManager collisions = CollisionManager.getInst();
+        collisions.findHits(alienBullets);
+
+        for (int i = 0; i < alienBullets.size(); i++) {
+            Bullet bullet = alienBullets.get(i);
+
+            // Whichever the bullet reached first along its last move is hit
+            GameObject target = collisions.confirmHit(i, bullet);
+
+            if (target instanceof Wall) {
+                float time = collisions.getHitTime();
+                ((Wall) target).damage(bullet.getX(time), bullet.getY(time), bullet.isBomb());
+                bullet.destroy();
+            } else if (target instanceof Player) {
+                Player player = (Player) target;
+                bullet.destroy();
 
-            if (WallManager.getInst().hasHitWall(bullet)) {
-                bulletIterator.remove();
-            } else if (player.hasBeenHit(bullet)) {
-                bulletIterator.remove();
+                // In a stress test the player soaks up every hit, so the game keeps going
+                if (scale.isStress())
+                    continue;
+
+                collisions.touch(player);
 
                 player.loseLife();
 
                 Sound.EXPLOSION.play();
 
-                // Reset the player, delay for 2 seconds then reset the timings for the aliens movement
-                player.reset();
+                // Give the player time before the next shot
+                fireCountdown = fireInterval;
 
-                // Update timing so bullets are only fired every 2 seconds
-                initTime = PApplet.second();
-                secondaryTime = PApplet.second();
-                secondsPassed = PApplet.second();
+                if (player.getLives() > 0) {
+                    // The player is shown dead for 2 seconds, then put back at the start
+                    player.reset();
+                } else {
+                    player.kill();
 
-                if (player.getLives() == 0) {
-                    // Game Over
-                    SpaceInvaders.setGameState(SpaceInvaders.GameState.GAME_OVER);
+                    if (Arrays.stream(players).allMatch(Player::isDead)) {
+                        // Game Over
+                        SpaceInvaders.setGameState(SpaceInvaders.GameState.GAME_OVER);
+                    }
                 }
+            } else if (bullet.hasHitBottom()) {
+                // Only once its last move has been tested, it could have hit a player on the way down
+                bullet.destroy();
             }
         }
+
+        removeDestroyedBullets();
     }
 
     /**
-     * This checks to see if a bullet as collided with a alien. If so it will remove the alien.
+     * Kills an alien that has been hit by one of the player's bullets.
      *
-     * @param player Player instance needed so their score can be incremented if an alien is killed.
-     * @param bullet The fired bullet instance to it can be compared with each alien's position.
-     * @return Returns true if the bullet has collided or false if it has not.
+     * @param player Player instance needed so their score can be incremented.
+     * @param alien The alien that was hit.
+     * @param blastRadius Radius of the bullet's blast, the aliens within it are also destroyed. 0 for no blast.
      *
      * @author Toby Essex
      */
-    public boolean checkBulletHitsAlien(Player player, Bullet bullet) {
-        int rowIndex = 0;
+    public void hitAlien(Player player, Alien alien, int blastRadius) {
+        // Alien has been hit, therefore kill/remove it
+        removeAlien(alien);
 
-        for (ArrayList<Alien> row : aliens) {
-            int alienIndex = 0;
-            for (Alien alien : row) {
-                if (
-                    // Check the bullet if within the alien's X coordinates
-                    bullet.getX() >= alien.getX() - (alien.getWidth() / 2) &&
-                    bullet.getX() <= alien.getX() + (alien.getWidth() / 2) &&
-                    // Check the bullet if within the alien's Y coordinates
-                    bullet.getY() + (bullet.getHeight() / 2) <= alien.getY() - (alien.getHeight() / 2)
-                ) {
-                    // Alien has been hit, therefore kill/remove it
-                    if(bullet.isBomb()) {
-                        destroyAliensWithBomb(player, aliens.get(rowIndex).remove(alienIndex));
-                        Sound.EXPLOSION.play();
-                    } else {
-                        // Remove the alien that was hit as well as get its score
-                        player.addScore(aliens.get(rowIndex).remove(alienIndex).getKillScore());
-                        Sound.ALIEN_KILLED.play();
-                    }
-                    return true;
+        if(blastRadius > 0) {
+            destroyAliensWithBomb(player, alien, blastRadius);
+            Sound.EXPLOSION.play();
+        } else {
+            // Get the score of the alien that was hit
+            player.addScore(alien.getKillScore());
+            Sound.ALIEN_KILLED.play();
+        }
+    }
+
+    /**
+     * Removes any alien bullets destroyed by other bullets.
+     *
+     * @author Toby Essex
+     */
+    public void removeDestroyedBullets() {
+        alienBullets.removeIf(Bullet::isDestroyed);
+    }
+
+    /**
+     * Destroys every alien bullet in flight.
+     *
+     * @author Toby Essex
+     */
+    private void removeBullets() {
+        for (Bullet bullet : alienBullets)
+            bullet.destroy();
+
+        alienBullets.clear();
+    }
+
+    /**
+     * Adds every living alien to the broad-phase grid.
+     *
+     * @param grid The grid.
+     *
+     * @author Toby Essex
+     */
+    public void addTo(SpatialHash<GameObject> grid) {
+        isGridStale = false;
+
+        if (aliens != null) {
+            for (ArrayList<Alien> row : aliens) {
+                for (Alien alien : row)
+                    alien.addTo(grid);
+            }
+        }
+    }
+
+    /**
+     * Measures the space covered by each column and row of living aliens, as they are now.
+     *
+     * @return Returns the formation's bounds. The same object is reused each call.
+     *
+     * @author Toby Essex
+     */
+    public FormationBounds updateBounds() {
+        bounds.clear();
+
+        if (aliens != null) {
+            for (ArrayList<Alien> row : aliens) {
+                for (Alien alien : row) {
+                    // Aliens are drawn from their top centre
+                    bounds.include(alien.getRow(), alien.getColumn(), alien.getX() - alien.getWidth() / 2f, alien.getY(),
+                            alien.getX() + alien.getWidth() / 2f, alien.getY() + alien.getHeight());
                 }
-                alienIndex++;
             }
-            rowIndex++;
         }
-        return false;
+
+        return bounds;
+    }
+
+    /**
+     * @param row Row of the alien's place in the formation.
+     * @param column Column of the alien's place in the formation.
+     * @return Returns the alien in that place, or null if it has been destroyed.
+     *
+     * @author Toby Essex
+     */
+    public Alien getAlien(int row, int column) {
+        // The bounds are sized for the largest wave, so may ask about places this wave doesn't have
+        if (formation == null || row >= rowCount || column >= columnCount || !isAlive[row * columnCount + column])
+            return null;
+
+        return formation[row * columnCount + column];
     }
 
     /**
-     * Sets up game objects.
+     * Sets up game objects, building the first wave straight away.
      *
      * @author Toby Essex, Craig Hughes
      */
     private void createAliens() {
         aliens = new ArrayList<>();
+        rows = new ArrayList<>();
 
-        for (int col = 0; col < NO_OF_COLUMNS; col++) {
-            ArrayList<Alien> alienRow = new ArrayList<>();
-
-            for (int row = 0; row < NO_OF_ALIENS_PER_ROW; row++) {
-                if(col == 0) {
-                    alienRow.add(new Alien(parent, 0, Image.ALIEN_TIER_1.load(), 50 + (row * 40), 100));
-                } else if (col == 1) {
-                    alienRow.add(new Alien(parent, 1, Image.ALIEN_TIER_2.load(), 50 + (row * 40), 140));
-                } else if (col == 2) {
-                    alienRow.add(new Alien(parent, 1, Image.ALIEN_TIER_2.load(), 50 + (row * 40), 180));
-                } else if (col == 3) {
-                    alienRow.add(new Alien(parent, 2, Image.ALIEN_TIER_3.load(), 50 + (row * 40), 220));
-                } else {
-                    alienRow.add(new Alien(parent, 2, Image.ALIEN_TIER_3.load(), 50 + (row * 40), 260));
+        for (int row = 0; row < waves.getMaxRows(); row++)
+            rows.add(new ArrayList<>(waves.getMaxColumns()));
+
+        formation = new Alien[waves.getMaxPlaces()];
+        nextFormation = waves.getCount() > 1 ? new Alien[waves.getMaxPlaces()] : null;
+
+        build(formation, 0);
+
+        if (scale.isSwarm()) {
+            // The swarm flies over the whole arena above the walls, aliens are drawn from their top centre
+            flock = new Flock(waves.getRows(0) * waves.getColumns(0), Math.min(getSpacingX(0), getSpacingY(0)));
+            flock.setArena(20, 60, SpaceInvaders.getArenaWidth() - 20, WallManager.getInst().getTop() - 40 - SWARM_FLOOR_GAP);
+        }
+
+        startWave(0);
+    }
+
+    /**
+     * Puts a wave's aliens in their places in a formation, creating any the formation doesn't have yet and reusing the
+     * rest. Run in the background for every wave but the first.
+     *
+     * @param target Formation to build.
+     * @param wave Index of the wave.
+     *
+     * @author Toby Essex, Craig Hughes
+     */
+    private void build(Alien[] target, int wave) {
+        int columns = waves.getColumns(wave);
+        int spacingX = getSpacingX(wave), spacingY = getSpacingY(wave);
+
+        for (int row = 0; row < waves.getRows(wave); row++) {
+            for (int column = 0; column < columns; column++) {
+                int tier = waves.getTier(wave, row, column);
+
+                if (tier == Waves.EMPTY)
+                    continue;
+
+                Image image = tier == 0 ? Image.ALIEN_TIER_1 : tier == 1 ? Image.ALIEN_TIER_2 : Image.ALIEN_TIER_3;
+                int place = row * columns + column;
+                int x = FORMATION_LEFT + column * spacingX, y = waves.getTop(wave) + row * spacingY;
+
+                if (target[place] == null)
+                    target[place] = new Alien(parent, tier, image, row, column, x, y);
+                else
+                    target[place].respawn(tier, image, row, column, x, y);
+            }
+        }
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the distance between the aliens of a row. The arcade formation is 40 pixels apart, wider ones are
+     *         packed into the arena.
+     *
+     * @author Toby Essex
+     */
+    private int getSpacingX(int wave) {
+        return Math.min(MARCH_STEP, (SpaceInvaders.getArenaWidth() - 100) / waves.getColumns(wave));
+    }
+
+    /**
+     * @param wave Index of the wave.
+     * @return Returns the distance between rows. The arcade formation is 40 pixels apart, taller ones are packed into
+     *         the same 320 pixels.
+     *
+     * @author Toby Essex
+     */
+    private int getSpacingY(int wave) {
+        return Math.min(40, 320 / waves.getRows(wave));
+    }
+
+    /**
+     * Starts the wave after this one, swapping in the formation built for it while this one was played.
+     *
+     * @author Toby Essex
+     */
+    private void nextWave() {
+        int next = (wave + 1) % waves.getCount();
+
+        if (next != wave) {
+            awaitBuild();
+
+            Alien[] played = formation;
+            formation = nextFormation;
+            nextFormation = played;
+            nextFormationWave = -1;
+        }
+
+        startWave(next);
+    }
+
+    /**
+     * Starts a wave whose formation has been built, then starts building the wave after it in the background. <br>
+     * Nothing is parsed or allocated.
+     *
+     * @param wave Index of the wave.
+     *
+     * @author Toby Essex
+     */
+    private void startWave(int wave) {
+        this.wave = wave;
+
+        rowCount = waves.getRows(wave);
+        columnCount = waves.getColumns(wave);
+        alienCount = waves.getAlienCount(wave);
+        spacingX = getSpacingX(wave);
+        spacingY = getSpacingY(wave);
+
+        fireInterval = waves.getFireInterval(wave);
+        alienVolley = waves.getVolley(wave);
+        fireCountdown = fireInterval;
+
+        MotherShipManager.getInst().schedule(waves.getMotherShipFirst(wave), waves.getMotherShipGap(wave));
+
+        resetAliens();
+        buildNextWave();
+    }
+
+    /**
+     * Starts building the wave after this one into the spare formation, unless it has already been built.
+     *
+     * @author Toby Essex
+     */
+    private void buildNextWave() {
+        int next = (wave + 1) % waves.getCount();
+
+        if (next == wave || next == nextFormationWave)
+            return;
+
+        // The builder is reused, so wait for it to finish any wave it is still building
+        awaitBuild();
+
+        builder.reinitialize();
+        builder.target = nextFormation;
+        builder.wave = next;
+        nextFormationWave = next;
+
+        isBuilding = true;
+        ForkJoinPool.commonPool().execute(builder);
+    }
+
+    /**
+     * Waits for the builder to finish, if it was started.
+     *
+     * @author Toby Essex
+     */
+    private void awaitBuild() {
+        if (isBuilding) {
+            builder.join();
+            isBuilding = false;
+        }
+    }
+
+    /**
+     * Brings every alien in this wave's formation back to life at its starting position.
+     *
+     * @author Toby Essex
+     */
+    private void resetAliens() {
+        // The grid holds the last formation until the next broad-phase, until then every alien is shown
+        isGridStale = true;
+
+        resetShooters();
+        aliens.clear();
+
+        for (int row = 0; row < rowCount; row++) {
+            // Reuse the row lists, even the ones that were removed once emptied
+            ArrayList<Alien> alienRow = rows.get(row);
+            alienRow.clear();
+
+            for (int column = 0; column < columnCount; column++) {
+                int place = row * columnCount + column;
+
+                if (isAlive[place]) {
+                    formation[place].reset();
+                    alienRow.add(formation[place]);
                 }
             }
 
             aliens.add(alienRow);
         }
+
+        if (flock != null)
+            startSwarm();
+
+        resetMarch();
+    }
+
+    /**
+     * Moves the alien under the march cursor then moves the cursor on. <br>
+     * Rows are marched from the bottom up, starting with the alien at the front of the march.
+     *
+     * @author Toby Essex
+     */
+    private void marchNext() {
+        // Rows may have been removed since the last tick
+        marchRow = Math.min(marchRow, aliens.size() - 1);
+
+        // Skip past finished rows, starting the next step once the top row is done
+        while (marchRow < 0 || marchIndex >= aliens.get(marchRow).size()) {
+            if (marchRow <= 0) {
+                startMarchStep();
+            } else {
+                marchRow--;
+                marchIndex = 0;
+            }
+        }
+
+        ArrayList<Alien> row = aliens.get(marchRow);
+        boolean isMovingRight = marchDirection > 0;
+
+        // Moving the front alien first stops an alien moving on top of the one next to it
+        Alien alien = row.get(isMovingRight ? row.size() - 1 - marchIndex : marchIndex);
+        marchIndex++;
+
+        alien.march(marchX, marchY, isMarchAlt);
+
+        if (alien.checkX(isMovingRight))
+            hasReachedEdge = true;
+    }
+
+    /**
+     * Starts the next step of the march, moving the formation along, or down and around if it reached an edge.
+     *
+     * @author Toby Essex
+     */
+    private void startMarchStep() {
+        if (hasReachedEdge) {
+            marchDirection = -marchDirection;
+            marchY += MARCH_DROP;
+            hasReachedEdge = false;
+        } else {
+            marchX += MARCH_STEP * marchDirection;
+        }
+
+        isMarchAlt = !isMarchAlt;
+
+        if (ticksSinceMarchSound >= MARCH_SOUND_GAP) {
+            (isMarchAlt ? Sound.ALIEN_MOVE_HIGH_PITCH : Sound.ALIEN_MOVE_LOW_PITCH).play();
+            ticksSinceMarchSound = 0;
+        }
+
+        marchRow = aliens.size() - 1;
+        marchIndex = 0;
+    }
+
+    /**
+     * Puts the march back to the start, the first step moves the formation to where it starts.
+     *
+     * @author Toby Essex
+     */
+    private void resetMarch() {
+        marchX = -MARCH_STEP;
+        marchY = 0;
+        marchDirection = 1;
+        isMarchAlt = false;
+        hasReachedEdge = false;
+        marchRow = -1;
+        marchIndex = 0;
     }
 
     /**
@@ -247,77 +958,238 @@ final public class AlienManager {
      *
      * @param player Player's instance.
      * @param alienHit Alien that was hit directly with the bomb.
+     * @param blastRadius Radius in which aliens are destroyed.
      *
      * @author Toby Essex
      */
-    private void destroyAliensWithBomb(Player player, Alien alienHit) {
-        // Radius in which aliens can be destroyed
-        int BOMB_RADIUS = 50;
-
+    private void destroyAliensWithBomb(Player player, Alien alienHit, int blastRadius) {
         // Get score from killing alien
         player.addScore(alienHit.getKillScore());
 
-        // Checks the current alien's position against's the alien hit directly position to see if it's within the radius, if so destroy it.
-        aliens.forEach(row -> row.removeIf(alien -> {
-            boolean can_remove = Math.abs(alienHit.getX() - alien.getX()) < BOMB_RADIUS && Math.abs(alienHit.getY() - alien.getY()) < BOMB_RADIUS;
+        // Find the aliens within the radius of the alien hit directly and destroy them
+        CollisionManager.getInst().queryRadius(
+                alienHit.getX(), alienHit.getY() + alienHit.getHeight() / 2f, blastRadius, CollisionManager.ALIENS, inBlast
+        );
+
+        for (GameObject alien : inBlast) {
+            removeAlien((Alien) alien);
+            player.addScore(((Alien) alien).getKillScore());
+        }
+    }
+
+    /**
+     * Removes a killed alien from its row and from the broad-phase grid.
+     *
+     * @param alien The killed alien.
+     *
+     * @author Toby Essex
+     */
+    private void removeAlien(Alien alien) {
+        for (ArrayList<Alien> row : aliens) {
+            if (row.remove(alien))
+                break;
+        }
+
+        CollisionManager.getInst().remove(alien);
+
+        int column = alien.getColumn();
+        int index = alien.getRow() * columnCount + column;
+
+        if (!isAlive[index])
+            return;
+
+        isAlive[index] = false;
+        aliveCount--;
+
+        if (flock != null)
+            flock.remove(index);
+
+        if (lowestInColumn[column] != alien.getRow())
+            return;
+
+        // The alien above (if any) becomes the column's shooter
+        int row = alien.getRow() - 1;
+
+        while (row >= 0 && !isAlive[row * columnCount + column])
+            row--;
 
-            if (can_remove) player.addScore(alien.getKillScore());
+        lowestInColumn[column] = row;
 
-            return can_remove;
-        }));
+        if (row < 0) {
+            // Column is empty, move the last shooter column into its slot
+            int slot = shooterSlots[column];
+            int last = shooterColumns[--shooterCount];
+
+            shooterColumns[slot] = last;
+            shooterSlots[last] = slot;
+            shooterSlots[column] = -1;
+        }
     }
 
     /**
-     * Iterates through list of Aliens and changes their direction.
+     * Marks every alien in this wave's formation as alive, with the lowest alien of each column able to shoot.
      *
-     * @author Craig Hughes
+     * @author Toby Essex
      */
-    private void switchAliens() {
-        // Push down
-        aliens.stream().flatMap(Collection::stream).forEach(alien -> {
-            alien.switchX();
-            alien.setY(alien.getY() + 20);
-        });
+    private void resetShooters() {
+        Arrays.fill(lowestInColumn, 0, columnCount, -1);
+        aliveCount = 0;
+
+        // Rows go down the formation, so the last alien found in a column is its lowest
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                boolean isPlaced = waves.getTier(wave, row, column) != Waves.EMPTY;
+
+                isAlive[row * columnCount + column] = isPlaced;
+
+                if (isPlaced) {
+                    lowestInColumn[column] = row;
+                    aliveCount++;
+                }
+            }
+        }
+
+        shooterCount = 0;
+
+        for (int column = 0; column < columnCount; column++) {
+            if (lowestInColumn[column] >= 0) {
+                shooterColumns[shooterCount] = column;
+                shooterSlots[column] = shooterCount++;
+            } else {
+                shooterSlots[column] = -1;
+            }
+        }
     }
 
     /**
-     * Randomises which alien will shoot at an interval of two seconds.
+     * Picks the column whose shooter is closest to being above a player.
      *
-     * @author Toby Essex, Craig Hughes
+     * @param player Player to aim at.
+     * @return Returns the column, or -1 if no column can shoot.
+     *
+     * @author Toby Essex
      */
-    private void alienShoot() {
-        // Reset time if needed
-        if(initTime + 2 > 59)
-            initTime = 0;
+    private int aimAt(Player player) {
+        // Column over the player's centre, from where the formation has marched to
+        int playerCentre = player.getX() + player.getWidth() / 2;
 
-        // Every 2 Seconds, Have an alien shoot.
-        if(secondsPassed >= initTime + 2 && initTime != 0) {
-            initTime = secondsPassed;
+        if (flock != null)
+            return nearestShooter(playerCentre);
 
-            // Get random alien
-            int randomCol = (int) (Math.random() * aliens.size());
-            Alien randomAlien = aliens.get(randomCol).get((int) (Math.random() * aliens.get(randomCol).size()));
+        int target = Math.round((playerCentre - (FORMATION_LEFT + marchX)) / (float) spacingX);
 
-            alienBullets.add(new Bullet(parent, randomAlien.getX(), randomAlien.getY(), false));
-        } else if (initTime == 0) {
-            initTime = secondsPassed;
+        target = Math.max(0, Math.min(columnCount - 1, target));
 
+        // Search outwards for the nearest column that still has a shooter
+        for (int distance = 0; distance < columnCount; distance++) {
+            if (target - distance >= 0 && lowestInColumn[target - distance] >= 0)
+                return target - distance;
+
+            if (target + distance < columnCount && lowestInColumn[target + distance] >= 0)
+                return target + distance;
         }
 
-        // Loop over each alien bullet and display and move it
-        for (Iterator<Bullet> bulletIterator = alienBullets.iterator(); bulletIterator.hasNext();) {
-            Bullet bullet = bulletIterator.next();
+        return -1;
+    }
 
-            if (bullet.hasHitBottom()) {
-                bulletIterator.remove();
-                continue;
+    /**
+     * Picks the column whose shooter is flying closest to being above a point, for a swarm where columns are scattered.
+     *
+     * @param x X coordinate of the point.
+     * @return Returns the column, or -1 if no column can shoot.
+     *
+     * @author Toby Essex
+     */
+    private int nearestShooter(int x) {
+        int nearest = -1, nearestDistance = Integer.MAX_VALUE;
+
+        for (int i = 0; i < shooterCount; i++) {
+            int column = shooterColumns[i];
+            int distance = Math.abs(formation[lowestInColumn[column] * columnCount + column].getX() - x);
+
+            if (distance < nearestDistance) {
+                nearest = column;
+                nearestDistance = distance;
             }
+        }
+
+        return nearest;
+    }
+
+    /**
+     * Has the aliens fire a volley, at the wave's fire rate at first and faster as aliens are killed. <br>
+     * The arcade's volley is a single shot, a stress test fires hundreds every tick.
+     *
+     * @param players Players that can be aimed at.
+     *
+     * @author Toby Essex, Craig Hughes
+     */
+    private void alienShoot(Player... players) {
+        if (--fireCountdown <= 0 && shooterCount > 0) {
+            for (int i = 0; i < alienVolley; i++)
+                fireShot(players);
+
+            // Fire faster the fewer aliens there are left
+            int minInterval = Math.min(MIN_FIRE_INTERVAL, fireInterval);
+            fireCountdown = minInterval + (fireInterval - minInterval) * aliveCount / alienCount;
+        }
+
+    }
+
+    /**
+     * Picks the player an aimed shot is fired at, taking turns between the players that still have lives.
+     *
+     * @param players Players that can be aimed at.
+     * @return Returns the player, or null if every player is out of the game.
+     *
+     * @author Toby Essex
+     */
+    private Player aimedTarget(Player... players) {
+        int inGame = 0;
+
+        for (Player player : players) {
+            if (player.getLives() > 0 && !player.isDead())
+                inGame++;
+        }
 
-            bullet.show();
-            bullet.move();
+        if (inGame == 0)
+            return null;
+
+        int turn = (shotsFired / AIMED_SHOT_EVERY) % inGame;
+
+        for (Player player : players) {
+            if (player.getLives() > 0 && !player.isDead() && turn-- == 0)
+                return player;
         }
 
-        secondsPassed = PApplet.second();
+        return null;
+    }
+
+    /**
+     * Has the lowest alien of a column shoot. <br>
+     * Most shots come from a random column, every third is aimed at a player still in the game.
+     *
+     * @param players Players that can be aimed at.
+     *
+     * @author Toby Essex, Craig Hughes
+     */
+    private void fireShot(Player... players) {
+        Player target = shotsFired % AIMED_SHOT_EVERY == 0 ? aimedTarget(players) : null;
+
+        int column = target != null
+                ? aimAt(target)
+                : shooterColumns[(int) (random.next() * shooterCount)];
+
+        Alien shooter = formation[lowestInColumn[column] * columnCount + column];
+
+        // Aimed shots roll, the others take turns between the plunger and squiggly shots
+        Bullet.BulletType type = shotsFired % AIMED_SHOT_EVERY == 0
+                ? Bullet.BulletType.ROLLING
+                : shotsFired % 2 == 0 ? Bullet.BulletType.PLUNGER : Bullet.BulletType.SQUIGGLY;
+
+        // Bullets are offset for the player's ship, take it off so the bullet leaves the alien's centre
+        alienBullets.add(new Bullet(parent, shooter.getX() - 35, shooter.getY() + shooter.getHeight(), type));
+        shotsFired++;
     }
 
     /**
@@ -346,4 +1218,61 @@ final public class AlienManager {
     public ArrayList getAliens(){
         return aliens;
     }
+
+    /**
+     * @return Returns true if the aliens are flying as a flock rather than marching in formation.
+     *
+     * @author Toby Essex
+     */
+    public boolean isSwarming() {
+        return flock != null;
+    }
+
+    /**
+     * @return Returns the number of living aliens.
+     *
+     * @author Toby Essex
+     */
+    public int getAliveCount() {
+        return formation == null ? 0 : aliveCount;
+    }
+
+    /**
+     * @return Returns the number of alien bullets in flight.
+     *
+     * @author Toby Essex
+     */
+    public int getBulletCount() {
+        return alienBullets.size();
+    }
+
+    /**
+     * Builds the next wave's formation on the fork/join pool. <br>
+     * One builder is reused for every wave, it is only handed a new wave once the last one has been joined. Never
+     * serialized.
+     *
+     * @author Toby Essex
+     */
+    @SuppressWarnings("serial")
+    private class WaveBuilder extends RecursiveAction {
+        /**
+         * Formation to build.
+         */
+        private Alien[] target;
+
+        /**
+         * Index of the wave to build.
+         */
+        private int wave;
+
+        /**
+         * Builds the wave.
+         *
+         * @author Toby Essex
+         */
+        @Override
+        protected void compute() {
+            build(target, wave);
+        }
+    }
 }
@@ -0,0 +1,503 @@
+package space_invaders.managers;
+
+import processing.core.PApplet;
+import space_invaders.SpaceInvaders;
+import space_invaders.engine.Collision;
+import space_invaders.engine.FormationBounds;
+import space_invaders.engine.FormationFilter;
+import space_invaders.engine.SpatialHash;
+import space_invaders.game_objects.Alien;
+import space_invaders.game_objects.Bullet;
+import space_invaders.game_objects.GameObject;
+import space_invaders.game_objects.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Owns the broad-phase grid every collidable object is added to at the start of each tick. <br>
+ * Objects are added on a collision layer so a query only tests the kinds of object it can actually hit. <br>
+ * This class uses the singleton pattern. Using lazy initialisation.
+ *
+ * @author Toby Essex
+ */
+final public class CollisionManager {
+    /**
+     * Collision layer of the aliens.
+     */
+    public static final int ALIENS = 1;
+
+    /**
+     * Collision layer of the walls.
+     */
+    public static final int WALLS = 1 << 1;
+
+    /**
+     * Collision layer of the mother ship.
+     */
+    public static final int MOTHER_SHIP = 1 << 2;
+
+    /**
+     * Collision layer of the players.
+     */
+    public static final int PLAYERS = 1 << 3;
+
+    /**
+     * Collision layer of the power-up.
+     */
+    public static final int POWER_UPS = 1 << 4;
+
+    /**
+     * Collision layer of the players' bullets. Bullets aren't added to the grid, bullets meeting each other are found by
+     * {@link CollisionManager#interceptBullets(Player...)}.
+     */
+    public static final int PLAYER_BULLETS = 1 << 5;
+
+    /**
+     * Collision layer of the aliens' bullets.
+     */
+    public static final int ALIEN_BULLETS = 1 << 6;
+
+    /**
+     * Size of each cell of the grid, a little larger than an alien.
+     */
+    private static final int CELL_SIZE = 64;
+
+    /**
+     * Fewest bullets worth splitting off to another thread when finding hits.
+     */
+    private static final int HITS_PER_WORKER = 128;
+
+    /**
+     * Used as this class is a singleton.
+     */
+    private static CollisionManager inst;
+
+    /**
+     * The broad-phase grid, created once the parent is set.
+     */
+    private SpatialHash<GameObject> grid;
+
+    /**
+     * Reused list of the objects returned by a query.
+     */
+    private ArrayList<GameObject> candidates = new ArrayList<>();
+
+    /**
+     * Number of bullets shot down by other bullets since the game started.
+     */
+    private int interceptions;
+
+    /**
+     * Candidates list for each thread finding hits.
+     */
+    private final ThreadLocal<ArrayList<GameObject>> workerCandidates = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * First object each bullet given to {@link CollisionManager#findHits(ArrayList)} hit.
+     */
+    private GameObject[] hitTargets = new GameObject[64];
+
+    /**
+     * How far along its last move each bullet hit its target.
+     */
+    private float[] hitTimes = new float[64];
+
+    /**
+     * Edges of each bullet's last move, tested against the formation in batches.
+     */
+    private float[] sweptLeft = new float[64], sweptTop = new float[64], sweptRight = new float[64], sweptBottom = new float[64];
+
+    /**
+     * Columns and rows of the formation each bullet's last move overlaps.
+     */
+    private int[] columnMasks = new int[64], rowMasks = new int[64];
+
+    /**
+     * Finds which columns and rows of the formation the bullets overlap, using the Vector API if it is available.
+     */
+    private final FormationFilter formationFilter = FormationFilter.create();
+
+    /**
+     * Columns and rows of the formation when hits were last found, null if the aliens were swarming.
+     */
+    private FormationBounds formationBounds;
+
+    /**
+     * Objects removed or damaged since hits were last found, bullets that hit them are tested again.
+     */
+    private final Set<GameObject> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * How far along its last move the bullet given to {@link CollisionManager#firstHit(Bullet, int)} hit.
+     */
+    private float hitTime;
+
+    /**
+     * @return Returns a instance of this class.
+     *
+     * @author Toby Essex
+     */
+    public static synchronized CollisionManager getInst() {
+        if(inst == null)
+            inst = new CollisionManager();
+        return inst;
+    }
+
+    /** Private constructor so this class can't be constructed. */
+    private CollisionManager() {}
+
+    /**
+     * Sets the parent class and creates a grid covering the arena.
+     *
+     * @param parent PApplet class instance.
+     *
+     * @author Toby Essex
+     */
+    public void setParent(PApplet parent) {
+        grid = new SpatialHash<>(SpaceInvaders.getArenaWidth(), parent.height, CELL_SIZE);
+    }
+
+    /**
+     * Clears the grid and adds every collidable object in its current position. Called once per tick.
+     *
+     * @param players Players in the game.
+     *
+     * @author Toby Essex
+     */
+    public void rebuild(Player... players) {
+        grid.clear();
+
+        // Players out of the game can't be hit or pick anything up
+        for (Player player : players) {
+            if (!player.isDead())
+                player.addTo(grid);
+        }
+
+        AlienManager.getInst().addTo(grid);
+        WallManager.getInst().addTo(grid);
+        MotherShipManager.getInst().addTo(grid);
+        PowerUpManager.getInst().addTo(grid);
+    }
+
+    /**
+     * Finds player and alien bullets that met during their last move, with the entity systems' collide pass. <br>
+     * Two bullets cancel each other out, but a bomb carries on and only the bullet it hit is destroyed.
+     *
+     * @param players Players in the game.
+     *
+     * @author Toby Essex
+     */
+    public void interceptBullets(Player... players) {
+        // Player bullets are one side, so only bullets fired by opposite sides are paired
+        interceptions += EntityManager.getInst().collide(PLAYER_BULLETS);
+
+        for (Player player : players)
+            player.removeDestroyedBullets();
+
+        AlienManager.getInst().removeDestroyedBullets();
+    }
+
+    /**
+     * @return Returns the number of bullets shot down by other bullets since the game started.
+     *
+     * @author Toby Essex
+     */
+    public int getInterceptions() {
+        return interceptions;
+    }
+
+    /**
+     * Resets the stats for a new game.
+     *
+     * @author Toby Essex
+     */
+    public void reset() {
+        interceptions = 0;
+    }
+
+    /**
+     * Finds the first object on the given layers the bullet touched along its last move.
+     *
+     * @param bullet Bullet to test.
+     * @param layerMask Collision layers the bullet can hit.
+     * @return Returns the object hit first, or null if nothing was hit.
+     *
+     * @see CollisionManager#getHitTime()
+     *
+     * @author Toby Essex
+     */
+    public GameObject firstHit(Bullet bullet, int layerMask) {
+        bullet.query(grid, layerMask, candidates);
+
+        GameObject first = null;
+        hitTime = Collision.MISS;
+
+        for (GameObject candidate : candidates) {
+            float time = candidate.sweep(bullet);
+
+            if (time < hitTime) {
+                first = candidate;
+                hitTime = time;
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     * Finds the first object each bullet touched along its last move, on the layers its type can hit. <br>
+     * Nothing is changed, so once there are enough bullets they are split into ranges and tested on the fork/join pool.
+     * Each range writes to its own slots, then the hits are applied in order with
+     * {@link CollisionManager#confirmHit(int, Bullet)}.
+     *
+     * @param bullets Bullets to test.
+     *
+     * @author Toby Essex
+     */
+    public void findHits(ArrayList<Bullet> bullets) {
+        if (hitTargets.length < bullets.size()) {
+            int capacity = Math.max(bullets.size(), hitTargets.length * 2);
+
+            hitTargets = new GameObject[capacity];
+            hitTimes = new float[capacity];
+            sweptLeft = new float[capacity];
+            sweptTop = new float[capacity];
+            sweptRight = new float[capacity];
+            sweptBottom = new float[capacity];
+            columnMasks = new int[capacity];
+            rowMasks = new int[capacity];
+        }
+
+        touched.clear();
+        // A swarm has no formation to rule bullets out with, its aliens are found through the grid
+        formationBounds = AlienManager.getInst().isSwarming() ? null : AlienManager.getInst().updateBounds();
+
+        if (bullets.size() <= HITS_PER_WORKER) {
+            findHits(bullets, 0, bullets.size());
+        } else {
+            // Invoked from a pool's thread the ranges run on that pool, otherwise on the common pool
+            new FindHits(bullets, 0, bullets.size()).invoke();
+        }
+    }
+
+    /**
+     * Gets the hit found for a bullet, testing it again if an earlier hit has removed or damaged what it hit. <br>
+     * Removing or damaging an object can only change which object a bullet hit first if it was that object, so the
+     * result is always the same as testing each bullet after the hits before it were applied.
+     *
+     * @param index Bullet's index in the list given to {@link CollisionManager#findHits(ArrayList)}.
+     * @param bullet The bullet.
+     * @return Returns the object the bullet hit first, or null if nothing was hit.
+     *
+     * @see CollisionManager#getHitTime()
+     *
+     * @author Toby Essex
+     */
+    public GameObject confirmHit(int index, Bullet bullet) {
+        GameObject target = hitTargets[index];
+
+        if (target != null && touched.contains(target))
+            return firstHit(bullet, bullet.getType().getTargets());
+
+        hitTime = hitTimes[index];
+
+        return target;
+    }
+
+    /**
+     * Marks an object as changed by a hit, e.g. a damaged wall, so bullets that hit it are tested again.
+     *
+     * @param object The object.
+     *
+     * @author Toby Essex
+     */
+    public void touch(GameObject object) {
+        touched.add(object);
+    }
+
+    /**
+     * Finds the first hit of a range of bullets. Only reads the grid and the objects in it. <br>
+     * Aliens are found through the formation rather than the grid, only those in a band of columns and a band of rows
+     * that a bullet overlaps can be hit by it. The aliens of a swarm are found through the grid.
+     *
+     * @param bullets Bullets to test.
+     * @param from Index of the first bullet in the range.
+     * @param to Index after the last bullet in the range.
+     *
+     * @author Toby Essex
+     */
+    private void findHits(ArrayList<Bullet> bullets, int from, int to) {
+        ArrayList<GameObject> candidates = workerCandidates.get();
+        AlienManager alienManager = AlienManager.getInst();
+
+        for (int i = from; i < to; i++) {
+            Bullet bullet = bullets.get(i);
+
+            sweptLeft[i] = bullet.getSweptLeft();
+            sweptTop[i] = bullet.getSweptTop();
+            sweptRight[i] = bullet.getSweptRight();
+            sweptBottom[i] = bullet.getSweptBottom();
+        }
+
+        if (formationBounds != null)
+            formationFilter.overlaps(sweptLeft, sweptTop, sweptRight, sweptBottom, from, to, formationBounds, columnMasks, rowMasks);
+
+        int gridLayers = formationBounds != null ? ~ALIENS : ~0;
+
+        for (int i = from; i < to; i++) {
+            Bullet bullet = bullets.get(i);
+            int targets = bullet.getType().getTargets();
+
+            // Objects over several cells can be found more than once, testing them again doesn't change the first hit
+            grid.collect(sweptLeft[i], sweptTop[i], sweptRight[i], sweptBottom[i], targets & gridLayers, candidates);
+
+            GameObject first = null;
+            float firstTime = Collision.MISS;
+
+            for (GameObject candidate : candidates) {
+                float time = candidate.sweep(bullet);
+
+                if (time < firstTime) {
+                    first = candidate;
+                    firstTime = time;
+                }
+            }
+
+            int columnBands = formationBounds != null && (targets & ALIENS) != 0 ? columnMasks[i] : 0;
+
+            for (int rowBands = columnBands != 0 ? rowMasks[i] : 0; rowBands != 0; rowBands &= rowBands - 1) {
+                int rowBand = Integer.numberOfTrailingZeros(rowBands);
+
+                for (int bands = columnBands; bands != 0; bands &= bands - 1) {
+                    int columnBand = Integer.numberOfTrailingZeros(bands);
+
+                    for (int row = formationBounds.getFirstRow(rowBand); row < formationBounds.getFirstRow(rowBand + 1); row++) {
+                        for (int column = formationBounds.getFirstColumn(columnBand); column < formationBounds.getFirstColumn(columnBand + 1); column++) {
+                            Alien alien = alienManager.getAlien(row, column);
+
+                            if (alien == null)
+                                continue;
+
+                            float time = alien.sweep(bullet);
+
+                            if (time < firstTime) {
+                                first = alien;
+                                firstTime = time;
+                            }
+                        }
+                    }
+                }
+            }
+
+            hitTargets[i] = first;
+            hitTimes[i] = firstTime;
+        }
+
+        candidates.clear();
+    }
+
+    /**
+     * @return Returns how far along its last move (0 to 1) the last bullet given to
+     *         {@link CollisionManager#firstHit(Bullet, int)} hit.
+     *
+     * @author Toby Essex
+     */
+    public float getHitTime() {
+        return hitTime;
+    }
+
+    /**
+     * Finds every object on the given layers overlapping a box.
+     *
+     * @param left Left edge of the box.
+     * @param top Top edge of the box.
+     * @param right Right edge of the box.
+     * @param bottom Bottom edge of the box.
+     * @param layerMask Collision layers to include.
+     * @param results List the objects are written to, it is cleared first.
+     *
+     * @author Toby Essex
+     */
+    public void query(float left, float top, float right, float bottom, int layerMask, ArrayList<GameObject> results) {
+        grid.query(left, top, right, bottom, layerMask, results);
+    }
+
+    /**
+     * Finds every object on the given layers within a radius.
+     *
+     * @param x X coordinate of the centre.
+     * @param y Y coordinate of the centre.
+     * @param radius Radius to search.
+     * @param layerMask Collision layers to include.
+     * @param results List the objects are written to, it is cleared first.
+     *
+     * @author Toby Essex
+     */
+    public void queryRadius(float x, float y, float radius, int layerMask, ArrayList<GameObject> results) {
+        grid.queryRadius(x, y, radius, layerMask, results);
+    }
+
+    /**
+     * Removes an object that has been destroyed this tick so nothing else hits it.
+     *
+     * @param object The destroyed object.
+     *
+     * @author Toby Essex
+     */
+    public void remove(GameObject object) {
+        grid.remove(object);
+        touched.add(object);
+    }
+
+    /**
+     * Finds the hits of a range of bullets, splitting it in half until it is small enough. Never serialized.
+     *
+     * @author Toby Essex
+     */
+    @SuppressWarnings("serial")
+    private class FindHits extends RecursiveAction {
+        /**
+         * Bullets to test.
+         */
+        private final ArrayList<Bullet> bullets;
+
+        /**
+         * Index of the first bullet in the range, and the index after the last.
+         */
+        private final int from, to;
+
+        /**
+         * FindHits constructor.
+         *
+         * @param bullets Bullets to test.
+         * @param from Index of the first bullet in the range.
+         * @param to Index after the last bullet in the range.
+         */
+        FindHits(ArrayList<Bullet> bullets, int from, int to) {
+            this.bullets = bullets;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Tests the range, or splits it in two.
+         *
+         * @author Toby Essex
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= HITS_PER_WORKER) {
+                findHits(bullets, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+
+            invokeAll(new FindHits(bullets, from, middle), new FindHits(bullets, middle, to));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package space_invaders.managers;
+
+import space_invaders.engine.EntitySystems;
+import space_invaders.engine.EntityWorld;
+import space_invaders.engine.WorldSnapshot;
+
+/**
+ * Owns the entities stored as archetypes of component arrays, and runs the systems over them. <br>
+ * This class uses the singleton pattern. Using lazy initialisation.
+ *
+ * @author Toby Essex
+ */
+final public class EntityManager {
+    /**
+     * Used as this class is a singleton.
+     */
+    private static EntityManager inst;
+
+    /**
+     * Every entity.
+     */
+    private EntityWorld world = new EntityWorld();
+
+    /**
+     * Systems run over the entities.
+     */
+    private EntitySystems systems = new EntitySystems();
+
+    /**
+     * @return Returns a instance of this class.
+     *
+     * @author Toby Essex
+     */
+    public static synchronized EntityManager getInst() {
+        if(inst == null)
+            inst = new EntityManager();
+        return inst;
+    }
+
+    /** Private constructor so this class can't be constructed. */
+    private EntityManager() {}
+
+    /**
+     * Moves every moving entity, then sets the move each one makes next. Called once per tick.
+     *
+     * @author Toby Essex
+     */
+    public void update() {
+        systems.move(world);
+        systems.age(world);
+    }
+
+    /**
+     * Destroys the colliders on opposite sides that met during their last move.
+     *
+     * @param side Collision layer of one side, every other layer is the other side.
+     * @return Returns the number of pairs that met.
+     *
+     * @author Toby Essex
+     */
+    public int collide(int side) {
+        return systems.collide(world, side);
+    }
+
+    /**
+     * Adds every entity with a sprite to the snapshot.
+     *
+     * @param snapshot Snapshot of the world being written.
+     *
+     * @author Toby Essex
+     */
+    public void showEntities(WorldSnapshot snapshot) {
+        systems.render(world, snapshot);
+    }
+
+    /**
+     * @return Returns every entity.
+     *
+     * @author Toby Essex
+     */
+    public EntityWorld getWorld() {
+        return world;
+    }
+}
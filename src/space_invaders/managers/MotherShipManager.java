@@ -1,8 +1,12 @@
 package space_invaders.managers;
 
 import processing.core.PApplet;
+import space_invaders.SpaceInvaders;
+import space_invaders.engine.GameLoop;
+import space_invaders.engine.SpatialHash;
+import space_invaders.engine.WorldSnapshot;
 import space_invaders.resources.Sound;
-import space_invaders.game_objects.Bullet;
+import space_invaders.game_objects.GameObject;
 import space_invaders.game_objects.MotherShip;
 import space_invaders.game_objects.Player;
 
@@ -28,20 +32,35 @@ public class MotherShipManager {
     private PApplet parent;
 
     /**
-     * Mother ships' instance once spawned.
+     * Number of ticks between each mother ship spawning (30 seconds), until a wave sets its own.
      */
-    private MotherShip motherShip;
+    private final int SPAWN_INTERVAL = 30 * GameLoop.TICK_RATE;
 
     /**
-     * Used so the timer which generates the mother ship after a 30 seconds is only created once.
+     * Mother ships' instance once spawned. Volatile as the sound effect timer checks it.
      */
-    private boolean isTimerCreated = false;
+    private volatile MotherShip motherShip;
+
+    /**
+     * Number of ticks into the wave until the first mother ship spawns, then between the next ones (0 for only one).
+     */
+    private int firstSpawn = SPAWN_INTERVAL, spawnGap = SPAWN_INTERVAL;
+
+    /**
+     * Number of ticks until the next mother ship spawns, or 0 if no more spawn this wave.
+     */
+    private int spawnCountdown = SPAWN_INTERVAL;
 
     /**
      * Used to the sound effect timer is only created once per spawn.
      */
     private boolean isSoundTimerCreated = false;
 
+    /**
+     * Timer thread used by the sound effect tasks.
+     */
+    private Timer timer = new Timer("mother-ship", true);
+
     /**
      * @return Returns the class' instance.
      */
@@ -64,28 +83,48 @@ public class MotherShipManager {
     }
 
     /**
-     * Spawned the mother ship after 30 seconds.
+     * Removes the mother ship and restarts the wave's spawn countdown.
+     *
+     * @author Toby Essex
+     */
+    public void reset() {
+        motherShip = null;
+        spawnCountdown = firstSpawn;
+        isSoundTimerCreated = false;
+    }
+
+    /**
+     * Starts a wave's mother ship schedule. A mother ship already flying carries on.
+     *
+     * @param first Number of ticks until the first mother ship spawns.
+     * @param gap Number of ticks between the next ones, or 0 for only one.
      *
      * @author Toby Essex
      */
-    public void spawnMotherShip() {
-        // Only create spawn timer once
-        if(!isTimerCreated) {
-            // This spawns a new mother ship after 30 seconds continuously
-            new Timer().schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    motherShip = new MotherShip(parent, -60, 40);
-                }
-            }, 30000, 30000);
-            isTimerCreated = true;
+    public void schedule(int first, int gap) {
+        firstSpawn = Math.max(1, first);
+        spawnGap = gap;
+        spawnCountdown = firstSpawn;
+    }
+
+    /**
+     * Spawns the mother ship on the wave's schedule and moves it. <br>
+     * The countdown is in simulation ticks so the ship is only ever changed by the simulation thread.
+     *
+     * @author Toby Essex
+     */
+    public void updateMotherShip() {
+        // This spawns a new mother ship each time the countdown runs out, until the wave has no more
+        if (spawnCountdown > 0 && --spawnCountdown == 0) {
+            motherShip = new MotherShip(parent, -60, 40);
+            spawnCountdown = spawnGap;
         }
 
-        // If the mother ship is not null add sounds and show and move the ship
+        // If the mother ship is not null add sounds and move the ship
         if(motherShip != null) {
             if(!isSoundTimerCreated) {
                 // Plays the sounds effect for the mother ship continuously
-                new Timer().schedule(new TimerTask() {
+                timer.schedule(new TimerTask() {
                     @Override
                     public void run() {
                         if(motherShip == null)
@@ -96,11 +135,10 @@ public class MotherShipManager {
                 isSoundTimerCreated = true;
             }
 
-            motherShip.show();
             motherShip.move();
 
             // Check for out of bounds, if so remove it
-            if ((motherShip.isMovingLeft() && motherShip.getX() + motherShip.getWidth() < 0) || (!motherShip.isMovingLeft() && motherShip.getX() > parent.width)) {
+            if ((motherShip.isMovingLeft() && motherShip.getX() + motherShip.getWidth() < 0) || (!motherShip.isMovingLeft() && motherShip.getX() > SpaceInvaders.getArenaWidth())) {
                 motherShip = null;
                 isSoundTimerCreated = false;
             }
@@ -108,22 +146,45 @@ public class MotherShipManager {
     }
 
     /**
-     * Checks to see if the mother ship was hit by a bullet.
+     * Displays the mother ship if it has spawned.
+     *
+     * @param snapshot Snapshot of the world being written.
+     *
+     * @author Toby Essex
+     */
+    public void showMotherShip(WorldSnapshot snapshot) {
+        MotherShip motherShip = this.motherShip;
+
+        if (motherShip != null)
+            motherShip.show(snapshot);
+    }
+
+    /**
+     * Adds the mother ship to the broad-phase grid if there is one.
      *
-     * @param player Player instance.
-     * @param bullet Bullet instance.
-     * @return Returns true if the mother ship was hit, false if not.
+     * @param grid The grid.
      *
      * @author Toby Essex
      */
-    public boolean hasBeenHit(Player player, Bullet bullet){
+    public void addTo(SpatialHash<GameObject> grid) {
+        MotherShip motherShip = this.motherShip;
+
+        if (motherShip != null)
+            motherShip.addTo(grid);
+    }
+
+    /**
+     * Destroys the mother ship after it has been hit.
+     *
+     * @param player Player who hit the mother ship.
+     *
+     * @author Toby Essex
+     */
+    public void hitMotherShip(Player player) {
         // Do stuff is mother ship hit
-        if (motherShip != null && motherShip.hasBeenHit(bullet)){
-            player.addScore(motherShip.getScore());
-            motherShip = null;
-            isSoundTimerCreated = false;
-            return true;
-        }
-        return false;
+        CollisionManager.getInst().remove(motherShip);
+        player.addScore(motherShip.getScore());
+        motherShip = null;
+        isSoundTimerCreated = false;
     }
 }
@@ -1,9 +1,16 @@
 package space_invaders.managers;
 
 import processing.core.PApplet;
+import space_invaders.SpaceInvaders;
+import space_invaders.engine.GameRandom;
+import space_invaders.engine.SpatialHash;
+import space_invaders.engine.WorldSnapshot;
+import space_invaders.game_objects.GameObject;
 import space_invaders.game_objects.Player;
 import space_invaders.game_objects.PowerUp;
 
+import java.util.ArrayList;
+
 /**
  * Manages the power-ups in the game. <br>
  * This class uses the singleton pattern. Using lazy initialisation.
@@ -11,7 +18,10 @@ import space_invaders.game_objects.PowerUp;
  * @author Toby Essex
  */
 public class PowerUpManager {
-    private static PowerUpManager inst = new PowerUpManager();
+    /**
+     * Used as this class is a singleton.
+     */
+    private static PowerUpManager inst;
 
     /**
      * Represents the parent class (space_invaders.SpaceInvaders) so we can access all the methods and variables declared is the PApplet class.
@@ -28,6 +38,16 @@ public class PowerUpManager {
      */
     private int previousPlayerScore;
 
+    /**
+     * Random numbers deciding where power-ups drop, only drawn by systems that write the power-up.
+     */
+    private final GameRandom random = new GameRandom("power-up position");
+
+    /**
+     * Reused list of the players near the power-up.
+     */
+    private ArrayList<GameObject> nearby = new ArrayList<>();
+
     /**
      * @return Returns a instance of this class.
      *
@@ -41,6 +61,16 @@ public class PowerUpManager {
 
     private PowerUpManager() { }
 
+    /**
+     * Removes any power-up waiting to be picked up and resets the score needed for the next one.
+     *
+     * @author Toby Essex
+     */
+    public void reset() {
+        powerUp = null;
+        previousPlayerScore = 0;
+    }
+
     /**
      * Sets the parent.
      *
@@ -53,20 +83,27 @@ public class PowerUpManager {
     }
 
     /**
-     * Generate a new power-up if allowed. <br>
-     * If a power-up was generated it displays it and continuously check to see if the player has picked it up.
+     * Generate a new power-up if allowed, from the best score of any player. <br>
+     * If a power-up was generated it animates it and continuously check to see if a player has picked it up.
      *
-     * @param player Player's instance to check to see if they have picked up a a power-up.
+     * @param players Players to check to see if they have picked up a a power-up.
      *
      * @author Toby Essex
      */
-    public void showPowerUp(Player player) {
-        generatePowerUp(player.getScore());
+    public void updatePowerUp(Player... players) {
+        int bestScore = 0;
+
+        for (Player player : players)
+            bestScore = Math.max(bestScore, player.getScore());
+
+        generatePowerUp(bestScore);
 
         if(powerUp != null) {
-            powerUp.show();
+            powerUp.update();
+
+            Player player = playerOnPowerUp();
 
-            if(hasPlayerHitPowerUp(player)) {
+            if(player != null) {
                 player.pickUpPowerUp(powerUp.getPowerUpType());
                 powerUp = null;
             }
@@ -74,28 +111,27 @@ public class PowerUpManager {
     }
 
     /**
-     * Generate a new power-up if allowed. <br>
-     * If a power-up was generated it displays it and continuously check to see if the player has picked it up.
+     * Adds the power-up to the broad-phase grid if there is one.
      *
-     * @param player Player's instance to check to see if they have picked up a a power-up.
-     * @param player2 Second player's instance to check to see if they have picked up a a power-up.
+     * @param grid The grid.
      *
      * @author Toby Essex
      */
-    public void showPowerUp(Player player, Player player2) {
-        generatePowerUp(player.getScore());
-
-        if(powerUp != null) {
-            powerUp.show();
+    public void addTo(SpatialHash<GameObject> grid) {
+        if(powerUp != null)
+            powerUp.addTo(grid);
+    }
 
-            if(hasPlayerHitPowerUp(player)) {
-                player.pickUpPowerUp(powerUp.getPowerUpType());
-                powerUp = null;
-            } else if(hasPlayerHitPowerUp(player2)) {
-                player2.pickUpPowerUp(powerUp.getPowerUpType());
-                powerUp = null;
-            }
-        }
+    /**
+     * Displays the power-up if there is one.
+     *
+     * @param snapshot Snapshot of the world being written.
+     *
+     * @author Toby Essex
+     */
+    public void showPowerUp(WorldSnapshot snapshot) {
+        if(powerUp != null)
+            powerUp.show(snapshot);
     }
 
     /**
@@ -110,28 +146,42 @@ public class PowerUpManager {
         // Otherwise it is double the last power-up score
         if(previousPlayerScore == 0) {
             if(playerScore >= 90) {
-                powerUp = new PowerUp(parent, (int)(Math.random() * (parent.width - 50) + 10));
+                powerUp = new PowerUp(parent, (int)(random.next() * (SpaceInvaders.getArenaWidth() - 50) + 10));
                 previousPlayerScore = playerScore;
             }
         } else {
             // Check current score is twice the last score needed to generate a power-up
             if(playerScore > previousPlayerScore * 2) {
-                powerUp = new PowerUp(parent, (int)(Math.random() * (parent.width - 50) + 10));
+                powerUp = new PowerUp(parent, (int)(random.next() * (SpaceInvaders.getArenaWidth() - 50) + 10));
                 previousPlayerScore = playerScore;
             }
         }
     }
 
     /**
-     * Compares the players position against the power-up's to see if the player is picking it up.
+     * Compares the positions of the players near the power-up against its own to see if one is picking it up.
      *
-     * @param player Player's instance to check to see if they have picked up a a power-up.
-     * @return Returns true if the player if within bounds to pick it up.
+     * @return Returns the first player within bounds to pick it up, or null if none are.
      *
      * @author Toby Essex
      */
-    private boolean hasPlayerHitPowerUp(Player player) {
-        return  powerUp.getX() - powerUp.getWidth() / 2 >= player.getX() &&
-                powerUp.getX() + powerUp.getWidth() / 2 <= player.getX() + player.getWidth();
+    private Player playerOnPowerUp() {
+        float halfWidth = powerUp.getWidth() / 2f;
+
+        // Only players the grid finds near the power-up can be picking it up
+        CollisionManager.getInst().query(
+                powerUp.getX() - halfWidth, powerUp.getY() - halfWidth, powerUp.getX() + halfWidth, powerUp.getY() + halfWidth,
+                CollisionManager.PLAYERS, nearby
+        );
+
+        for (GameObject object : nearby) {
+            Player player = (Player) object;
+
+            if (powerUp.getX() - powerUp.getWidth() / 2 >= player.getX() &&
+                    powerUp.getX() + powerUp.getWidth() / 2 <= player.getX() + player.getWidth())
+                return player;
+        }
+
+        return null;
     }
 }
@@ -1,7 +1,10 @@
 package space_invaders.managers;
 
 import processing.core.PApplet;
-import space_invaders.game_objects.Bullet;
+import space_invaders.GameScale;
+import space_invaders.SpaceInvaders;
+import space_invaders.engine.SpatialHash;
+import space_invaders.game_objects.Alien;
 import space_invaders.game_objects.GameObject;
 import space_invaders.game_objects.Wall;
 
@@ -22,12 +25,22 @@ final public class WallManager {
     /**
      * Static instance used as this class used the singleton pattern.
      */
-    private static WallManager inst = new WallManager();
+    private static WallManager inst;
 
     /**
      * Number of walls to display in the game.
      */
-    private final int NO_OF_WALLS = 4;
+    private int wallCount = GameScale.ARCADE.getWalls();
+
+    /**
+     * Closest the walls can be spaced, they are 105 pixels wide so any closer and they would touch.
+     */
+    private final int MIN_WALL_SPACING = 110;
+
+    /**
+     * Distance of the walls from the bottom of the game.
+     */
+    private final int WALL_OFFSET = 200;
 
     /**
      * List of all the walls.
@@ -61,61 +74,66 @@ final public class WallManager {
     }
 
     /**
-     * Deletes the walls so they will be remade, next time they are shown
+     * Sets the number of walls, as many as fit across the game, then creates them. <br>
+     * Called while setting up each game, before its first tick, as the walls' blocks are added to the entity world. Walls
+     * from an earlier game are removed along with their blocks, as the new game may be a different size.
+     *
+     * @param scale Scale of the game.
      *
      * @author Toby Essex
      */
-    public void reset() {
-        walls = null;
+    public void setScale(GameScale scale) {
+        if (walls != null)
+            walls.forEach(Wall::remove);
+
+        wallCount = Math.min(scale.getWalls(), SpaceInvaders.getArenaWidth() / MIN_WALL_SPACING);
+        createWalls();
     }
 
     /**
-     * Displays each wall.
+     * Repairs every wall, reusing the existing walls if they have been created.
      *
      * @author Toby Essex
      */
-    public void showWalls() {
-        if(walls == null)
-            createWalls();
+    public void reset() {
+        if (walls != null)
+            walls.forEach(Wall::reset);
+    }
 
-        walls.forEach(Wall::show);
+    /**
+     * Adds every wall to the broad-phase grid.
+     *
+     * @param grid The grid.
+     *
+     * @author Toby Essex
+     */
+    public void addTo(SpatialHash<GameObject> grid) {
+        for (Wall wall : walls)
+            wall.addTo(grid);
     }
 
     /**
-     * Determines whether the wall has been hit by the given bullet.
+     * Has an alien clear the blocks of any wall it is over.
      *
-     * @param bullet Bullet instance to compare against each wall.
-     * @return Returns true if a wall has been hit.
+     * @param alien Alien that has marched into the walls.
      *
      * @author Toby Essex
      */
-    public boolean hasHitWall(Bullet bullet) {
-        // Loop over each wall
+    public void erode(Alien alien) {
         for (Wall wall : walls) {
-            // Loop over each section in each wall
-            for (Wall.Section section : Wall.Section.values()) {
-                // Loop over each block in each section
-                for (GameObject block : section.getBlocks(wall)) {
-                    // If true the bullet is within the X coordinates of the current wall
-                    boolean within_x = (
-                            bullet.getX() + 5 >= block.getX() - 2.5 && bullet.getX() + 5 <= block.getX() + 2.5 ||
-                            bullet.getX() >= block.getX() - 2.5 && bullet.getX() <= block.getX() + 2.5
-                    );
-
-                    // If true the bullet is within the Y coordinates of the current wall
-                    boolean within_y = bullet.getY() >= block.getY() - 2.5 && bullet.getY() <= block.getY() + 2.5;
-
-                    if(within_x && within_y) {
-                        // Damage the wall
-                        wall.damage(bullet.getX(), bullet.getY(), bullet.isBomb());
-                        return true;
-                    }
-                }
-            }
+            if (alien.getX() + alien.getWidth() / 2 >= wall.getX() - 3 && alien.getX() - alien.getWidth() / 2 <= wall.getX() + wall.getWidth())
+                alien.erode(wall);
         }
+    }
 
-        // No section was hit, return false
-        return false;
+    /**
+     * @return Returns the Y coordinate of the top of the walls.
+     *
+     * @author Toby Essex
+     */
+    public int getTop() {
+        // Blocks are centred on their coordinates, so the top row reaches a little above the walls' coordinates
+        return parent.height - WALL_OFFSET - 3;
     }
 
     /**
@@ -126,8 +144,14 @@ final public class WallManager {
     private void createWalls() {
         walls = new ArrayList<>();
 
-        for (int i = 1; i <= NO_OF_WALLS; i++) {
-            walls.add(new Wall(parent, (200 * i) - 100 - 47, parent.height - 200));
+        if (wallCount == 0)
+            return;
+
+        // Each wall is centred in an equal share of the width
+        int spacing = SpaceInvaders.getArenaWidth() / wallCount;
+
+        for (int i = 1; i <= wallCount; i++) {
+            walls.add(new Wall(parent, (spacing * i) - spacing / 2 - 47, parent.height - WALL_OFFSET));
         }
     }
 }
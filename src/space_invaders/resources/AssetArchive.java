@@ -0,0 +1,358 @@
+package space_invaders.resources;
+
+import processing.core.PConstants;
+import processing.core.PFont;
+import processing.core.PImage;
+import space_invaders.utils.Log;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Read only view over the packed asset archive created by {@link AssetPacker}. <br>
+ * The whole archive is memory-mapped once and each asset is handed out as a slice of that mapping, so no asset is copied
+ * before it reaches its decoder. <br>
+ * If the archive is missing, fails its checksum or its index points outside the file the game falls back to loading the
+ * loose files. <br>
+ * This class uses the singleton pattern. Using lazy initialisation.
+ *
+ * @author Toby Essex
+ */
+final public class AssetArchive {
+    /**
+     * Default name of the archive, looked for in the working directory (alongside the high score file).
+     */
+    public static final String FILE_NAME = "assets.pak";
+
+    /**
+     * Magic number at the start of every archive ("SIPK").
+     */
+    static final int MAGIC = 0x5349504B;
+
+    /**
+     * Archive format version, bumped whenever the layout changes.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Size of the fixed header: magic, version, entry count, data offset and the checksum of the index and data.
+     */
+    static final int HEADER_SIZE = 20;
+
+    /**
+     * Smallest possible index entry: name length, an empty name, offset and length.
+     */
+    private static final int MIN_ENTRY_SIZE = 10;
+
+    /**
+     * Used as this class is a singleton.
+     */
+    private static AssetArchive inst;
+
+    /**
+     * The memory-mapped archive, null if the archive could not be loaded.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Index of every asset in the archive. Key is the asset's name, value is its offset and length.
+     */
+    private HashMap<String, int[]> index = new HashMap<>();
+
+    /**
+     * @return Returns a instance of this class.
+     *
+     * @author Toby Essex
+     */
+    public static synchronized AssetArchive getInst() {
+        if (inst == null)
+            inst = new AssetArchive(new File(FILE_NAME));
+        return inst;
+    }
+
+    /**
+     * Private constructor so this class can't be constructed.
+     *
+     * @param file Archive file to map.
+     */
+    private AssetArchive(File file) {
+        if (!file.isFile())
+            return;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (readIndex(mapped)) {
+                buffer = mapped;
+            } else {
+                index.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            // A damaged archive must never stop the game starting, the loose files are used instead
+            Log.error("AssetArchive", "Error mapping asset archive", e);
+            index.clear();
+        }
+    }
+
+    /**
+     * @return Returns true if the archive was mapped and passed its checksum.
+     *
+     * @author Toby Essex
+     */
+    public boolean isLoaded() {
+        return buffer != null;
+    }
+
+    /**
+     * @param name Name of the asset, relative to the resources folder (e.g. "images/boss.png").
+     * @return Returns true if the archive contains the asset.
+     *
+     * @author Toby Essex
+     */
+    public boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    /**
+     * Returns a zero-copy slice of the archive for the given asset.
+     *
+     * @param name Name of the asset, relative to the resources folder (e.g. "images/boss.png").
+     * @return Returns a read only buffer positioned over the asset's bytes.
+     *
+     * @author Toby Essex
+     */
+    public ByteBuffer get(String name) {
+        int[] entry = index.get(name);
+
+        if (entry == null)
+            throw new IllegalArgumentException("Asset not found in archive: " + name);
+
+        ByteBuffer slice = buffer.asReadOnlyBuffer();
+        slice.position(entry[0]);
+        slice.limit(entry[0] + entry[1]);
+
+        return slice.slice();
+    }
+
+    /**
+     * @param name Name of the asset.
+     * @return Returns a stream that reads directly from the asset's slice of the archive.
+     *
+     * @author Toby Essex
+     */
+    public InputStream openStream(String name) {
+        return new ByteBufferInputStream(get(name));
+    }
+
+    /**
+     * Decodes an image straight from the archive.
+     *
+     * @param name Name of the image asset.
+     * @return Returns the decoded image, or null if it could not be decoded.
+     *
+     * @author Toby Essex
+     */
+    public PImage loadImage(String name) {
+        return decodeImage(name, get(name));
+    }
+
+    /**
+     * Creates a font straight from the archive.
+     *
+     * @param name Name of the font asset.
+     * @param size Font size.
+     * @return Returns the font, or null if it could not be created.
+     *
+     * @author Toby Essex
+     */
+    public PFont loadFont(String name, float size) {
+        try (InputStream input = openStream(name)) {
+            Font font = Font.createFont(Font.TRUETYPE_FONT, input);
+            return new PFont(font.deriveFont(size), true, null, true, 1);
+        } catch (IOException | FontFormatException e) {
+            Log.error("AssetArchive.loadFont", "Error creating font: " + name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes an image from a buffer holding the encoded (e.g. PNG) bytes.
+     *
+     * @param name Name of the image, only used for error messages.
+     * @param encoded Buffer holding the encoded image.
+     * @return Returns the decoded ARGB image, or null if it could not be decoded.
+     *
+     * @author Toby Essex
+     */
+    static PImage decodeImage(String name, ByteBuffer encoded) {
+        try (InputStream input = new ByteBufferInputStream(encoded)) {
+            BufferedImage decoded = ImageIO.read(input);
+
+            if (decoded == null)
+                return null;
+
+            PImage image = new PImage(decoded.getWidth(), decoded.getHeight(), PConstants.ARGB);
+            decoded.getRGB(0, 0, image.width, image.height, image.pixels, 0, image.width);
+            image.updatePixels();
+
+            return image;
+        } catch (IOException e) {
+            Log.error("AssetArchive.decodeImage", "Error decoding image: " + name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads and validates the header and index of the archive.
+     *
+     * @param mapped The mapped archive.
+     * @return Returns true if the archive is valid.
+     *
+     * @author Toby Essex
+     */
+    private boolean readIndex(ByteBuffer mapped) {
+        int size = mapped.capacity();
+
+        if (size < HEADER_SIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+            Log.info("AssetArchive", "Asset archive is not a valid archive, using loose files");
+            return false;
+        }
+
+        int count = mapped.getInt(8);
+        int dataOffset = mapped.getInt(12);
+        int checksum = mapped.getInt(16);
+
+        if (dataOffset < HEADER_SIZE || dataOffset > size || count < 0
+                || count > (dataOffset - HEADER_SIZE) / MIN_ENTRY_SIZE) {
+            Log.info("AssetArchive", "Asset archive has a corrupt header, using loose files");
+            return false;
+        }
+
+        // One checksum covers the index and every asset in the archive
+        ByteBuffer covered = mapped.duplicate();
+        covered.position(HEADER_SIZE);
+
+        CRC32 crc = new CRC32();
+        crc.update(covered);
+
+        if ((int) crc.getValue() != checksum) {
+            Log.info("AssetArchive", "Asset archive failed its checksum, using loose files");
+            return false;
+        }
+
+        // The index may not run into the data, and every entry must lie within the data
+        ByteBuffer header = mapped.duplicate();
+        header.position(HEADER_SIZE);
+        header.limit(dataOffset);
+
+        for (int i = 0; i < count; i++) {
+            if (header.remaining() < MIN_ENTRY_SIZE) {
+                Log.info("AssetArchive", "Asset archive index is truncated, using loose files");
+                return false;
+            }
+
+            int nameLength = header.getShort() & 0xFFFF;
+
+            if (header.remaining() < nameLength + 8) {
+                Log.info("AssetArchive", "Asset archive index is truncated, using loose files");
+                return false;
+            }
+
+            byte[] name = new byte[nameLength];
+            header.get(name);
+
+            int offset = header.getInt();
+            int length = header.getInt();
+
+            if (offset < dataOffset || length < 0 || (long) offset + length > size) {
+                Log.info("AssetArchive", "Asset archive index points outside the archive, using loose files");
+                return false;
+            }
+
+            index.put(new String(name, StandardCharsets.UTF_8), new int[]{offset, length});
+        }
+
+        return true;
+    }
+
+    /**
+     * Input stream backed by a byte buffer. <br>
+     * Supports mark/reset which is needed by the audio decoders.
+     *
+     * @author Toby Essex
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        /**
+         * Buffer that is being read.
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * ByteBufferInputStream constructor.
+         *
+         * @param buffer Buffer to read from.
+         */
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0)
+                return 0;
+
+            if (!buffer.hasRemaining())
+                return -1;
+
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+
+            return length;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.reset();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package space_invaders.resources;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Build step which packs every game asset into a single indexed archive. <br>
+ * Usage: {@code java space_invaders.resources.AssetPacker [resources folder] [output file]} <br>
+ * Layout (big endian): magic, version, entry count, data offset, CRC32 of everything after the header, then for every
+ * entry its name length, UTF-8 name, offset and length, followed by the raw asset bytes.
+ *
+ * @see AssetArchive
+ *
+ * @author Toby Essex
+ */
+final public class AssetPacker {
+    /**
+     * Folders and files (relative to the resources folder) that are packed into the archive.
+     */
+    private static final String[] ASSETS = {"images", "sounds", "game-font.ttf", "waves.txt"};
+
+    /**
+     * Folder only used by the README, never loaded by the game.
+     */
+    private static final String EXCLUDED = "images/examples";
+
+    /** Private constructor so this class can't be constructed. */
+    private AssetPacker() {}
+
+    /**
+     * Entry point.
+     *
+     * @param args Command line arguments. Optional resources folder and output file.
+     *
+     * @author Toby Essex
+     */
+    public static void main(String[] args) throws IOException {
+        Path resources = Paths.get(args.length > 0 ? args[0] : "resources");
+        Path output = Paths.get(args.length > 1 ? args[1] : AssetArchive.FILE_NAME);
+
+        ArrayList<String> names = new ArrayList<>();
+
+        for (String asset : ASSETS) {
+            try (Stream<Path> files = Files.walk(resources.resolve(asset))) {
+                names.addAll(files
+                        .filter(Files::isRegularFile)
+                        .map(file -> resources.relativize(file).toString().replace(File.separatorChar, '/'))
+                        .filter(name -> !name.startsWith(EXCLUDED))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        pack(resources, names, output);
+
+        System.out.println("Packed " + names.size() + " assets into " + output);
+    }
+
+    /**
+     * Writes the archive.
+     *
+     * @param resources Resources folder the names are relative to.
+     * @param names Name of each asset to pack.
+     * @param output File to write the archive to.
+     *
+     * @author Toby Essex
+     */
+    private static void pack(Path resources, ArrayList<String> names, Path output) throws IOException {
+        ArrayList<byte[]> contents = new ArrayList<>();
+        int indexSize = 0;
+
+        for (String name : names) {
+            contents.add(Files.readAllBytes(resources.resolve(name)));
+            indexSize += 2 + name.getBytes(StandardCharsets.UTF_8).length + 8;
+        }
+
+        int dataOffset = AssetArchive.HEADER_SIZE + indexSize;
+
+        // The index is written up front so the checksum can cover it as well as the assets
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream(indexSize);
+
+        try (DataOutputStream out = new DataOutputStream(indexBytes)) {
+            int offset = dataOffset;
+
+            for (int i = 0; i < names.size(); i++) {
+                byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(offset);
+                out.writeInt(contents.get(i).length);
+
+                offset += contents.get(i).length;
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(indexBytes.toByteArray());
+        contents.forEach(crc::update);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            out.writeInt(AssetArchive.MAGIC);
+            out.writeInt(AssetArchive.VERSION);
+            out.writeInt(names.size());
+            out.writeInt(dataOffset);
+            out.writeInt((int) crc.getValue());
+
+            indexBytes.writeTo(out);
+
+            for (byte[] content : contents)
+                out.write(content);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package space_invaders.resources;
+
+import processing.core.PImage;
+
+/**
+ * 1-bit collision mask of a sprite, built once from the alpha channel of its image at the size it is drawn. <br>
+ * Each row of the mask is packed into a long, so a box can be tested against a row with a single AND.
+ *
+ * @see Image#getMask()
+ *
+ * @author Toby Essex
+ */
+final public class CollisionMask {
+    /**
+     * Pixels at least this opaque are solid.
+     */
+    private static final int ALPHA_THRESHOLD = 128;
+
+    /**
+     * Largest width a mask can have, one bit per pixel in a long.
+     */
+    private static final int MAX_WIDTH = 64;
+
+    /**
+     * Mask's width and height.
+     */
+    private final int width, height;
+
+    /**
+     * One long per row, with bit n set if the n-th pixel along is solid.
+     */
+    private final long[] rows;
+
+    /**
+     * Bounds of the solid pixels, so boxes that miss them can be rejected straight away.
+     */
+    private int left, top, right = -1, bottom = -1;
+
+    /**
+     * CollisionMask constructor. The image is sampled (nearest neighbour) at the given size.
+     *
+     * @param image Sprite's image.
+     * @param width Width the sprite is drawn at, up to 64.
+     * @param height Height the sprite is drawn at.
+     */
+    CollisionMask(PImage image, int width, int height) {
+        if (width > MAX_WIDTH)
+            throw new IllegalArgumentException("Collision masks can't be wider than " + MAX_WIDTH + " pixels");
+
+        this.width = width;
+        this.height = height;
+        this.rows = new long[height];
+
+        image.loadPixels();
+
+        left = width;
+        top = height;
+
+        for (int y = 0; y < height; y++) {
+            int sourceRow = (y * image.height / height) * image.width;
+
+            for (int x = 0; x < width; x++) {
+                if (image.pixels[sourceRow + x * image.width / width] >>> 24 >= ALPHA_THRESHOLD)
+                    rows[y] |= 1L << x;
+            }
+
+            if (rows[y] != 0) {
+                left = Math.min(left, Long.numberOfTrailingZeros(rows[y]));
+                right = Math.max(right, 63 - Long.numberOfLeadingZeros(rows[y]));
+                top = Math.min(top, y);
+                bottom = y;
+            }
+        }
+    }
+
+    /**
+     * Tests a box against the mask.
+     *
+     * @param boxLeft Left edge of the box, in pixels from the mask's left edge.
+     * @param boxTop Top edge of the box, in pixels from the mask's top edge.
+     * @param boxRight Right edge of the box (inclusive).
+     * @param boxBottom Bottom edge of the box (inclusive).
+     * @return Returns true if the box covers any solid pixel.
+     *
+     * @author Toby Essex
+     */
+    public boolean overlaps(int boxLeft, int boxTop, int boxRight, int boxBottom) {
+        // Reject boxes that miss the solid pixels' bounds
+        boxLeft = Math.max(boxLeft, left);
+        boxTop = Math.max(boxTop, top);
+        boxRight = Math.min(boxRight, right);
+        boxBottom = Math.min(boxBottom, bottom);
+
+        if (boxLeft > boxRight || boxTop > boxBottom)
+            return false;
+
+        long columns = (-1L >>> (63 - boxRight)) & (-1L << boxLeft);
+
+        for (int y = boxTop; y <= boxBottom; y++) {
+            if ((rows[y] & columns) != 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param y Row of the mask, from 0 to its height.
+     * @return Returns the row, with bit n set if the n-th pixel along is solid.
+     *
+     * @author Toby Essex
+     */
+    public long getRow(int y) {
+        return rows[y];
+    }
+
+    /**
+     * @return Returns the mask's width.
+     *
+     * @author Toby Essex
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Returns the mask's height.
+     *
+     * @author Toby Essex
+     */
+    public int getHeight() {
+        return height;
+    }
+}
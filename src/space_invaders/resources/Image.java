@@ -11,38 +11,75 @@ import java.util.Arrays;
  * @author Toby Essex
  */
 public enum Image {
-    BOSS ("boss.png"),
+    BOSS ("boss.png", 60, 60, true),
 
-    LIFE ("life.png"),
+    LIFE ("life.png", 30, 30),
 
-    NO_SOUND ("sounds/no-sound.png"),
-    SOUND ("sounds/sound.png"),
+    NO_SOUND ("sounds/no-sound.png", 70, 70),
+    SOUND ("sounds/sound.png", 70, 70),
 
-    ALIEN_TIER_1 ("aliens/normal/tier-1.png"),
-    ALIEN_TIER_2 ("aliens/normal/tier-2.png"),
-    ALIEN_TIER_3 ("aliens/normal/tier-3.png"),
+    ALIEN_TIER_1 ("aliens/normal/tier-1.png", 40, 40, true),
+    ALIEN_TIER_2 ("aliens/normal/tier-2.png", 40, 40, true),
+    ALIEN_TIER_3 ("aliens/normal/tier-3.png", 40, 40, true),
 
-    ALIEN_TIER_1_ALT ("aliens/alts/tier-1-alt.png"),
-    ALIEN_TIER_2_ALT ("aliens/alts/tier-2-alt.png"),
-    ALIEN_TIER_3_ALT ("aliens/alts/tier-3-alt.png");
+    ALIEN_TIER_1_ALT ("aliens/alts/tier-1-alt.png", 40, 40, true),
+    ALIEN_TIER_2_ALT ("aliens/alts/tier-2-alt.png", 40, 40, true),
+    ALIEN_TIER_3_ALT ("aliens/alts/tier-3-alt.png", 40, 40, true);
 
     /**
      * Path of the image.
      */
     private String path;
 
+    /**
+     * Width the image is drawn at, the image is scaled to this size once when loaded.
+     */
+    private int width;
+
+    /**
+     * Height the image is drawn at, the image is scaled to this size once when loaded.
+     */
+    private int height;
+
     /**
      * Actual image after it has been loaded.
      */
     private PImage image;
 
+    /**
+     * If true bullets can hit the image, so it needs a collision mask.
+     */
+    private boolean hasMask;
+
+    /**
+     * Collision mask built from the image's alpha, null if the image has no mask or has not been loaded.
+     */
+    private CollisionMask mask;
+
+    /**
+     * Image constructor.
+     *
+     * @param path Path of the image.
+     * @param width Width the image is drawn at.
+     * @param height Height the image is drawn at.
+     */
+    Image(String path, int width, int height) {
+        this(path, width, height, false);
+    }
+
     /**
      * Image constructor.
      *
      * @param path Path of the image.
+     * @param width Width the image is drawn at.
+     * @param height Height the image is drawn at.
+     * @param hasMask If true a collision mask is built when the image is loaded.
      */
-    Image(String path) {
+    Image(String path, int width, int height, boolean hasMask) {
         this.path = path;
+        this.width = width;
+        this.height = height;
+        this.hasMask = hasMask;
     }
 
     /**
@@ -55,13 +92,41 @@ public enum Image {
     }
 
     /**
-     * Loads all the images.
+     * @return Returns the image's collision mask, or null if it does not have one.
+     *
+     * @author Toby Essex
+     */
+    public CollisionMask getMask() {
+        return mask;
+    }
+
+    /**
+     * Loads all the images. <br>
+     * Images are loaded already scaled from the sprite cache when possible, otherwise they are decoded (from the asset
+     * archive if there is one, else from the loose files) and the cache is rewritten for the next start.
      *
      * @param parent PApplet class so we can access the 'loadImage' method.
      *
+     * @see SpriteCache
+     * @see AssetArchive
+     *
      * @author Toby Essex
      */
     public static void loadImages(PApplet parent) {
-        Arrays.stream(Image.values()).forEach(image -> image.image = parent.loadImage("images/" + image.path));
+        SpriteCache cache = new SpriteCache();
+
+        Arrays.stream(Image.values()).forEach(image -> {
+            image.image = cache.load(parent, "images/" + image.path, image.width, image.height);
+
+            // Fall back to processing's loader if the image could not be read
+            if (image.image == null)
+                image.image = parent.loadImage("images/" + image.path);
+
+            if (image.hasMask && image.image != null)
+                image.mask = new CollisionMask(image.image, image.width, image.height);
+        });
+
+        cache.save();
+        cache.printTimings();
     }
 }
@@ -1,8 +1,12 @@
 package space_invaders.resources;
 
+import space_invaders.utils.Log;
+
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
 
 /**
  * Enum used to play sound effects.
@@ -66,17 +70,34 @@ public enum Sound {
     public void play() {
         if(isMute) return;
 
-        try (AudioInputStream input = AudioSystem.getAudioInputStream(getClass().getResource("/sounds/" + path))) {
+        try (AudioInputStream input = open()) {
             Clip clip = AudioSystem.getClip();
 
             clip.open(input);
             clip.start();
         } catch (Exception e) {
-            System.out.println("Error playing sound file: " + path + " - with message: " + e.getMessage());
-            e.printStackTrace();
+            Log.error("Sound.play", "Error playing sound file: " + path, e);
         }
     }
 
+    /**
+     * Opens the sound file, straight from the asset archive if there is one.
+     *
+     * @return Returns the opened audio stream.
+     *
+     * @see AssetArchive
+     *
+     * @author Toby Essex
+     */
+    private AudioInputStream open() throws IOException, UnsupportedAudioFileException {
+        AssetArchive archive = AssetArchive.getInst();
+
+        if (archive.contains("sounds/" + path))
+            return AudioSystem.getAudioInputStream(archive.openStream("sounds/" + path));
+
+        return AudioSystem.getAudioInputStream(getClass().getResource("/sounds/" + path));
+    }
+
     public static boolean isMute() {
         return isMute;
     }
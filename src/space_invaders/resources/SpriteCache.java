@@ -0,0 +1,414 @@
+package space_invaders.resources;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PImage;
+import space_invaders.utils.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of decoded, already scaled sprites. <br>
+ * Every sprite is packed into one file, which is memory-mapped once per start. Each sprite is stored as raw ARGB pixels
+ * in the machine's byte order next to its size and a checksum of its source PNG, so a cache hit is a single copy into
+ * the sprite's pixels, and any change to the source image (or its size) invalidates the entry. <br>
+ * The file is kept in the user's cache folder, or the folder given by the "space_invaders.cacheDir" property. It is
+ * rewritten after any sprite had to be decoded, and only holds the sprites loaded by that start. <br>
+ * Layout: magic, version, byte order, entry count, then for every entry its name length, UTF-8 name, key, width, height
+ * and pixel offset, followed by the pixels. The header and index are big endian.
+ *
+ * @see Image#loadImages(PApplet)
+ *
+ * @author Toby Essex
+ */
+final class SpriteCache {
+    /**
+     * Name of the cache file.
+     */
+    static final String FILE_NAME = "sprites.cache";
+
+    /**
+     * Magic number at the start of the cache ("SISC").
+     */
+    private static final int MAGIC = 0x53495343;
+
+    /**
+     * Cache format version, bumped whenever the layout changes.
+     */
+    private static final int VERSION = 3;
+
+    /**
+     * Size of the fixed header: magic, version, byte order and entry count.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Size of an entry in the index, not counting its name: name length, key, width, height and pixel offset.
+     */
+    private static final int ENTRY_SIZE = 2 + 8 + 12;
+
+    /**
+     * The cache file.
+     */
+    private final File file;
+
+    /**
+     * Pixels of the mapped cache in the machine's byte order, null if there is no usable cache.
+     */
+    private IntBuffer cached;
+
+    /**
+     * Index of the mapped cache. Key is the sprite's name, value is its entry.
+     */
+    private final HashMap<String, Entry> index = new HashMap<>();
+
+    /**
+     * Every sprite loaded, written to the cache if any of them had to be decoded.
+     */
+    private final ArrayList<Entry> loaded = new ArrayList<>();
+
+    /**
+     * Number of sprites loaded from the cache.
+     */
+    private int hits;
+
+    /**
+     * Number of sprites that had to be decoded.
+     */
+    private int misses;
+
+    /**
+     * Time spent loading sprites from the cache, in nanoseconds.
+     */
+    private long hitTime;
+
+    /**
+     * Time spent decoding, scaling and caching sprites, in nanoseconds.
+     */
+    private long missTime;
+
+    /**
+     * SpriteCache constructor. Maps the cache file, if there is a valid one.
+     */
+    SpriteCache() {
+        file = new File(folder(), FILE_NAME);
+
+        if (!file.isFile())
+            return;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (readIndex(mapped))
+                cached = mapped.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+            else
+                index.clear();
+        } catch (IOException | RuntimeException e) {
+            // A damaged cache is only a slower start, every sprite is decoded and the cache is rewritten
+            Log.error("SpriteCache", "Error mapping sprite cache: " + file, e);
+            index.clear();
+        }
+    }
+
+    /**
+     * Loads a sprite, from the cache if it is up to date, otherwise by decoding and scaling the source image.
+     *
+     * @param parent PApplet class so we can access the 'loadBytes' method when there is no asset archive.
+     * @param name Name of the image, relative to the resources folder (e.g. "images/boss.png").
+     * @param width Width the sprite is drawn at.
+     * @param height Height the sprite is drawn at.
+     * @return Returns the sprite, or null if it could not be loaded.
+     *
+     * @author Toby Essex
+     */
+    PImage load(PApplet parent, String name, int width, int height) {
+        long start = System.nanoTime();
+
+        ByteBuffer source = source(parent, name);
+
+        if (source == null)
+            return null;
+
+        long key = key(source);
+        Entry entry = index.get(name);
+
+        if (entry != null && entry.width == width && entry.height == height && entry.key == key) {
+            PImage image = new PImage(width, height, PConstants.ARGB);
+
+            // Offsets were checked against the file when the index was read
+            cached.get(entry.offset / 4, image.pixels);
+            image.updatePixels();
+
+            loaded.add(new Entry(name, key, image));
+
+            hits++;
+            hitTime += System.nanoTime() - start;
+            return image;
+        }
+
+        PImage image = AssetArchive.decodeImage(name, source);
+
+        if (image != null) {
+            image.resize(width, height);
+            image.loadPixels();
+            loaded.add(new Entry(name, key, image));
+        }
+
+        misses++;
+        missTime += System.nanoTime() - start;
+
+        return image;
+    }
+
+    /**
+     * Writes every sprite loaded to the cache, if any of them had to be decoded. <br>
+     * The cache is written to a temporary file first so a half written cache is never read.
+     *
+     * @author Toby Essex
+     */
+    void save() {
+        if (misses == 0 || loaded.isEmpty())
+            return;
+
+        long start = System.nanoTime();
+
+        int indexSize = 0;
+        long pixelCount = 0;
+
+        for (Entry entry : loaded) {
+            indexSize += ENTRY_SIZE + entry.name.length;
+            pixelCount += entry.image.pixels.length;
+        }
+
+        // Pixels start on a whole int so they can be read as an int buffer
+        int pixelsOffset = (HEADER_SIZE + indexSize + 3) & ~3;
+
+        if (pixelsOffset + pixelCount * 4 > Integer.MAX_VALUE)
+            return;
+
+        ByteBuffer buffer = ByteBuffer.allocate(pixelsOffset + (int) pixelCount * 4);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 0 : 1).putInt(loaded.size());
+
+        int offset = pixelsOffset;
+
+        for (Entry entry : loaded) {
+            buffer.putShort((short) entry.name.length).put(entry.name).putLong(entry.key);
+            buffer.putInt(entry.image.width).putInt(entry.image.height).putInt(offset);
+
+            offset += entry.image.pixels.length * 4;
+        }
+
+        buffer.position(pixelsOffset);
+        IntBuffer pixels = buffer.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+
+        for (Entry entry : loaded)
+            pixels.put(entry.image.pixels);
+
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+
+            File temp = new File(file.getPath() + ".tmp");
+            Files.write(temp.toPath(), buffer.array());
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The cache is only an optimisation, the sprites are still usable
+            Log.error("SpriteCache.save", "Error writing sprite cache: " + file, e);
+        }
+
+        missTime += System.nanoTime() - start;
+    }
+
+    /**
+     * Prints how long cache hits and misses took.
+     *
+     * @author Toby Essex
+     */
+    void printTimings() {
+        Log.info("SpriteCache", String.format(
+                "Sprite cache: %d hits in %.2fms, %d misses in %.2fms",
+                hits, hitTime / 1e6, misses, missTime / 1e6
+        ));
+    }
+
+    /**
+     * @return Returns the folder the cache is kept in: the "space_invaders.cacheDir" property if it is set, otherwise
+     * the user's cache folder.
+     *
+     * @author Toby Essex
+     */
+    private static File folder() {
+        String folder = System.getProperty("space_invaders.cacheDir");
+
+        if (folder != null)
+            return new File(folder);
+
+        // Windows keeps caches in the local app data folder, other systems follow the XDG base directories
+        String windows = System.getenv("LOCALAPPDATA");
+
+        if (windows != null)
+            return new File(windows, "space-invaders");
+
+        String xdg = System.getenv("XDG_CACHE_HOME");
+
+        return xdg != null ? new File(xdg, "space-invaders") : new File(System.getProperty("user.home"), ".cache/space-invaders");
+    }
+
+    /**
+     * Gets the source image's encoded bytes, straight from the asset archive if there is one.
+     *
+     * @param parent PApplet class so we can access the 'loadBytes' method.
+     * @param name Name of the image.
+     * @return Returns the encoded image, or null if it could not be found.
+     *
+     * @author Toby Essex
+     */
+    private ByteBuffer source(PApplet parent, String name) {
+        if (AssetArchive.getInst().contains(name))
+            return AssetArchive.getInst().get(name);
+
+        byte[] bytes = parent.loadBytes(name);
+
+        return bytes == null ? null : ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * The key is a CRC32 rather than a cryptographic hash, as it only has to notice an image being changed and the first
+     * digest of a run costs more than loading every sprite from the cache.
+     *
+     * @param source Encoded source image.
+     * @return Returns the cache key, the source image's CRC32 and length.
+     *
+     * @author Toby Essex
+     */
+    private long key(ByteBuffer source) {
+        CRC32 crc = new CRC32();
+        crc.update(source.duplicate());
+
+        return crc.getValue() << 32 | source.remaining();
+    }
+
+    /**
+     * Reads and validates the header and index of the cache.
+     *
+     * @param mapped The mapped cache.
+     * @return Returns true if the cache is valid and was written on a machine with the same byte order.
+     *
+     * @author Toby Essex
+     */
+    private boolean readIndex(ByteBuffer mapped) {
+        int size = mapped.capacity();
+
+        if (size < HEADER_SIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                || mapped.getInt(8) != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 0 : 1))
+            return false;
+
+        int count = mapped.getInt(12);
+        ByteBuffer header = mapped.duplicate();
+        header.position(HEADER_SIZE);
+
+        for (int i = 0; i < count; i++) {
+            if (header.remaining() < ENTRY_SIZE)
+                return false;
+
+            byte[] name = new byte[header.getShort() & 0xFFFF];
+
+            if (header.remaining() < name.length + ENTRY_SIZE - 2)
+                return false;
+
+            header.get(name);
+
+            long key = header.getLong();
+            int width = header.getInt();
+            int height = header.getInt();
+            int offset = header.getInt();
+
+            // Every sprite's pixels must lie within the cache, starting on a whole int
+            if (width < 0 || height < 0 || offset < header.position() || offset % 4 != 0
+                    || offset + (long) width * height * 4 > size)
+                return false;
+
+            index.put(new String(name, StandardCharsets.UTF_8), new Entry(key, width, height, offset));
+        }
+
+        return true;
+    }
+
+    /**
+     * A sprite in the cache.
+     *
+     * @author Toby Essex
+     */
+    private static class Entry {
+        /**
+         * Sprite's UTF-8 name, only set for sprites being written.
+         */
+        final byte[] name;
+
+        /**
+         * Checksum and length of the source image.
+         */
+        final long key;
+
+        /**
+         * Size of the sprite.
+         */
+        final int width, height;
+
+        /**
+         * Offset of the sprite's pixels in the cache, in bytes. Only set for sprites read from the cache.
+         */
+        final int offset;
+
+        /**
+         * Sprite's pixels, only set for sprites being written.
+         */
+        final PImage image;
+
+        /**
+         * Entry constructor, for a sprite read from the cache.
+         *
+         * @param key Checksum and length of the source image.
+         * @param width Width of the sprite.
+         * @param height Height of the sprite.
+         * @param offset Offset of the sprite's pixels in the cache.
+         */
+        Entry(long key, int width, int height, int offset) {
+            this.name = null;
+            this.key = key;
+            this.width = width;
+            this.height = height;
+            this.offset = offset;
+            this.image = null;
+        }
+
+        /**
+         * Entry constructor, for a sprite that was loaded and may be written to the cache.
+         *
+         * @param name Sprite's name.
+         * @param key Checksum and length of the source image.
+         * @param image The sprite.
+         */
+        Entry(String name, long key, PImage image) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.key = key;
+            this.width = image.width;
+            this.height = image.height;
+            this.offset = -1;
+            this.image = image;
+        }
+    }
+}
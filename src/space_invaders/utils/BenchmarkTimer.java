@@ -0,0 +1,106 @@
+package space_invaders.utils;
+
+/**
+ * Times an operation for the benchmarks in the way JMH does: a few warm up iterations that are thrown away, then several
+ * measured iterations of many calls each. The spread between the measured iterations gives the error of the result. <br>
+ * Each benchmark runs in one JVM, so run it more than once to see how much results vary between JVMs.
+ *
+ * @author Toby Essex
+ */
+final class BenchmarkTimer {
+    /**
+     * Time of one call in each measured iteration, in milliseconds.
+     */
+    private final double[] times;
+
+    /**
+     * Mean and standard deviation of the times.
+     */
+    private final double mean, error;
+
+    /**
+     * Runs and times an operation.
+     *
+     * @param warmups Number of iterations run before timing, to let the JIT compile the operation.
+     * @param iterations Number of iterations timed.
+     * @param calls Number of calls in each iteration.
+     * @param operation Operation to time.
+     */
+    BenchmarkTimer(int warmups, int iterations, int calls, Runnable operation) {
+        times = new double[iterations];
+
+        for (int i = 0; i < warmups; i++) {
+            for (int call = 0; call < calls; call++)
+                operation.run();
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+
+            for (int call = 0; call < calls; call++)
+                operation.run();
+
+            times[i] = (System.nanoTime() - start) / 1e6 / calls;
+        }
+
+        double sum = 0;
+
+        for (double time : times)
+            sum += time;
+
+        mean = sum / iterations;
+
+        double squares = 0;
+
+        for (double time : times)
+            squares += (time - mean) * (time - mean);
+
+        error = iterations > 1 ? Math.sqrt(squares / (iterations - 1)) : 0;
+    }
+
+    /**
+     * @return Returns the mean time of one call in milliseconds.
+     *
+     * @author Toby Essex
+     */
+    double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return Returns the standard deviation of the time of one call between iterations, in milliseconds.
+     *
+     * @author Toby Essex
+     */
+    double getError() {
+        return error;
+    }
+
+    /**
+     * @param baseline Timer to compare against.
+     * @return Returns how many times faster this is than the baseline, and its error.
+     *
+     * @author Toby Essex
+     */
+    String speedUp(BenchmarkTimer baseline) {
+        if (baseline == this)
+            return " 1.00x";
+
+        double ratio = baseline.mean / mean;
+
+        // Relative errors of a quotient add in quadrature
+        double relative = Math.sqrt(Math.pow(baseline.error / baseline.mean, 2) + Math.pow(error / mean, 2));
+
+        return String.format("%5.2fx +/- %.2f", ratio, ratio * relative);
+    }
+
+    /**
+     * @return Returns the mean and standard deviation, e.g. "3.812 +/- 0.041 ms (10 iterations)".
+     *
+     * @author Toby Essex
+     */
+    @Override
+    public String toString() {
+        return String.format("%8.3f +/- %.3f ms (%d iterations)", mean, error, times.length);
+    }
+}
@@ -0,0 +1,107 @@
+package space_invaders.utils;
+
+import processing.core.PApplet;
+import space_invaders.GameScale;
+import space_invaders.game_objects.Bullet;
+import space_invaders.game_objects.GameObject;
+import space_invaders.game_objects.Player;
+import space_invaders.managers.AlienManager;
+import space_invaders.managers.CollisionManager;
+import space_invaders.managers.EntityManager;
+import space_invaders.managers.WallManager;
+import space_invaders.resources.Sound;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how finding bullet hits scales with the number of cores. <br>
+ * A formation and walls are created without a window, then a fixed set of bullets is tested against them on pools of
+ * 1 up to every available core. The hits found must be the same on every pool. <br>
+ * Each pool is warmed up, then timed over several iterations, and the time per tick is given with its standard
+ * deviation between iterations. <br>
+ * Usage: {@code java space_invaders.utils.CollisionBenchmark [bullets] [ticks] [iterations]}
+ *
+ * @author Toby Essex
+ */
+final public class CollisionBenchmark {
+    /** Private constructor so this class can't be constructed. */
+    private CollisionBenchmark() {}
+
+    /**
+     * Number of iterations run before timing.
+     */
+    private static final int WARMUPS = 5;
+
+    /**
+     * Runs the benchmark and prints the time per tick for each number of cores.
+     *
+     * @param args Number of bullets, number of ticks in each iteration and number of iterations to time, all optional.
+     *
+     * @author Toby Essex
+     */
+    public static void main(String[] args) {
+        int bulletCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Sound.mute();
+
+        PApplet parent = new PApplet();
+        parent.width = 800;
+        parent.height = 800;
+
+        WallManager.getInst().setParent(parent);
+        AlienManager.getInst().setParent(parent);
+        CollisionManager.getInst().setParent(parent);
+        WallManager.getInst().setScale(GameScale.ARCADE);
+
+        Player player = new Player(parent, parent.width / 2);
+        AlienManager.getInst().updateAliens(player);
+        CollisionManager.getInst().rebuild(player);
+
+        // Bullets are spread over the formation and walls, where most of the hits are
+        Random random = new Random(1);
+        ArrayList<Bullet> bullets = new ArrayList<>();
+
+        for (int i = 0; i < bulletCount; i++) {
+            Bullet bullet = new Bullet(parent, random.nextInt(parent.width - 70), 80 + random.nextInt(parent.height - 200), Bullet.BulletType.BULLET);
+            bullets.add(bullet);
+        }
+
+        // One move each, so every bullet has a path to sweep
+        EntityManager.getInst().update();
+
+        GameObject[] expected = null;
+        BenchmarkTimer serialTime = null;
+
+        System.out.printf("%d bullets, %d ticks per iteration%n", bulletCount, ticks);
+
+        for (int cores = 1; cores <= Runtime.getRuntime().availableProcessors(); cores++) {
+            ForkJoinPool pool = new ForkJoinPool(cores);
+
+            BenchmarkTimer time = new BenchmarkTimer(WARMUPS, iterations, ticks,
+                    () -> pool.submit(() -> CollisionManager.getInst().findHits(bullets)).join());
+
+            pool.shutdown();
+
+            GameObject[] hits = new GameObject[bulletCount];
+
+            for (int i = 0; i < bulletCount; i++)
+                hits[i] = CollisionManager.getInst().confirmHit(i, bullets.get(i));
+
+            if (expected == null) {
+                expected = hits;
+                serialTime = time;
+            } else {
+                for (int i = 0; i < bulletCount; i++) {
+                    if (hits[i] != expected[i])
+                        throw new IllegalStateException("Bullet " + i + " hit something else on " + cores + " cores");
+                }
+            }
+
+            System.out.printf("%2d cores: %s per tick, %s%n", cores, time, time.speedUp(serialTime));
+        }
+    }
+}
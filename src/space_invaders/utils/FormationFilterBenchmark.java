@@ -0,0 +1,82 @@
+package space_invaders.utils;
+
+import space_invaders.engine.FormationBounds;
+import space_invaders.engine.FormationFilter;
+import space_invaders.engine.ScalarFormationFilter;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the scalar and Vector API formation filters on large numbers of bullets. <br>
+ * The formation is laid out like the game's at the start of a wave. Both filters must find the same columns and rows
+ * for every bullet. Without the Vector API module both runs use the scalar filter. <br>
+ * Each filter is warmed up, then timed over several iterations, and the time per run is given with its standard
+ * deviation between iterations. <br>
+ * Usage: {@code java --add-modules jdk.incubator.vector space_invaders.utils.FormationFilterBenchmark [bullets] [runs]
+ * [iterations]}
+ *
+ * @author Toby Essex
+ */
+final public class FormationFilterBenchmark {
+    /** Private constructor so this class can't be constructed. */
+    private FormationFilterBenchmark() {}
+
+    /**
+     * Number of iterations run before timing.
+     */
+    private static final int WARMUPS = 5;
+
+    /**
+     * Runs the benchmark and prints the time per run of each filter.
+     *
+     * @param args Number of bullets, number of runs in each iteration and number of iterations to time, all optional.
+     *
+     * @author Toby Essex
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        FormationBounds bounds = new FormationBounds(10, 5);
+
+        for (int row = 0; row < 5; row++) {
+            for (int column = 0; column < 10; column++)
+                bounds.include(row, column, 50 + column * 40 - 15, 100 + row * 40, 50 + column * 40 + 15, 100 + row * 40 + 25);
+        }
+
+        // Bullets are spread over the whole screen, each moving up by one tick's step
+        Random random = new Random(1);
+        float[] left = new float[count], top = new float[count], right = new float[count], bottom = new float[count];
+
+        for (int i = 0; i < count; i++) {
+            left[i] = random.nextInt(800);
+            top[i] = random.nextInt(800);
+            right[i] = left[i] + 5;
+            bottom[i] = top[i] + 11;
+        }
+
+        FormationFilter[] filters = {new ScalarFormationFilter(), FormationFilter.create()};
+        int[][] columnMasks = new int[filters.length][count], rowMasks = new int[filters.length][count];
+        BenchmarkTimer scalarTime = null;
+
+        System.out.printf("%d bullets, %d runs per iteration%n", count, runs);
+
+        for (int f = 0; f < filters.length; f++) {
+            FormationFilter filter = filters[f];
+            int[] columns = columnMasks[f], rows = rowMasks[f];
+
+            BenchmarkTimer time = new BenchmarkTimer(WARMUPS, iterations, runs,
+                    () -> filter.overlaps(left, top, right, bottom, 0, count, bounds, columns, rows));
+
+            if (f == 0)
+                scalarTime = time;
+
+            if (!Arrays.equals(columnMasks[f], columnMasks[0]) || !Arrays.equals(rowMasks[f], rowMasks[0]))
+                throw new IllegalStateException(filter.getClass().getSimpleName() + " found different columns or rows");
+
+            System.out.printf("%-24s %s per run, %s%n", filter.getClass().getSimpleName(), time, time.speedUp(scalarTime));
+        }
+    }
+}
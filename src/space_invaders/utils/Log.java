@@ -0,0 +1,280 @@
+package space_invaders.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asynchronous logger that is safe to call from the game loop. <br>
+ * Messages are copied into a pre-allocated ring buffer and written to the console by a background thread, so the
+ * calling thread never waits on console I/O. Each call site is rate limited and repeats of the same message are
+ * dropped, with the number of suppressed lines reported the next time that site logs. <br>
+ * If the ring buffer is full the message is dropped and counted.
+ *
+ * @author Toby Essex
+ */
+final public class Log {
+    /**
+     * Number of messages the ring buffer can hold before messages are dropped.
+     */
+    private static final int CAPACITY = 256;
+
+    /**
+     * Maximum number of messages a call site can log within one window.
+     */
+    private static final int MAX_PER_WINDOW = 5;
+
+    /**
+     * Length of the rate limiting window in nanoseconds (1 second).
+     */
+    private static final long WINDOW = 1_000_000_000L;
+
+    /**
+     * Pre-allocated slots of the ring buffer.
+     */
+    private static final Entry[] entries = new Entry[CAPACITY];
+
+    /**
+     * Rate limiting state of each call site.
+     */
+    private static final ConcurrentHashMap<String, Site> sites = new ConcurrentHashMap<>();
+
+    /**
+     * Index of the next slot to write to.
+     */
+    private static long head = 0;
+
+    /**
+     * Index of the next slot to read from.
+     */
+    private static long tail = 0;
+
+    /**
+     * Number of messages dropped because the ring buffer was full.
+     */
+    private static long dropped = 0;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++)
+            entries[i] = new Entry();
+
+        Thread drainer = new Thread(Log::drain, "log-drain");
+        drainer.setDaemon(true);
+        drainer.start();
+
+        // Report what was suppressed over the whole run
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::printSummary, "log-summary"));
+    }
+
+    /** Private constructor so this class can't be constructed. */
+    private Log() {}
+
+    /**
+     * Logs a message.
+     *
+     * @param site Name of the call site, used for rate limiting (e.g. "Wall.damage").
+     * @param message Message to log.
+     *
+     * @author Toby Essex
+     */
+    public static void info(String site, String message) {
+        log(site, message, null);
+    }
+
+    /**
+     * Logs an error. The stack trace is only printed the first time the call site logs it.
+     *
+     * @param site Name of the call site, used for rate limiting (e.g. "Sound.play").
+     * @param message Message to log.
+     * @param error Exception that caused the error.
+     *
+     * @author Toby Essex
+     */
+    public static void error(String site, String message, Throwable error) {
+        log(site, message, error);
+    }
+
+    /**
+     * @return Returns the total number of messages suppressed by rate limiting or dropped because the buffer was full.
+     *
+     * @author Toby Essex
+     */
+    public static long getSuppressedCount() {
+        long suppressed = 0;
+
+        for (Site site : sites.values()) {
+            synchronized (site) {
+                suppressed += site.totalSuppressed;
+            }
+        }
+
+        synchronized (entries) {
+            return suppressed + dropped;
+        }
+    }
+
+    /**
+     * Rate limits the message then adds it to the ring buffer.
+     *
+     * @param siteName Name of the call site.
+     * @param message Message to log.
+     * @param error Exception that caused the message, can be null.
+     *
+     * @author Toby Essex
+     */
+    private static void log(String siteName, String message, Throwable error) {
+        Site site = sites.computeIfAbsent(siteName, name -> new Site());
+        int suppressed;
+        boolean withTrace;
+
+        synchronized (site) {
+            long now = System.nanoTime();
+
+            if (now - site.windowStart >= WINDOW) {
+                site.windowStart = now;
+                site.inWindow = 0;
+            }
+
+            // Drop repeats of the last message and anything over the limit for this window
+            if (site.inWindow >= MAX_PER_WINDOW || (message.equals(site.lastMessage) && site.inWindow > 0)) {
+                site.suppressed++;
+                site.totalSuppressed++;
+                return;
+            }
+
+            site.inWindow++;
+            site.lastMessage = message;
+
+            suppressed = site.suppressed;
+            site.suppressed = 0;
+
+            withTrace = error != null && !site.hasPrintedTrace;
+            site.hasPrintedTrace |= withTrace;
+        }
+
+        synchronized (entries) {
+            if (head - tail == CAPACITY) {
+                dropped++;
+                return;
+            }
+
+            Entry entry = entries[(int) (head % CAPACITY)];
+            entry.site = siteName;
+            entry.message = message;
+            entry.error = error;
+            entry.withTrace = withTrace;
+            entry.suppressed = suppressed;
+
+            head++;
+            entries.notify();
+        }
+    }
+
+    /**
+     * Background loop which writes messages from the ring buffer to the console.
+     *
+     * @author Toby Essex
+     */
+    private static void drain() {
+        Entry entry = new Entry();
+
+        while (true) {
+            synchronized (entries) {
+                while (head == tail) {
+                    try {
+                        entries.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                // Copy the slot out so the producer can reuse it while we print
+                entries[(int) (tail % CAPACITY)].moveTo(entry);
+                tail++;
+            }
+
+            print(entry);
+        }
+    }
+
+    /**
+     * Writes a single message to the console.
+     *
+     * @param entry The message.
+     *
+     * @author Toby Essex
+     */
+    private static void print(Entry entry) {
+        StringBuilder line = new StringBuilder(entry.message);
+
+        if (entry.error != null)
+            line.append(" - with message: ").append(entry.error.getMessage());
+
+        if (entry.suppressed > 0)
+            line.append(" (").append(entry.suppressed).append(" similar lines from ").append(entry.site).append(" suppressed)");
+
+        System.out.println(line);
+
+        if (entry.withTrace)
+            entry.error.printStackTrace();
+    }
+
+    /**
+     * Prints how many lines each call site had suppressed.
+     *
+     * @author Toby Essex
+     */
+    private static void printSummary() {
+        // Flush anything the drain thread has not got to yet
+        synchronized (entries) {
+            for (; tail < head; tail++)
+                print(entries[(int) (tail % CAPACITY)]);
+        }
+
+        sites.forEach((name, site) -> {
+            if (site.totalSuppressed > 0)
+                System.out.println("Log: " + site.totalSuppressed + " lines suppressed from " + name);
+        });
+
+        if (dropped > 0)
+            System.out.println("Log: " + dropped + " lines dropped as the buffer was full");
+    }
+
+    /**
+     * Slot in the ring buffer.
+     */
+    private static class Entry {
+        String site;
+        String message;
+        Throwable error;
+        boolean withTrace;
+        int suppressed;
+
+        /**
+         * Moves this entry into another, clearing this one so it does not keep the message alive.
+         *
+         * @param other Entry to move to.
+         */
+        void moveTo(Entry other) {
+            other.site = site;
+            other.message = message;
+            other.error = error;
+            other.withTrace = withTrace;
+            other.suppressed = suppressed;
+
+            site = null;
+            message = null;
+            error = null;
+        }
+    }
+
+    /**
+     * Rate limiting state of a call site.
+     */
+    private static class Site {
+        long windowStart = System.nanoTime() - WINDOW;
+        int inWindow;
+        int suppressed;
+        long totalSuppressed;
+        String lastMessage;
+        boolean hasPrintedTrace;
+    }
+}
@@ -0,0 +1,83 @@
+package space_invaders.utils;
+
+import processing.core.PApplet;
+import space_invaders.GameScale;
+import space_invaders.SpaceInvaders;
+import space_invaders.game_objects.Player;
+import space_invaders.managers.AlienManager;
+import space_invaders.managers.CollisionManager;
+import space_invaders.managers.MotherShipManager;
+import space_invaders.managers.PowerUpManager;
+import space_invaders.managers.WallManager;
+import space_invaders.resources.AssetArchive;
+import space_invaders.resources.Image;
+import space_invaders.resources.Sound;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures the part of startup that does not need a window: JVM boot, loading the images and creating the font. <br>
+ * With "--eager" the managers and a player are also set up before stopping, as the game did before they were only
+ * created once a game starts. Each run is a fresh JVM, so run it several times and compare the totals, with and without
+ * a class data sharing archive. <br>
+ * Usage: {@code java space_invaders.utils.StartupBenchmark [--eager]}
+ *
+ * @author Toby Essex
+ */
+final public class StartupBenchmark {
+    /** Private constructor so this class can't be constructed. */
+    private StartupBenchmark() {}
+
+    /**
+     * Runs the startup phases once and prints how long each took.
+     *
+     * @param args "--eager" to also set up the managers and a player.
+     *
+     * @author Toby Essex
+     */
+    public static void main(String[] args) {
+        long mainTime = System.currentTimeMillis();
+        long start = System.nanoTime();
+
+        boolean isEager = Arrays.asList(args).contains("--eager");
+
+        Sound.mute();
+
+        PApplet parent = new PApplet();
+        parent.width = 800;
+        parent.height = 800;
+
+        Image.loadImages(parent);
+        long images = System.nanoTime();
+
+        if (!AssetArchive.getInst().contains("game-font.ttf") || AssetArchive.getInst().loadFont("game-font.ttf", 18) == null)
+            parent.createFont(SpaceInvaders.class.getResource("game-font.ttf").toString(), 18);
+
+        long font = System.nanoTime();
+
+        if (isEager) {
+            WallManager.getInst().setParent(parent);
+            AlienManager.getInst().setParent(parent);
+            MotherShipManager.getInst().setParent(parent);
+            PowerUpManager.getInst().setParent(parent);
+            CollisionManager.getInst().setParent(parent);
+
+            AlienManager.getInst().setScale(GameScale.ARCADE);
+            WallManager.getInst().setScale(GameScale.ARCADE);
+
+            new Player(parent, parent.width / 2);
+        }
+
+        long managers = System.nanoTime();
+
+        // JVM boot is measured from the process start to the entry point, the rest is measured with the nano clock
+        double jvmBoot = mainTime - ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        System.out.printf("jvm boot %.1fms, images %.1fms, font %.1fms, managers %.1fms, total %.1fms (%d classes loaded)%n",
+                jvmBoot, (images - start) / 1e6, (font - images) / 1e6, (managers - font) / 1e6,
+                jvmBoot + (managers - start) / 1e6, ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount());
+
+        System.exit(0);
+    }
+}
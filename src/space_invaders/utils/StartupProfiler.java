@@ -0,0 +1,97 @@
+package space_invaders.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long each phase of startup takes, up to the first frame being drawn. <br>
+ * Phases are measured back to back, each one lasting from the previous mark to its own.
+ *
+ * @author Toby Essex
+ */
+final public class StartupProfiler {
+    /**
+     * Duration of each phase in nanoseconds, in the order they were marked.
+     */
+    private static final LinkedHashMap<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Time the previous phase finished.
+     */
+    private static long lastMark = System.nanoTime();
+
+    /**
+     * Wall clock time the entry point was reached.
+     */
+    private static long mainTime = System.currentTimeMillis();
+
+    /**
+     * If true the report has been printed and no more phases are recorded.
+     */
+    private static boolean isFinished = false;
+
+    /** Private constructor so this class can't be constructed. */
+    private StartupProfiler() {}
+
+    /**
+     * Starts timing, called from the entry point.
+     *
+     * @author Toby Essex
+     */
+    public static synchronized void start() {
+        mainTime = System.currentTimeMillis();
+        lastMark = System.nanoTime();
+    }
+
+    /**
+     * Ends the current phase.
+     *
+     * @param phase Name of the phase that has just finished.
+     *
+     * @author Toby Essex
+     */
+    public static synchronized void mark(String phase) {
+        if (isFinished)
+            return;
+
+        long now = System.nanoTime();
+
+        phases.merge(phase, now - lastMark, Long::sum);
+        lastMark = now;
+    }
+
+    /**
+     * Ends the last phase and prints the startup report. Only the first call does anything.
+     *
+     * @param phase Name of the phase that has just finished (normally the first frame).
+     *
+     * @author Toby Essex
+     */
+    public static synchronized void finish(String phase) {
+        if (isFinished)
+            return;
+
+        mark(phase);
+        isFinished = true;
+
+        // JVM boot is measured from the process start to the entry point, the rest is measured with the nano clock
+        double jvmBoot = mainTime - ManagementFactory.getRuntimeMXBean().getStartTime();
+        double total = jvmBoot;
+
+        StringBuilder report = new StringBuilder("Startup time:\n");
+        report.append(String.format("  %-14s %8.1fms%n", "jvm boot", jvmBoot));
+
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            double ms = entry.getValue() / 1e6;
+            total += ms;
+
+            report.append(String.format("  %-14s %8.1fms%n", entry.getKey(), ms));
+        }
+
+        report.append(String.format("  %-14s %8.1fms to the first frame (%d classes loaded)",
+                "total", total, ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount()));
+
+        Log.info("StartupProfiler", report.toString());
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Classes here are general purpose helpers that are not tied to a single game object, such as diagnostics.
+ *
+ * @author Toby Essex
+ */
+package space_invaders.utils;